@@ -51,18 +51,31 @@ public class ApocConfig extends LifecycleAdapter {
     public static final String APOC_TTL_SCHEDULE = "apoc.ttl.schedule";
     public static final String APOC_TTL_ENABLED = "apoc.ttl.enabled";
     public static final String APOC_TTL_LIMIT = "apoc.ttl.limit";
+    public static final String APOC_TTL_BUDGET = "apoc.ttl.budget";
+    public static final String APOC_TTL_POOL = "apoc.ttl.pool";
     public static final String APOC_TTL_SCHEDULE_DB = "apoc.ttl.schedule.%s";
     public static final String APOC_TTL_ENABLED_DB = "apoc.ttl.enabled.%s";
     public static final String APOC_TTL_LIMIT_DB = "apoc.ttl.limit.%s";
+    public static final String APOC_TTL_BUDGET_DB = "apoc.ttl.budget.%s";
     public static final String APOC_TRIGGER_ENABLED = "apoc.trigger.enabled";
+    public static final String APOC_TRIGGER_ASYNC_BATCH_SIZE = "apoc.trigger.async.batch_size";
+    public static final String APOC_TRIGGER_ASYNC_WINDOW = "apoc.trigger.async.window";
+    public static final String APOC_TRIGGER_ASYNC_QUEUE_SIZE = "apoc.trigger.async.queue_size";
     public static final String APOC_UUID_ENABLED = "apoc.uuid.enabled";
     public static final String APOC_UUID_ENABLED_DB = "apoc.uuid.enabled.%s";
+    public static final String APOC_META_CACHE_ENABLED = "apoc.meta.cache.enabled";
+    public static final String APOC_META_CACHE_PERSIST_INTERVAL = "apoc.meta.cache.persist_interval";
+    public static final String APOC_CACHE_MAX_ENTRIES = "apoc.cache.max_entries";
+    public static final String APOC_CACHE_MAX_WEIGHT = "apoc.cache.max_weight";
+    public static final String APOC_CACHE_TTL = "apoc.cache.ttl";
+    public static final String APOC_CACHE_POLICY = "apoc.cache.policy";
     public static final String APOC_JSON_ZIP_URL = "apoc.json.zip.url";  // TODO: check if really needed
     public static final String APOC_JSON_SIMPLE_JSON_URL = "apoc.json.simpleJson.url"; // TODO: check if really needed
     public static final String APOC_IMPORT_FILE_ALLOW__READ__FROM__FILESYSTEM = "apoc.import.file.allow_read_from_filesystem";
     public static final String APOC_CONFIG_JOBS_SCHEDULED_NUM_THREADS = "apoc.jobs.scheduled.num_threads";
     public static final String APOC_CONFIG_JOBS_POOL_NUM_THREADS = "apoc.jobs.pool.num_threads";
     public static final String APOC_CONFIG_JOBS_QUEUE_SIZE = "apoc.jobs.queue.size";
+    public static final String APOC_CONFIG_JOBS_NAMED_POOL_PREFIX = "apoc.jobs.pool";
     public static final String APOC_CONFIG_INITIALIZER = "apoc.initializer";
 
     /**
@@ -1,12 +1,15 @@
 package apoc;
 
 import apoc.cypher.CypherInitializer;
+import apoc.meta.MetaProfileHandler;
 import apoc.trigger.TriggerHandler;
 import org.neo4j.annotations.service.ServiceProvider;
+import org.neo4j.internal.helpers.collection.MapUtil;
 import org.neo4j.kernel.availability.AvailabilityListener;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.kernel.lifecycle.Lifecycle;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
@@ -16,18 +19,24 @@ public class CoreApocGlobalComponents implements ApocGlobalComponents {
 
     @Override
     public Map<String,Lifecycle> getServices(GraphDatabaseAPI db, ApocExtensionFactory.Dependencies dependencies) {
-        return Collections.singletonMap("trigger", new TriggerHandler(db,
-                dependencies.databaseManagementService(),
-                dependencies.apocConfig(),
-                dependencies.log().getUserLog(TriggerHandler.class),
-                dependencies.globalProceduresRegistry(),
-                dependencies.pools())
+        return MapUtil.genericMap(
+                "trigger", new TriggerHandler(db,
+                        dependencies.databaseManagementService(),
+                        dependencies.apocConfig(),
+                        dependencies.log().getUserLog(TriggerHandler.class),
+                        dependencies.globalProceduresRegistry(),
+                        dependencies.pools()),
+                "metaProfile", new MetaProfileHandler(db,
+                        dependencies.databaseManagementService(),
+                        dependencies.apocConfig(),
+                        dependencies.log().getUserLog(MetaProfileHandler.class),
+                        dependencies.pools())
         );
     }
 
     @Override
     public Collection<Class> getContextClasses() {
-        return Collections.singleton(TriggerHandler.class);
+        return Arrays.asList(TriggerHandler.class, MetaProfileHandler.class);
     }
 
     @Override
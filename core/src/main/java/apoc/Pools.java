@@ -1,5 +1,6 @@
 package apoc;
 
+import apoc.load.util.JdbcConnectionPool;
 import apoc.periodic.Periodic;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Transaction;
@@ -8,14 +9,20 @@ import org.neo4j.kernel.lifecycle.LifecycleAdapter;
 import org.neo4j.logging.Log;
 import org.neo4j.logging.internal.LogService;
 
+import static apoc.ApocConfig.APOC_CONFIG_JOBS_NAMED_POOL_PREFIX;
+
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
@@ -25,6 +32,7 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.stream.Stream;
 
@@ -32,6 +40,11 @@ public class Pools extends LifecycleAdapter {
 
     public final static int DEFAULT_SCHEDULED_THREADS = Runtime.getRuntime().availableProcessors() / 4;
     public final static int DEFAULT_POOL_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+    public final static String SINGLE = "single";
+    public final static String DEFAULT = "default";
+    public final static String SCHEDULED = "scheduled";
+    public final static String IO = "io";
+    public final static int DEFAULT_IO_PARALLELISM = Runtime.getRuntime().availableProcessors() * 16;
     private final Log log;
     private final GlobalProcedures globalProceduresRegistry;
     private final ApocConfig apocConfig;
@@ -39,6 +52,10 @@ public class Pools extends LifecycleAdapter {
     private ExecutorService singleExecutorService;
     private ScheduledExecutorService scheduledExecutorService;
     private ExecutorService defaultExecutorService;
+    private final Map<String, ExecutorService> namedExecutorServices = new ConcurrentHashMap<>();
+    private final Map<String, CountingRejectionPolicy> rejectionPolicies = new ConcurrentHashMap<>();
+    /** the pools without a bound on their threads, see {@link #isUnbounded(String)} */
+    private final Set<String> unboundedPools = ConcurrentHashMap.newKeySet();
 
     private final Map<Periodic.JobInfo,Future> jobList = new ConcurrentHashMap<>();
 
@@ -67,10 +84,12 @@ public class Pools extends LifecycleAdapter {
             return t;
         };
         this.singleExecutorService = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
-                threadFactory, new CallerBlocksPolicy());
+                threadFactory, rejectionPolicy(SINGLE, new CallerBlocksPolicy()));
 
         this.defaultExecutorService = new ThreadPoolExecutor(threads / 2, threads, 30L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
-                threadFactory, new CallerBlocksPolicy());
+                threadFactory, rejectionPolicy(DEFAULT, new CallerBlocksPolicy()));
+
+        initNamedExecutorServices(threadFactory);
 
         this.scheduledExecutorService = Executors.newScheduledThreadPool(
                 Math.max(1, apocConfig.getInt(ApocConfig.APOC_CONFIG_JOBS_SCHEDULED_NUM_THREADS, DEFAULT_SCHEDULED_THREADS)),
@@ -83,11 +102,16 @@ public class Pools extends LifecycleAdapter {
                 if (entry.getValue().isDone() || entry.getValue().isCancelled()) it.remove();
             }
         },10,10,TimeUnit.SECONDS);
+
+        // closing the connections waits on the network, so it doesn't run on the scheduled pool
+        scheduledExecutorService.scheduleWithFixedDelay(() -> getIoExecutorService().submit(JdbcConnectionPool::evictAll), 60, 60, TimeUnit.SECONDS);
     }
 
     @Override
     public void shutdown() throws Exception {
-        Stream.of(singleExecutorService, defaultExecutorService, scheduledExecutorService).forEach( service -> {
+        // the JDBC pools are shared by all the databases, so they are closed with the DBMS
+        JdbcConnectionPool.closeAll();
+        Stream.concat(Stream.of(singleExecutorService, defaultExecutorService, scheduledExecutorService), namedExecutorServices.values().stream()).forEach( service -> {
             try {
                 service.shutdown();
                 service.awaitTermination(10, TimeUnit.SECONDS);
@@ -109,10 +133,226 @@ public class Pools extends LifecycleAdapter {
         return defaultExecutorService;
     }
 
+    /**
+     * @param name the name of a pool configured via <code>apoc.jobs.pool.&lt;name&gt;.*</code>, or one of
+     *             <code>default</code> and <code>single</code>. If null the default executor is returned.
+     */
+    public ExecutorService getExecutorService(String name) {
+        if (name == null || DEFAULT.equals(name)) return defaultExecutorService;
+        if (SINGLE.equals(name)) return singleExecutorService;
+        ExecutorService executorService = namedExecutorServices.get(name);
+        if (executorService == null) {
+            throw new IllegalArgumentException("Unknown pool `" + name + "`, it can be configured via " + APOC_CONFIG_JOBS_NAMED_POOL_PREFIX + "." + name + ".num_threads");
+        }
+        return executorService;
+    }
+
+    /**
+     * @return true if the pool starts a thread per task, so that the callers must bound the tasks they submit
+     */
+    public boolean isUnbounded(String name) {
+        return unboundedPools.contains(name);
+    }
+
     public Map<Periodic.JobInfo, Future> getJobList() {
         return jobList;
     }
 
+    /**
+     * executor meant for tasks that mostly wait on network or disk, e.g. remote fetches.
+     * Backed by virtual threads when the runtime supports them, by a ForkJoinPool otherwise, see {@link PoolType}
+     */
+    public ExecutorService getIoExecutorService() {
+        return namedExecutorServices.get(IO);
+    }
+
+    public Stream<PoolInfo> getPoolInfos() {
+        Stream<PoolInfo> builtIn = Stream.of(
+                new PoolInfo(SINGLE, (ThreadPoolExecutor) singleExecutorService, rejectionPolicies.get(SINGLE)),
+                new PoolInfo(DEFAULT, (ThreadPoolExecutor) defaultExecutorService, rejectionPolicies.get(DEFAULT)),
+                new PoolInfo(SCHEDULED, (ThreadPoolExecutor) scheduledExecutorService, null));
+        return Stream.concat(builtIn, namedExecutorServices.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(e -> PoolInfo.of(e.getKey(), e.getValue(), rejectionPolicies.get(e.getKey()))));
+    }
+
+    /**
+     * creates the pools configured as <code>apoc.jobs.pool.&lt;name&gt;.num_threads</code>,
+     * <code>apoc.jobs.pool.&lt;name&gt;.queue_size</code>, <code>apoc.jobs.pool.&lt;name&gt;.rejection_policy</code>
+     * and <code>apoc.jobs.pool.&lt;name&gt;.type</code>, plus the <code>io</code> pool which is always available
+     */
+    private void initNamedExecutorServices(ThreadFactory threadFactory) {
+        Set<String> names = new TreeSet<>();
+        for (Iterator<String> it = apocConfig.getKeys(APOC_CONFIG_JOBS_NAMED_POOL_PREFIX); it.hasNext(); ) {
+            String key = it.next();
+            if (key.length() <= APOC_CONFIG_JOBS_NAMED_POOL_PREFIX.length() + 1) continue;
+            String[] parts = key.substring(APOC_CONFIG_JOBS_NAMED_POOL_PREFIX.length() + 1).split("\\.");
+            if (parts.length == 2) names.add(parts[0]);
+        }
+        names.removeAll(List.of(SINGLE, DEFAULT, SCHEDULED));
+        names.add(IO);
+        for (String name : names) {
+            String prefix = APOC_CONFIG_JOBS_NAMED_POOL_PREFIX + "." + name + ".";
+            boolean io = IO.equals(name);
+            PoolType type = PoolType.from(apocConfig.getString(prefix + "type", null), io ? PoolType.VIRTUAL : PoolType.THREAD_POOL);
+            int threads = Math.max(1, apocConfig.getInt(prefix + "num_threads", io ? DEFAULT_IO_PARALLELISM : DEFAULT_POOL_THREADS));
+            switch (type) {
+                case VIRTUAL:
+                    ExecutorService virtual = PoolType.newVirtualThreadPerTaskExecutor();
+                    if (virtual != null) {
+                        namedExecutorServices.put(name, virtual);
+                        unboundedPools.add(name);
+                        log.info("created pool %s with virtual threads", name);
+                        break;
+                    }
+                    log.info("virtual threads are not supported by this JVM, pool %s falls back to a fork join pool", name);
+                    // fall through
+                case FORK_JOIN:
+                    namedExecutorServices.put(name, new ForkJoinPool(threads, pool -> {
+                        ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        t.setName("apoc-" + name + "-" + t.getName());
+                        return t;
+                    }, null, true));
+                    log.info("created fork join pool %s with parallelism %d", name, threads);
+                    break;
+                default:
+                    int queueSize = Math.max(1, apocConfig.getInt(prefix + "queue_size", threads * 5));
+                    RejectedExecutionHandler policy = rejectionPolicy(name, RejectionPolicy.from(apocConfig.getString(prefix + "rejection_policy", null)).handler());
+                    ThreadFactory namedThreadFactory = r -> {
+                        Thread t = threadFactory.newThread(r);
+                        t.setName("apoc-" + name + "-" + t.getName());
+                        return t;
+                    };
+                    namedExecutorServices.put(name, new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(queueSize), namedThreadFactory, policy));
+                    log.info("created pool %s with %d threads and queue size %d", name, threads, queueSize);
+            }
+        }
+    }
+
+    private RejectedExecutionHandler rejectionPolicy(String name, RejectedExecutionHandler handler) {
+        CountingRejectionPolicy policy = new CountingRejectionPolicy(handler);
+        rejectionPolicies.put(name, policy);
+        return policy;
+    }
+
+    /**
+     * Backend of a named pool: a bounded ThreadPoolExecutor (CPU-bound work), a work-stealing ForkJoinPool, or
+     * one virtual thread per task (I/O-bound work), the latter only when running on a JDK that supports them.
+     */
+    enum PoolType {
+        THREAD_POOL, FORK_JOIN, VIRTUAL;
+
+        static PoolType from(String value, PoolType defaultType) {
+            return value == null ? defaultType : PoolType.valueOf(value.trim().toUpperCase());
+        }
+
+        /**
+         * @return an executor starting a virtual thread per task, or null if the JVM doesn't support them.
+         * Looked up reflectively as APOC is compiled for Java 11.
+         */
+        static ExecutorService newVirtualThreadPerTaskExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+                return null;
+            }
+        }
+    }
+
+    enum RejectionPolicy {
+        CALLER_BLOCKS, CALLER_RUNS, ABORT;
+
+        static RejectionPolicy from(String value) {
+            return value == null ? CALLER_BLOCKS : RejectionPolicy.valueOf(value.trim().toUpperCase());
+        }
+
+        RejectedExecutionHandler handler() {
+            switch (this) {
+                case CALLER_RUNS: return new ThreadPoolExecutor.CallerRunsPolicy();
+                case ABORT: return new ThreadPoolExecutor.AbortPolicy();
+                default: return new CallerBlocksPolicy();
+            }
+        }
+    }
+
+    static class CountingRejectionPolicy implements RejectedExecutionHandler {
+        private final RejectedExecutionHandler delegate;
+        private final AtomicLong rejected = new AtomicLong();
+
+        CountingRejectionPolicy(RejectedExecutionHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            rejected.incrementAndGet();
+            delegate.rejectedExecution(r, executor);
+        }
+
+        long getRejected() {
+            return rejected.get();
+        }
+    }
+
+    public static class PoolInfo {
+        public final String name;
+        public final String type;
+        public final Long threads;
+        public final Long activeThreads;
+        public final Long largestPoolSize;
+        public final Long queueSize;
+        public final Long queueRemainingCapacity;
+        public final Long completedTasks;
+        public final Long rejectedTasks;
+        public final Double saturation;
+
+        static PoolInfo of(String name, ExecutorService executor, CountingRejectionPolicy policy) {
+            if (executor instanceof ThreadPoolExecutor) return new PoolInfo(name, (ThreadPoolExecutor) executor, policy);
+            if (executor instanceof ForkJoinPool) return new PoolInfo(name, (ForkJoinPool) executor);
+            // virtual threads, which don't expose any counter
+            return new PoolInfo(name, PoolType.VIRTUAL.name(), null, null, null, null, null, null, null, null);
+        }
+
+        PoolInfo(String name, String type, Long threads, Long activeThreads, Long largestPoolSize, Long queueSize,
+                 Long queueRemainingCapacity, Long completedTasks, Long rejectedTasks, Double saturation) {
+            this.name = name;
+            this.type = type;
+            this.threads = threads;
+            this.activeThreads = activeThreads;
+            this.largestPoolSize = largestPoolSize;
+            this.queueSize = queueSize;
+            this.queueRemainingCapacity = queueRemainingCapacity;
+            this.completedTasks = completedTasks;
+            this.rejectedTasks = rejectedTasks;
+            this.saturation = saturation;
+        }
+
+        PoolInfo(String name, ForkJoinPool executor) {
+            this(name, PoolType.FORK_JOIN.name(), (long) executor.getParallelism(), (long) executor.getActiveThreadCount(),
+                    (long) executor.getPoolSize(), executor.getQueuedSubmissionCount() + executor.getQueuedTaskCount(),
+                    null, null, null, (double) executor.getActiveThreadCount() / executor.getParallelism());
+        }
+
+        PoolInfo(String name, ThreadPoolExecutor executor, CountingRejectionPolicy policy) {
+            this.name = name;
+            this.type = PoolType.THREAD_POOL.name();
+            long threads = executor.getMaximumPoolSize();
+            long activeThreads = executor.getActiveCount();
+            long queueSize = executor.getQueue().size();
+            long queueRemainingCapacity = executor.getQueue().remainingCapacity();
+            this.threads = threads;
+            this.activeThreads = activeThreads;
+            this.largestPoolSize = (long) executor.getLargestPoolSize();
+            this.queueSize = queueSize;
+            this.queueRemainingCapacity = queueRemainingCapacity;
+            this.completedTasks = executor.getCompletedTaskCount();
+            this.rejectedTasks = policy == null ? 0 : policy.getRejected();
+            long capacity = threads + (queueRemainingCapacity == Integer.MAX_VALUE ? 0 : queueSize + queueRemainingCapacity);
+            this.saturation = capacity == 0 ? 0 : (double) (activeThreads + queueSize) / capacity;
+        }
+    }
+
     static class CallerBlocksPolicy implements RejectedExecutionHandler {
         @Override
         public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
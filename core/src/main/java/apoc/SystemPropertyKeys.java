@@ -23,5 +23,13 @@ public enum SystemPropertyKeys  {
     // uuid handler
     label,
     addToSetLabel,
-    propertyName;
+    propertyName,
+
+    // periodic iterate checkpoints
+    offset,
+    position,
+
+    // meta profile cache
+    profile,
+    clean;
 }
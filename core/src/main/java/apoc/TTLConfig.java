@@ -18,6 +18,7 @@ public class TTLConfig extends LifecycleAdapter {
         String apocTTLEnabledDb = String.format(ApocConfig.APOC_TTL_ENABLED_DB, db.databaseName());
         String apocTTLScheduleDb = String.format(ApocConfig.APOC_TTL_SCHEDULE_DB, db.databaseName());
         String apocTTLLimitDb = String.format(ApocConfig.APOC_TTL_LIMIT_DB, db.databaseName());
+        String apocTTLBudgetDb = String.format(ApocConfig.APOC_TTL_BUDGET_DB, db.databaseName());
         boolean enabled = apocConfig.getBoolean(ApocConfig.APOC_TTL_ENABLED);
         boolean dbEnabled = apocConfig.getBoolean(apocTTLEnabledDb, enabled);
 
@@ -26,11 +27,14 @@ public class TTLConfig extends LifecycleAdapter {
             long ttlScheduleDb = apocConfig.getInt(apocTTLScheduleDb, (int) ttlSchedule);
             long limit = apocConfig.getInt(ApocConfig.APOC_TTL_LIMIT, 1000);
             long limitDb = apocConfig.getInt(apocTTLLimitDb, (int) limit);
+            // by default a run ends before the next one is due
+            long budget = apocConfig.getInt(ApocConfig.APOC_TTL_BUDGET, (int) (ttlScheduleDb * 800));
+            long budgetDb = apocConfig.getInt(apocTTLBudgetDb, (int) budget);
 
-            return new Values(true, ttlScheduleDb, limitDb);
+            return new Values(true, ttlScheduleDb, limitDb, budgetDb);
         }
 
-        return new Values(false, -1, -1);
+        return new Values(false, -1, -1, -1);
     }
 
 
@@ -38,11 +42,18 @@ public class TTLConfig extends LifecycleAdapter {
         public final boolean enabled;
         public final long schedule;
         public final long limit;
+        /** maximum duration in ms of a run of the expiry job */
+        public final long budget;
 
         public Values(boolean enabled, long schedule, long limit) {
+            this(enabled, schedule, limit, schedule * 800);
+        }
+
+        public Values(boolean enabled, long schedule, long limit, long budget) {
             this.enabled = enabled;
             this.schedule = schedule;
             this.limit = limit;
+            this.budget = budget;
         }
 
         @Override
@@ -51,6 +62,7 @@ public class TTLConfig extends LifecycleAdapter {
                     "enabled=" + enabled +
                     ", schedule=" + schedule +
                     ", limit=" + limit +
+                    ", budget=" + budget +
                     '}';
         }
     }
@@ -0,0 +1,71 @@
+package apoc.agg;
+
+/**
+ * Count-min sketch, estimating how many times each value occurred with <code>depth</code> rows of
+ * <code>width</code> counters. Estimates are never below the actual count, and above it by at most
+ * <code>e / width</code> of the total count with probability <code>1 - exp(-depth)</code>.
+ */
+class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final long[][] counts;
+    private long total;
+
+    CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("The width and depth of a count-min sketch must be positive, got " + width + " and " + depth);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counts = new long[depth][width];
+    }
+
+    /**
+     * @return the estimated count of the value, including this occurrence
+     */
+    long add(Object value) {
+        long hash = HyperLogLog.hash(value);
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            int index = index(hash, i);
+            estimate = Math.min(estimate, ++counts[i][index]);
+        }
+        total++;
+        return estimate;
+    }
+
+    long estimate(Object value) {
+        long hash = HyperLogLog.hash(value);
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            estimate = Math.min(estimate, counts[i][index(hash, i)]);
+        }
+        return estimate;
+    }
+
+    void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge count-min sketches of different sizes");
+        }
+        for (int i = 0; i < depth; i++) {
+            for (int j = 0; j < width; j++) {
+                counts[i][j] += other.counts[i][j];
+            }
+        }
+        total += other.total;
+    }
+
+    long total() {
+        return total;
+    }
+
+    /**
+     * Index of the value in the row, from two halves of its hash combined as in Kirsch-Mitzenmacher double hashing
+     */
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + row * h2, width);
+    }
+}
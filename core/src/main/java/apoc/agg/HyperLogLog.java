@@ -0,0 +1,118 @@
+package apoc.agg;
+
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.Node;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HyperLogLog, estimating the number of distinct values with <code>2^precision</code> one-byte registers, for a
+ * relative standard error of about <code>1.04 / sqrt(2^precision)</code>.
+ */
+class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("The precision of a HyperLogLog must be between 4 and 18, got " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    void add(Object value) {
+        addHash(hash(value));
+    }
+
+    void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // position of the first 1 bit in the remaining bits, bounded by their number
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLogs of different precisions: " + precision + " and " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        }
+    }
+
+    long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) zeros++;
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // linear counting is more accurate for small cardinalities
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * 64 bit hash of a value, equal for numbers that are equal in Cypher, like 1 and 1.0
+     */
+    static long hash(Object value) {
+        if (value == null) return mix(0);
+        if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            if (value instanceof Double || value instanceof Float) {
+                return d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < 0x1p63 ? mix((long) d) : mix(Double.doubleToLongBits(d));
+            }
+            return mix(((Number) value).longValue());
+        }
+        if (value instanceof String) {
+            // FNV-1a over the utf-8 bytes
+            long h = 0xcbf29ce484222325L;
+            for (byte b : ((String) value).getBytes(StandardCharsets.UTF_8)) {
+                h ^= b & 0xff;
+                h *= 0x100000001b3L;
+            }
+            return mix(h);
+        }
+        if (value instanceof Entity) {
+            return mix(((Entity) value).getId() * 31 + (value instanceof Node ? 1 : 2));
+        }
+        if (value instanceof List) {
+            long h = 1;
+            for (Object item : (List<?>) value) {
+                h = 31 * h + hash(item);
+            }
+            return mix(h);
+        }
+        if (value instanceof Map) {
+            long h = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                h += hash(entry.getKey()) ^ Long.rotateLeft(hash(entry.getValue()), 17);
+            }
+            return mix(h);
+        }
+        return mix(value.hashCode());
+    }
+
+    /**
+     * Finalizer of murmur3, spreading the bits of the input over the whole hash
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,160 @@
+package apoc.agg;
+
+import apoc.util.Util;
+import org.neo4j.procedure.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Approximate aggregations whose memory per group doesn't depend on the number of aggregated values, unlike
+ * <code>apoc.agg.median</code> which keeps all of them.
+ */
+public class Sketches {
+
+    @UserAggregationFunction("apoc.agg.approxMedian")
+    @Description("apoc.agg.approxMedian(value, {compression: 100}) - returns the approximate median of the non-null numeric values, estimated with a t-digest")
+    public MedianFunction approxMedian() {
+        return new MedianFunction();
+    }
+
+    @UserAggregationFunction("apoc.agg.approxPercentiles")
+    @Description("apoc.agg.approxPercentiles(value, [percentiles = 0.5,0.75,0.9,0.95,0.99], {compression: 100}) - returns the approximate percentiles of the non-null numeric values, estimated with a t-digest")
+    public PercentilesFunction approxPercentiles() {
+        return new PercentilesFunction();
+    }
+
+    @UserAggregationFunction("apoc.agg.approxCountDistinct")
+    @Description("apoc.agg.approxCountDistinct(value, {precision: 14}) - returns the approximate number of distinct non-null values, estimated with a HyperLogLog")
+    public CountDistinctFunction approxCountDistinct() {
+        return new CountDistinctFunction();
+    }
+
+    @UserAggregationFunction("apoc.agg.approxTopK")
+    @Description("apoc.agg.approxTopK(value, k = 10, {width: 2048, depth: 5}) - returns the approximately k most frequent non-null values as a list of {item, count}, counted with a count-min sketch")
+    public TopKFunction approxTopK() {
+        return new TopKFunction();
+    }
+
+    private static TDigest digest(Map<String, Object> config) {
+        Object compression = config == null ? null : config.get("compression");
+        return new TDigest(compression == null ? 100 : Util.toDouble(compression));
+    }
+
+    public static class MedianFunction {
+        private TDigest digest;
+
+        @UserAggregationUpdate
+        public void aggregate(@Name("value") Object value, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+            if (digest == null) {
+                digest = digest(config);
+            }
+            if (value instanceof Number) {
+                digest.add(((Number) value).doubleValue());
+            }
+        }
+
+        @UserAggregationResult
+        public Object result() {
+            return digest == null ? null : digest.quantile(0.5);
+        }
+    }
+
+    public static class PercentilesFunction {
+        private TDigest digest;
+        private List<Double> percentiles = asList(0.5D, 0.75D, 0.9D, 0.95D, 0.99D);
+
+        @UserAggregationUpdate
+        public void aggregate(@Name("value") Object value,
+                              @Name(value = "percentiles", defaultValue = "[0.5,0.75,0.9,0.95,0.99]") List<Double> percentiles,
+                              @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+            if (digest == null) {
+                digest = digest(config);
+            }
+            if (value instanceof Number) {
+                digest.add(((Number) value).doubleValue());
+            }
+            this.percentiles = percentiles;
+        }
+
+        @UserAggregationResult
+        public List<Double> result() {
+            List<Double> result = new ArrayList<>(percentiles.size());
+            for (Double percentile : percentiles) {
+                result.add(percentile == null || digest == null ? null : digest.quantile(percentile));
+            }
+            return result;
+        }
+    }
+
+    public static class CountDistinctFunction {
+        private HyperLogLog hll;
+
+        @UserAggregationUpdate
+        public void aggregate(@Name("value") Object value, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+            if (hll == null) {
+                Object precision = config == null ? null : config.get("precision");
+                hll = new HyperLogLog(precision == null ? 14 : Util.toInteger(precision));
+            }
+            if (value != null) {
+                hll.add(value);
+            }
+        }
+
+        @UserAggregationResult
+        public long result() {
+            return hll == null ? 0 : hll.estimate();
+        }
+    }
+
+    public static class TopKFunction {
+        private CountMinSketch sketch;
+        private int k;
+        /** the values estimated as the most frequent so far, with their estimated counts */
+        private final Map<Object, Long> candidates = new HashMap<>();
+        /** lower bound of the smallest count of the candidates */
+        private long minCount;
+
+        @UserAggregationUpdate
+        public void aggregate(@Name("value") Object value, @Name(value = "k", defaultValue = "10") long k,
+                              @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+            if (sketch == null) {
+                if (k < 1) {
+                    throw new IllegalArgumentException("k must be positive, got " + k);
+                }
+                Object width = config == null ? null : config.get("width");
+                Object depth = config == null ? null : config.get("depth");
+                sketch = new CountMinSketch(width == null ? 2048 : Util.toInteger(width), depth == null ? 5 : Util.toInteger(depth));
+                this.k = (int) k;
+            }
+            if (value == null) return;
+            long count = sketch.add(value);
+            if (candidates.containsKey(value) || candidates.size() < this.k) {
+                candidates.put(value, count);
+            } else if (count > minCount) {
+                Map.Entry<Object, Long> min = Collections.min(candidates.entrySet(), Map.Entry.comparingByValue());
+                if (count > min.getValue()) {
+                    candidates.remove(min.getKey());
+                    candidates.put(value, count);
+                }
+                minCount = Math.min(count, Collections.min(candidates.values()));
+            }
+        }
+
+        @UserAggregationResult
+        public List<Map<String, Object>> result() {
+            List<Map.Entry<Object, Long>> entries = new ArrayList<>(candidates.entrySet());
+            entries.sort(Map.Entry.<Object, Long>comparingByValue().reversed());
+            List<Map<String, Object>> result = new ArrayList<>(entries.size());
+            for (Map.Entry<Object, Long> entry : entries) {
+                result.add(Util.map("item", entry.getKey(), "count", entry.getValue()));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package apoc.agg;
+
+import java.util.Arrays;
+
+/**
+ * Merging t-digest, estimating quantiles of a stream of values with a bounded number of centroids.
+ *
+ * Values are buffered and periodically merged into centroids sorted by mean. A centroid near the median can hold
+ * many values while centroids near the extremes hold few of them, so the relative accuracy is best for the tail
+ * quantiles. The number of centroids is bounded by about twice the compression, whatever the number of values.
+ */
+class TDigest {
+
+    private final double compression;
+    private double[] means;
+    private double[] weights;
+    private int centroids;
+    /** false once centroids of another digest have been appended */
+    private boolean sorted = true;
+    private final double[] buffer;
+    private int buffered;
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    TDigest(double compression) {
+        if (compression < 10) {
+            throw new IllegalArgumentException("The compression of a t-digest must be at least 10, got " + compression);
+        }
+        this.compression = compression;
+        int capacity = (int) Math.ceil(2 * compression) + 10;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.buffer = new double[(int) Math.ceil(5 * compression)];
+    }
+
+    void add(double value) {
+        if (Double.isNaN(value)) return;
+        if (buffered == buffer.length) {
+            compress();
+        }
+        buffer[buffered++] = value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    void merge(TDigest other) {
+        other.compress();
+        compress();
+        for (int i = 0; i < other.centroids; i++) {
+            addCentroid(other.means[i], other.weights[i]);
+        }
+        sorted = false;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress();
+    }
+
+    long size() {
+        return (long) (totalWeight + buffered);
+    }
+
+    private void addCentroid(double mean, double weight) {
+        if (centroids == means.length) {
+            means = Arrays.copyOf(means, centroids * 2);
+            weights = Arrays.copyOf(weights, centroids * 2);
+        }
+        means[centroids] = mean;
+        weights[centroids] = weight;
+        centroids++;
+        totalWeight += weight;
+    }
+
+    /**
+     * Merges the buffered values with the centroids, so that each centroid holds at most the number of values
+     * allowed at its quantile
+     */
+    private void compress() {
+        int count = centroids + buffered;
+        if (count == 0 || (buffered == 0 && sorted)) return;
+        double[] allMeans = new double[count];
+        double[] allWeights = new double[count];
+        Arrays.sort(buffer, 0, buffered);
+        if (sorted) {
+            // merges the sorted centroids with the sorted buffer
+            int c = 0, b = 0;
+            for (int i = 0; i < count; i++) {
+                if (b == buffered || (c < centroids && means[c] <= buffer[b])) {
+                    allMeans[i] = means[c];
+                    allWeights[i] = weights[c++];
+                } else {
+                    allMeans[i] = buffer[b++];
+                    allWeights[i] = 1;
+                }
+            }
+        } else {
+            System.arraycopy(means, 0, allMeans, 0, centroids);
+            System.arraycopy(weights, 0, allWeights, 0, centroids);
+            for (int i = 0; i < buffered; i++) {
+                allMeans[centroids + i] = buffer[i];
+                allWeights[centroids + i] = 1;
+            }
+            sort(allMeans, allWeights);
+        }
+        double total = totalWeight + buffered;
+        buffered = 0;
+        sorted = true;
+
+        centroids = 0;
+        totalWeight = 0;
+        double mean = allMeans[0], weight = allWeights[0], before = 0;
+        for (int i = 1; i < count; i++) {
+            double proposed = weight + allWeights[i];
+            double q = (before + proposed / 2) / total;
+            double limit = Math.max(1, 4 * total * q * (1 - q) / compression);
+            if (proposed <= limit) {
+                mean += (allMeans[i] - mean) * allWeights[i] / proposed;
+                weight = proposed;
+            } else {
+                addCentroid(mean, weight);
+                before += weight;
+                mean = allMeans[i];
+                weight = allWeights[i];
+            }
+        }
+        addCentroid(mean, weight);
+    }
+
+    private static void sort(double[] means, double[] weights) {
+        Integer[] order = new Integer[means.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(means[a], means[b]));
+        double[] sortedMeans = new double[means.length];
+        double[] sortedWeights = new double[means.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedMeans[i] = means[order[i]];
+            sortedWeights[i] = weights[order[i]];
+        }
+        System.arraycopy(sortedMeans, 0, means, 0, means.length);
+        System.arraycopy(sortedWeights, 0, weights, 0, weights.length);
+    }
+
+    /**
+     * @return the estimated value at the quantile, interpolated between the centroids, null if there are no values
+     */
+    Double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantiles must be between 0 and 1, got " + q);
+        }
+        compress();
+        if (centroids == 0) return null;
+        if (centroids == 1) return means[0];
+        double index = q * totalWeight;
+        // each centroid is centered at the middle of the values it holds
+        double center = weights[0] / 2;
+        if (index < center) {
+            return min + (means[0] - min) * index / center;
+        }
+        for (int i = 0; i < centroids - 1; i++) {
+            double next = center + (weights[i] + weights[i + 1]) / 2;
+            if (index <= next) {
+                return means[i] + (means[i + 1] - means[i]) * (index - center) / (next - center);
+            }
+            center = next;
+        }
+        double last = totalWeight - center;
+        return last == 0 ? max : means[centroids - 1] + (max - means[centroids - 1]) * Math.min(1, (index - center) / last);
+    }
+}
@@ -13,6 +13,7 @@ import org.neo4j.logging.Log;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -34,8 +35,8 @@ public class CsvEntityLoader {
 
     /**
      * Loads nodes from a CSV file with given labels to an online database, and fills the {@code idMapping},
-     * which will be used by the {@link #loadRelationships(String, String, GraphDatabaseService, Map)}
-     * method.
+     * which will be used by the {@link #loadRelationships(String, String, GraphDatabaseService, CsvIdMapping)}
+     * method. The file is streamed, so only the rows of the current batch are kept in memory.
      *
      * @param fileName URI of the CSV file representing the node
      * @param labels list of node labels to be applied to each node
@@ -44,7 +45,7 @@ public class CsvEntityLoader {
      * @throws IOException
      */
     public void loadNodes(final String fileName, final List<String> labels, final GraphDatabaseService db,
-                          final Map<String, Map<String, Long>> idMapping) throws IOException {
+                          final CsvIdMapping idMapping) throws IOException {
         final CountingReader reader = FileUtils.readerFor(fileName);
         final String header = readFirstLine(reader);
         reader.skip(clc.getSkipLines() - 1);
@@ -61,9 +62,6 @@ public class CsvEntityLoader {
         final Optional<String> idAttribute = idField.isPresent() ? Optional.of(idField.get().getName()) : Optional.empty();
         final String idSpace = idField.isPresent() ? idField.get().getIdSpace() : CsvLoaderConstants.DEFAULT_IDSPACE;
 
-        idMapping.putIfAbsent(idSpace, new HashMap<>());
-        final Map<String, Long> idspaceIdMapping = idMapping.get(idSpace);
-
         final Map<String, Mapping> mapping = fields.stream().collect(
                 Collectors.toMap(
                         CsvHeaderField::getName,
@@ -83,7 +81,8 @@ public class CsvEntityLoader {
         final String[] loadCsvCompatibleHeader = fields.stream().map(f -> f.getName()).toArray(String[]::new);
         int lineNo = 0;
         try (BatchTransaction btx = new BatchTransaction(db, clc.getBatchSize(), reporter)) {
-            for (String[] line : csv.readAll()) {
+            String[] line;
+            while ((line = csv.readNext()) != null) {
                 lineNo++;
 
                 final EnumSet<Results> results = EnumSet.of(Results.map);
@@ -95,7 +94,7 @@ public class CsvEntityLoader {
 
                 // if 'ignore duplicate nodes' is false, there is an id field and the mapping already has the current id,
                 // we either fail the loading process or skip it depending on the 'ignore duplicate nodes' setting
-                if (idField.isPresent() && idspaceIdMapping.containsKey(nodeCsvId)) {
+                if (idField.isPresent() && idMapping.contains(idSpace, nodeCsvId)) {
                     if (clc.getIgnoreDuplicateNodes()) {
                         continue;
                     } else {
@@ -107,7 +106,7 @@ public class CsvEntityLoader {
                 // create node and add its id to the mapping
                 final Node node = btx.getTransaction().createNode();
                 if (idField.isPresent()) {
-                    idspaceIdMapping.put(nodeCsvId, node.getId());
+                    idMapping.put(idSpace, nodeCsvId, node.getId());
                 }
 
                 // add labels
@@ -141,6 +140,7 @@ public class CsvEntityLoader {
                     }
                 }
                 reporter.update(1, 0, props++);
+                btx.increment();
             }
         }
     }
@@ -148,7 +148,8 @@ public class CsvEntityLoader {
     /**
      * Loads relationships from a CSV file with given relationship types to an online database,
      * using the {@code idMapping} created by the
-     * {@link #loadNodes(String, List, GraphDatabaseService, Map)} method.
+     * {@link #loadNodes(String, List, GraphDatabaseService, CsvIdMapping)} method.
+     * The file is streamed, so only the rows of the current batch are kept in memory.
      *
      * @param fileName URI of the CSV file representing the relationship
      * @param type relationship type to be applied to each relationships
@@ -158,7 +159,27 @@ public class CsvEntityLoader {
      */
     public void loadRelationships(
             final String fileName, final String type, final GraphDatabaseService db,
-            final Map<String, Map<String, Long>> idMapping) throws IOException {
+            final CsvIdMapping idMapping) throws IOException {
+        try (BatchTransaction btx = new BatchTransaction(db, clc.getBatchSize(), reporter)) {
+            readRelationships(fileName, type, idMapping, row -> {
+                final int props = createRelationship(btx.getTransaction(), row);
+                reporter.update(0, 1, props);
+                btx.increment();
+            });
+        }
+    }
+
+    /**
+     * Streams the rows of a relationship CSV file, resolving their start and end nodes with the {@code idMapping}.
+     *
+     * @param fileName URI of the CSV file representing the relationship
+     * @param type relationship type to be applied to the rows without a type column
+     * @param idMapping stores mapping between the CSV ids and the DB's internal node ids
+     * @param consumer called for each row, in file order
+     * @throws IOException
+     */
+    void readRelationships(final String fileName, final String type, final CsvIdMapping idMapping,
+                           final Consumer<RelationshipRow> consumer) throws IOException {
         final CountingReader reader = FileUtils.readerFor(fileName);
         final String header = readFirstLine(reader);
         final List<CsvHeaderField> fields = CsvHeaderFields.processHeader(header, clc.getDelimiter(), clc.getQuotationCharacter());
@@ -195,48 +216,78 @@ public class CsvEntityLoader {
         final String[] loadCsvCompatibleHeader = fields.stream().map(f -> f.getName()).toArray(String[]::new);
 
         int lineNo = 0;
-        try (BatchTransaction btx = new BatchTransaction(db, clc.getBatchSize(), reporter)) {
-            for (String[] line : csv.readAll()) {
-                lineNo++;
-
-                final EnumSet<Results> results = EnumSet.of(Results.map);
-                final CSVResult result = new CSVResult(
-                        loadCsvCompatibleHeader, line, lineNo, false, mapping, Collections.emptyList(), results
-                );
+        String[] line;
+        while ((line = csv.readNext()) != null) {
+            lineNo++;
+
+            final EnumSet<Results> results = EnumSet.of(Results.map);
+            final CSVResult result = new CSVResult(
+                    loadCsvCompatibleHeader, line, lineNo, false, mapping, Collections.emptyList(), results
+            );
+
+            final Object startId = result.map.get(CsvLoaderConstants.START_ID_ATTR);
+            final long startInternalId = idMapping.get(startIdField.getIdSpace(), (String) startId);
+            if (startInternalId == CsvIdMapping.NOT_FOUND) {
+                throw new IllegalStateException("Node for id space " + startIdField.getIdSpace() + " and id " + startId + " not found");
+            }
 
-                final Object startId = result.map.get(CsvLoaderConstants.START_ID_ATTR);
-                final Object startInternalId = idMapping.get(startIdField.getIdSpace()).get(startId);
-                if (startInternalId == null) {
-                    throw new IllegalStateException("Node for id space " + endIdField.getIdSpace() + " and id " + startId + " not found");
-                }
-                final Node source = btx.getTransaction().getNodeById((long) startInternalId);
+            final Object endId = result.map.get(CsvLoaderConstants.END_ID_ATTR);
+            final long endInternalId = idMapping.get(endIdField.getIdSpace(), (String) endId);
+            if (endInternalId == CsvIdMapping.NOT_FOUND) {
+                throw new IllegalStateException("Node for id space " + endIdField.getIdSpace() + " and id " + endId + " not found");
+            }
 
-                final Object endId = result.map.get(CsvLoaderConstants.END_ID_ATTR);
-                final Object endInternalId = idMapping.get(endIdField.getIdSpace()).get(endId);
-                if (endInternalId == null) {
-                    throw new IllegalStateException("Node for id space " + endIdField.getIdSpace() + " and id " + endId + " not found");
-                }
-                final Node target = btx.getTransaction().getNodeById((long) endInternalId);
-
-                final String currentType;
-                final Object overridingType = result.map.get(CsvLoaderConstants.TYPE_ATTR);
-                if (overridingType != null && !((String) overridingType).isEmpty()) {
-                    currentType = (String) overridingType;
-                } else {
-                    currentType = type;
-                }
-                final Relationship rel = source.createRelationshipTo(target, RelationshipType.withName(currentType));
+            final String currentType;
+            final Object overridingType = result.map.get(CsvLoaderConstants.TYPE_ATTR);
+            if (overridingType != null && !((String) overridingType).isEmpty()) {
+                currentType = (String) overridingType;
+            } else {
+                currentType = type;
+            }
 
-                // add properties
-                int props = 0;
-                for (CsvHeaderField field : edgePropertiesFields) {
-                    final String name = field.getName();
-                    Object value = result.map.get(name);
-                    boolean propertyAdded = CsvPropertyConverter.addPropertyToGraphEntity(rel, field, value);
-                    props += propertyAdded ? 1 : 0;
-                }
-                reporter.update(0, 1, props);
+            final Object[] values = new Object[edgePropertiesFields.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = result.map.get(edgePropertiesFields.get(i).getName());
             }
+            consumer.accept(new RelationshipRow(fileName, startInternalId, endInternalId, currentType, edgePropertiesFields, values));
+        }
+    }
+
+    /**
+     * @return the number of properties set on the created relationship
+     */
+    static int createRelationship(Transaction tx, RelationshipRow row) {
+        final Node source = tx.getNodeById(row.start);
+        final Node target = tx.getNodeById(row.end);
+        final Relationship rel = source.createRelationshipTo(target, RelationshipType.withName(row.type));
+
+        // add properties
+        int props = 0;
+        for (int i = 0; i < row.values.length; i++) {
+            boolean propertyAdded = CsvPropertyConverter.addPropertyToGraphEntity(rel, row.fields.get(i), row.values[i]);
+            props += propertyAdded ? 1 : 0;
+        }
+        return props;
+    }
+
+    /**
+     * A parsed relationship row, whose start and end nodes have been resolved to internal node ids
+     */
+    static class RelationshipRow {
+        final String fileName;
+        final long start;
+        final long end;
+        final String type;
+        final List<CsvHeaderField> fields;
+        final Object[] values;
+
+        RelationshipRow(String fileName, long start, long end, String type, List<CsvHeaderField> fields, Object[] values) {
+            this.fileName = fileName;
+            this.start = start;
+            this.end = end;
+            this.type = type;
+            this.fields = fields;
+            this.values = values;
         }
     }
 
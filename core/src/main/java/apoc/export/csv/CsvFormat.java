@@ -14,7 +14,6 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
-import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
 
@@ -23,6 +22,7 @@ import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -30,15 +30,14 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 import static apoc.export.util.BulkImportUtil.formatHeader;
 import static apoc.export.util.MetaInformation.collectPropTypesForNodes;
 import static apoc.export.util.MetaInformation.collectPropTypesForRelationships;
 import static apoc.export.util.MetaInformation.getLabelsString;
-import static apoc.export.util.MetaInformation.updateKeyTypes;
 import static apoc.util.Util.joinLabels;
 
 /**
@@ -52,6 +51,8 @@ public class CsvFormat implements Format {
 
     private static final String[] NODE_HEADER_FIXED_COLUMNS = {"_id:id", "_labels:label"};
     private static final String[] REL_HEADER_FIXED_COLUMNS = {"_start:id", "_end:id", "_type:label"};
+    /** temporary files of a bulk import export open at the same time, the others are reopened when written to */
+    private static final int MAX_OPEN_SPILL_FILES = 64;
 
     public CsvFormat(GraphDatabaseService db) {
         this.db = db;
@@ -144,6 +145,10 @@ public class CsvFormat implements Format {
     }
 
     public void writeAll(SubGraph graph, Reporter reporter, ExportConfig config, CSVWriter out) {
+        if (config.isSinglePass()) {
+            writeAllSinglePass(graph, reporter, config, out);
+            return;
+        }
         Map<String,Class> nodePropTypes = collectPropTypesForNodes(graph);
         Map<String,Class> relPropTypes = collectPropTypesForRelationships(graph);
         List<String> nodeHeader = generateHeader(nodePropTypes, config.useTypes(), NODE_HEADER_FIXED_COLUMNS);
@@ -157,62 +162,123 @@ public class CsvFormat implements Format {
         writeRels(graph, out, reporter, relHeader.subList(REL_HEADER_FIXED_COLUMNS.length, relHeader.size()), cols, nodeHeader.size(), config.getBatchSize(), config.getDelim());
     }
 
+    /**
+     * Same output as {@link #writeAll(SubGraph, Reporter, ExportConfig, CSVWriter)}, but the graph is read only once:
+     * the rows are spilled to temporary files while the property types are collected for the header.
+     */
+    private void writeAllSinglePass(SubGraph graph, Reporter reporter, ExportConfig config, CSVWriter out) {
+        CsvSpillFile.OpenWriters writers = new CsvSpillFile.OpenWriters(2);
+        try (CsvSpillFile nodes = new CsvSpillFile(NODE_HEADER_FIXED_COLUMNS.length, null, writers);
+             CsvSpillFile rels = new CsvSpillFile(REL_HEADER_FIXED_COLUMNS.length, null, writers)) {
+            int batchSize = config.getBatchSize();
+            int count = 0;
+            for (Node node : graph.getNodes()) {
+                int props = nodes.add(node, String.valueOf(node.getId()), getLabelsString(node));
+                reporter.update(0, 0, props);
+                if (batchSize == -1 || ++count % batchSize == 0) {
+                    reporter.update(count, 0, 0);
+                    count = 0;
+                }
+            }
+            reporter.update(count, 0, 0);
+            count = 0;
+            for (Relationship rel : graph.getRelationships()) {
+                int props = rels.add(rel, String.valueOf(rel.getStartNode().getId()), String.valueOf(rel.getEndNode().getId()), rel.getType().name());
+                reporter.update(0, 0, props);
+                if (batchSize == -1 || ++count % batchSize == 0) {
+                    reporter.update(0, count, 0);
+                    count = 0;
+                }
+            }
+            reporter.update(0, count, 0);
+
+            List<String> nodeHeader = generateHeader(nodes.getKeyTypes(), config.useTypes(), NODE_HEADER_FIXED_COLUMNS);
+            List<String> relHeader = generateHeader(rels.getKeyTypes(), config.useTypes(), REL_HEADER_FIXED_COLUMNS);
+            List<String> header = new ArrayList<>(nodeHeader);
+            header.addAll(relHeader);
+            out.writeNext(header.toArray(new String[header.size()]), applyQuotesToAll);
+
+            String[] row = new String[header.size()];
+            writeSpilledRows(nodes, out, row, 0, nodeHeader.subList(NODE_HEADER_FIXED_COLUMNS.length, nodeHeader.size()));
+            Arrays.fill(row, null);
+            writeSpilledRows(rels, out, row, nodeHeader.size(), relHeader.subList(REL_HEADER_FIXED_COLUMNS.length, relHeader.size()));
+        }
+    }
+
+    private void writeSpilledRows(CsvSpillFile file, CSVWriter out, String[] row, int offset, List<String> fields) {
+        file.forEach((fixed, props) -> {
+            System.arraycopy(fixed, 0, row, offset, fixed.length);
+            int column = offset + fixed.length;
+            for (String field : fields) {
+                row[column++] = props.getOrDefault(field, "");
+            }
+            out.writeNext(row, applyQuotesToAll);
+        });
+    }
+
+    /**
+     * Writes one file per label set and relationship type with a single pass over the graph: the rows are kept, and
+     * spilled to temporary files when there are many, while the property types of each file are collected, then
+     * written out after their header. At most {@link #MAX_OPEN_SPILL_FILES} temporary files are open at a time.
+     */
     private void writeAllBulkImport(SubGraph graph, Reporter reporter, ExportConfig config, ExportFileManager writer) {
-        Map<Iterable<Label>, List<Node>> objectNodes = StreamSupport.stream(graph.getNodes().spliterator(), false)
-                .collect(Collectors.groupingBy(Node::getLabels));
-        Map<RelationshipType, List<Relationship>> objectRels = StreamSupport.stream(graph.getRelationships().spliterator(), false)
-                .collect(Collectors.groupingBy(Relationship::getType));
-        writeNodesBulkImport(reporter, config, writer, objectNodes);
-        writeRelsBulkImport(reporter, config, writer, objectRels);
+        CsvSpillFile.OpenWriters writers = new CsvSpillFile.OpenWriters(MAX_OPEN_SPILL_FILES);
+        Map<String, CsvSpillFile> nodeFiles = new LinkedHashMap<>();
+        Map<String, CsvSpillFile> relFiles = new LinkedHashMap<>();
+        try {
+            for (Node node : graph.getNodes()) {
+                Iterable<Label> labels = node.getLabels();
+                CsvSpillFile file = nodeFiles.computeIfAbsent(joinLabels(labels, "."), key -> new CsvSpillFile(1, labels, writers));
+                int props = file.add(node, String.valueOf(node.getId()));
+                reporter.update(1, 0, props);
+            }
+            for (Relationship rel : graph.getRelationships()) {
+                String type = rel.getType().name();
+                CsvSpillFile file = relFiles.computeIfAbsent(type, key -> new CsvSpillFile(2, type, writers));
+                int props = file.add(rel, String.valueOf(rel.getStartNodeId()), String.valueOf(rel.getEndNodeId()));
+                reporter.update(0, 1, props);
+            }
+            writeNodesBulkImport(config, writer, nodeFiles);
+            writeRelsBulkImport(config, writer, relFiles);
+        } finally {
+            nodeFiles.values().forEach(CsvSpillFile::close);
+            relFiles.values().forEach(CsvSpillFile::close);
+        }
     }
 
-    private void writeNodesBulkImport(Reporter reporter, ExportConfig config, ExportFileManager writer, Map<Iterable<Label>, List<Node>> objectNode) {
-        objectNode.entrySet().forEach(entrySet -> {
-            Set<String> headerNode = generateHeaderNodeBulkImport(entrySet);
-
-            List<List<String>> rows = entrySet.getValue()
-                    .stream()
-                    .map(n -> {
-                        reporter.update(1, 0, n.getAllProperties().size());
-                        return headerNode.stream().map(s -> {
-                            if (s.equals(":LABEL")) {
-                                return joinLabels(entrySet.getKey(), config.getArrayDelim());
-                            }
-                            String prop = s.split(":")[0];
-                            return "".equals(prop) ? String.valueOf(n.getId()) : cleanPoint(FormatUtils.toString(n.getProperty(prop, "")));
-                        }).collect(Collectors.toList());
-                    })
-                    .collect(Collectors.toList());
-
-            String type = joinLabels(entrySet.getKey(), ".");
-            writeRow(config, writer, headerNode, rows, "nodes." + type);
+    private void writeNodesBulkImport(ExportConfig config, ExportFileManager writer, Map<String, CsvSpillFile> nodeFiles) {
+        nodeFiles.forEach((type, file) -> {
+            Set<String> headerNode = generateHeaderNodeBulkImport(file.getKeyTypes());
+            List<String> keys = new ArrayList<>(file.getKeyTypes().keySet());
+            String labels = joinLabels((Iterable<Label>) file.getGroup(), config.getArrayDelim());
+
+            writeRow(config, writer, headerNode, "nodes." + type, csvWriter -> file.forEach((fixed, props) -> {
+                String[] row = new String[keys.size() + 2];
+                row[0] = fixed[0];
+                for (int i = 0; i < keys.size(); i++) {
+                    row[i + 1] = cleanPoint(props.getOrDefault(keys.get(i), ""));
+                }
+                row[row.length - 1] = labels;
+                csvWriter.writeNext(row, false);
+            }));
         });
     }
 
-    private void writeRelsBulkImport(Reporter reporter, ExportConfig config, ExportFileManager writer, Map<RelationshipType, List<Relationship>> objectRel) {
-        objectRel.entrySet().forEach(entrySet -> {
-            Set<String> headerRel = generateHeaderRelationshipBulkImport(entrySet);
-
-            List<List<String>> rows = entrySet.getValue()
-                    .stream()
-                    .map(r -> {
-                        reporter.update(0, 1, r.getAllProperties().size());
-                        return headerRel.stream().map(s -> {
-                            switch (s) {
-                                case ":START_ID":
-                                    return String.valueOf(r.getStartNodeId());
-                                case ":END_ID":
-                                    return String.valueOf(r.getEndNodeId());
-                                case ":TYPE":
-                                    return entrySet.getKey().name();
-                                default:
-                                    String prop = s.split(":")[0];
-                                    return "".equals(prop) ? String.valueOf(r.getId()) : cleanPoint(FormatUtils.toString(r.getProperty(prop, "")));
-                            }
-                        }).collect(Collectors.toList());
-                    })
-                    .collect(Collectors.toList());
-            writeRow(config, writer, headerRel, rows, "relationships." + entrySet.getKey().name());
+    private void writeRelsBulkImport(ExportConfig config, ExportFileManager writer, Map<String, CsvSpillFile> relFiles) {
+        relFiles.forEach((type, file) -> {
+            Set<String> headerRel = generateHeaderRelationshipBulkImport(file.getKeyTypes());
+            List<String> keys = new ArrayList<>(file.getKeyTypes().keySet());
+
+            writeRow(config, writer, headerRel, "relationships." + type, csvWriter -> file.forEach((fixed, props) -> {
+                String[] row = new String[keys.size() + 3];
+                row[0] = fixed[0];
+                row[1] = fixed[1];
+                row[2] = type;
+                for (int i = 0; i < keys.size(); i++) {
+                    row[i + 3] = cleanPoint(props.getOrDefault(keys.get(i), ""));
+                }
+                csvWriter.writeNext(row, false);
+            }));
         });
     }
 
@@ -223,11 +289,9 @@ public class CsvFormat implements Format {
         return point;
     }
 
-    private Set<String> generateHeaderNodeBulkImport(Map.Entry<Iterable<Label>, List<Node>> entrySet) {
+    private Set<String> generateHeaderNodeBulkImport(Map<String, Class> keyTypes) {
         Set<String> headerNode = new LinkedHashSet<>();
         headerNode.add(":ID");
-        Map<String,Class> keyTypes = new LinkedHashMap<>();
-        entrySet.getValue().forEach(node -> updateKeyTypes(keyTypes, node));
         final LinkedHashSet<String> otherFields = keyTypes.entrySet().stream()
                 .map(stringClassEntry -> formatHeader(stringClassEntry))
                 .collect(Collectors.toCollection(LinkedHashSet::new));
@@ -236,10 +300,8 @@ public class CsvFormat implements Format {
         return headerNode;
     }
 
-    private Set<String> generateHeaderRelationshipBulkImport(Map.Entry<RelationshipType, List<Relationship>> entrySet) {
+    private Set<String> generateHeaderRelationshipBulkImport(Map<String, Class> keyTypes) {
         Set<String> headerNode = new LinkedHashSet<>();
-        Map<String,Class> keyTypes = new LinkedHashMap<>();
-        entrySet.getValue().forEach(relationship -> updateKeyTypes(keyTypes, relationship));
         headerNode.add(":START_ID");
         headerNode.add(":END_ID");
         headerNode.add(":TYPE");
@@ -247,7 +309,7 @@ public class CsvFormat implements Format {
         return headerNode;
     }
 
-    private void writeRow(ExportConfig config, ExportFileManager writer, Set<String> headerNode, List<List<String>> rows, String name) {
+    private void writeRow(ExportConfig config, ExportFileManager writer, Set<String> headerNode, String name, Consumer<CSVWriter> rows) {
         try (PrintWriter pw = writer.getPrintWriter(name);
              CSVWriter csvWriter = getCsvWriter(pw, config)) {
             if (config.isSeparateHeader()) {
@@ -258,7 +320,7 @@ public class CsvFormat implements Format {
             } else {
                 csvWriter.writeNext(headerNode.toArray(new String[headerNode.size()]), false);
             }
-            rows.forEach(row -> csvWriter.writeNext(row.toArray(new String[row.size()]), false));
+            rows.accept(csvWriter);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
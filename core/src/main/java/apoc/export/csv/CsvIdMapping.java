@@ -0,0 +1,210 @@
+package apoc.export.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Mapping between the ids of the csv files and the internal ids of the imported nodes, for each id space.
+ *
+ * Each id space is an open-addressing hash table made of two primitive arrays, whose slots point to entries
+ * holding the csv id and the node id. The entries are stored outside of the java heap, in direct memory or,
+ * when spilled, in a memory-mapped temporary file; so the heap used by the mapping is 12 bytes per slot and
+ * no object is kept per imported node.
+ */
+class CsvIdMapping implements AutoCloseable {
+
+    static final long NOT_FOUND = -1;
+
+    private static final int CHUNK_SHIFT = 24;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    /** node id and length of the csv id */
+    private static final int ENTRY_HEADER = Long.BYTES + Integer.BYTES;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final Map<String, IdSpace> idSpaces = new HashMap<>();
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final RandomAccessFile spillFile;
+    private final File file;
+    private int position = CHUNK_SIZE;
+
+    /**
+     * @param spill true to store the entries in a memory-mapped temporary file instead of direct memory
+     */
+    CsvIdMapping(boolean spill) {
+        if (spill) {
+            try {
+                this.file = File.createTempFile("apoc-import-csv-", ".ids");
+                this.file.deleteOnExit();
+                this.spillFile = new RandomAccessFile(file, "rw");
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot create a temporary file for the id mapping", e);
+            }
+        } else {
+            this.file = null;
+            this.spillFile = null;
+        }
+    }
+
+    /**
+     * @return false if the id space already contains the given id, in which case the mapping is left unchanged
+     */
+    boolean put(String idSpace, String id, long nodeId) {
+        return idSpaces.computeIfAbsent(idSpace, k -> new IdSpace()).put(toBytes(id), nodeId);
+    }
+
+    /**
+     * @return the internal id of the node imported with the given id, or {@link #NOT_FOUND}
+     */
+    long get(String idSpace, String id) {
+        IdSpace space = idSpaces.get(idSpace);
+        return space == null ? NOT_FOUND : space.get(toBytes(id));
+    }
+
+    boolean contains(String idSpace, String id) {
+        return get(idSpace, id) != NOT_FOUND;
+    }
+
+    private static byte[] toBytes(String id) {
+        // as for the boxed map used before, a missing id is a valid key
+        return id == null ? new byte[0] : id.getBytes(UTF_8);
+    }
+
+    private static int hash(byte[] key) {
+        int h = 1;
+        for (byte b : key) {
+            h = 31 * h + b;
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the address of the new entry
+     */
+    private long append(byte[] key, long nodeId) {
+        int size = ENTRY_HEADER + key.length;
+        if (size > CHUNK_SIZE) {
+            throw new IllegalArgumentException("Id too long to be imported: " + new String(key, 0, 100, UTF_8) + "...");
+        }
+        if (position + size > CHUNK_SIZE) {
+            chunks.add(allocateChunk(chunks.size()));
+            position = 0;
+        }
+        long address = ((long) (chunks.size() - 1) << CHUNK_SHIFT) | position;
+        ByteBuffer chunk = chunks.get(chunks.size() - 1);
+        chunk.putLong(position, nodeId);
+        chunk.putInt(position + Long.BYTES, key.length);
+        for (int i = 0; i < key.length; i++) {
+            chunk.put(position + ENTRY_HEADER + i, key[i]);
+        }
+        position += size;
+        return address;
+    }
+
+    private ByteBuffer allocateChunk(int index) {
+        if (spillFile == null) {
+            return ByteBuffer.allocateDirect(CHUNK_SIZE);
+        }
+        try {
+            return spillFile.getChannel().map(FileChannel.MapMode.READ_WRITE, (long) index * CHUNK_SIZE, CHUNK_SIZE);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot extend the temporary file of the id mapping", e);
+        }
+    }
+
+    private boolean keyEquals(long address, byte[] key) {
+        ByteBuffer chunk = chunks.get((int) (address >>> CHUNK_SHIFT));
+        int offset = (int) (address & CHUNK_MASK);
+        if (chunk.getInt(offset + Long.BYTES) != key.length) return false;
+        for (int i = 0; i < key.length; i++) {
+            if (chunk.get(offset + ENTRY_HEADER + i) != key[i]) return false;
+        }
+        return true;
+    }
+
+    private long nodeId(long address) {
+        return chunks.get((int) (address >>> CHUNK_SHIFT)).getLong((int) (address & CHUNK_MASK));
+    }
+
+    @Override
+    public void close() {
+        idSpaces.clear();
+        // direct and mapped buffers are released once they are garbage collected
+        chunks.clear();
+        if (spillFile != null) {
+            try {
+                spillFile.close();
+            } catch (IOException e) {
+                // ignore, the file is deleted anyway
+            }
+            file.delete();
+        }
+    }
+
+    private class IdSpace {
+        /** address + 1 of the entry of each slot, 0 for a free slot */
+        private long[] addresses = new long[INITIAL_CAPACITY];
+        private int[] hashes = new int[INITIAL_CAPACITY];
+        private int size;
+
+        long get(byte[] key) {
+            int hash = hash(key);
+            int mask = addresses.length - 1;
+            for (int slot = hash & mask; addresses[slot] != 0; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && keyEquals(addresses[slot] - 1, key)) {
+                    return nodeId(addresses[slot] - 1);
+                }
+            }
+            return NOT_FOUND;
+        }
+
+        boolean put(byte[] key, long nodeId) {
+            if (size >= addresses.length / 4 * 3) {
+                grow();
+            }
+            int hash = hash(key);
+            int mask = addresses.length - 1;
+            int slot = hash & mask;
+            for (; addresses[slot] != 0; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && keyEquals(addresses[slot] - 1, key)) {
+                    return false;
+                }
+            }
+            addresses[slot] = append(key, nodeId) + 1;
+            hashes[slot] = hash;
+            size++;
+            return true;
+        }
+
+        private void grow() {
+            if (addresses.length == MAX_CAPACITY) {
+                throw new IllegalStateException("Too many ids in the same id space: " + size);
+            }
+            long[] oldAddresses = addresses;
+            int[] oldHashes = hashes;
+            addresses = new long[oldAddresses.length * 2];
+            hashes = new int[oldAddresses.length * 2];
+            int mask = addresses.length - 1;
+            for (int i = 0; i < oldAddresses.length; i++) {
+                if (oldAddresses[i] == 0) continue;
+                int slot = oldHashes[i] & mask;
+                while (addresses[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                addresses[slot] = oldAddresses[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package apoc.export.csv;
+
+import apoc.export.util.FormatUtils;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import org.neo4j.graphdb.Entity;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static apoc.export.util.MetaInformation.updateKeyTypes;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Rows of entities kept while their property types are collected, so that a csv file whose header depends on all of
+ * its rows can be written with a single pass over the graph.
+ *
+ * The rows are held in memory up to {@link #MEMORY_ROWS} rows, and spilled to a temporary file beyond that, so that
+ * small exports don't touch the disk and large ones don't keep the entities in memory. The writers of the temporary
+ * files are shared through {@link OpenWriters}, which bounds the number of files open at the same time.
+ *
+ * Each row holds the fixed columns of the entity followed by its properties as key/value pairs.
+ */
+class CsvSpillFile implements AutoCloseable {
+
+    static final int MEMORY_ROWS = 10_000;
+
+    /**
+     * The writers of the spill files open at the same time, the least recently written one is closed when there are
+     * more than <code>maxOpen</code>, and opened again in append mode when it's written to again
+     */
+    static class OpenWriters {
+        private final Map<CsvSpillFile, Boolean> open;
+
+        OpenWriters(int maxOpen) {
+            this.open = new LinkedHashMap<CsvSpillFile, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<CsvSpillFile, Boolean> eldest) {
+                    if (size() <= maxOpen) return false;
+                    eldest.getKey().closeWriter();
+                    return true;
+                }
+            };
+        }
+
+        void touch(CsvSpillFile file) {
+            open.put(file, Boolean.TRUE);
+        }
+
+        void remove(CsvSpillFile file) {
+            open.remove(file);
+        }
+    }
+
+    private final OpenWriters writers;
+    private final Map<String, Class> keyTypes = new LinkedHashMap<>();
+    private final int fixedColumns;
+    private final Object group;
+    private List<String[]> rows = new ArrayList<>();
+    private File file;
+    private CSVWriter writer;
+
+    CsvSpillFile(int fixedColumns, Object group, OpenWriters writers) {
+        this.fixedColumns = fixedColumns;
+        this.group = group;
+        this.writers = writers;
+    }
+
+    /**
+     * @return the value shared by all the entities of this file, e.g. their labels
+     */
+    Object getGroup() {
+        return group;
+    }
+
+    Map<String, Class> getKeyTypes() {
+        return keyTypes;
+    }
+
+    /**
+     * @return the number of properties of the entity
+     */
+    int add(Entity entity, String... fixed) {
+        updateKeyTypes(keyTypes, entity);
+        Map<String, Object> properties = entity.getAllProperties();
+        String[] row = Arrays.copyOf(fixed, fixedColumns + 2 * properties.size());
+        int i = fixedColumns;
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            row[i++] = property.getKey();
+            row[i++] = FormatUtils.toString(property.getValue());
+        }
+        rows.add(row);
+        if (rows.size() >= MEMORY_ROWS) {
+            spill();
+        }
+        return properties.size();
+    }
+
+    private void spill() {
+        try {
+            if (file == null) {
+                file = File.createTempFile("apoc-export-csv-", ".spill");
+                file.deleteOnExit();
+            }
+            if (writer == null) {
+                writer = new CSVWriter(Files.newBufferedWriter(file.toPath(), UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+            }
+            writers.touch(this);
+            for (String[] row : rows) {
+                writer.writeNext(row);
+            }
+            rows = new ArrayList<>();
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot write the temporary file of the export", e);
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot write the temporary file of the export", e);
+        } finally {
+            writer = null;
+        }
+    }
+
+    /**
+     * Reads back the rows in the order they were added, as their fixed columns and a map of the formatted property
+     * values
+     */
+    void forEach(BiConsumer<String[], Map<String, String>> consumer) {
+        if (file != null) {
+            writers.remove(this);
+            closeWriter();
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), UTF_8);
+                 // quotes are escaped by doubling them, as the writer does by default
+                 CSVReader csv = new CSVReader(reader, CSVWriter.DEFAULT_SEPARATOR, CSVWriter.DEFAULT_QUOTE_CHARACTER, CSVWriter.NO_ESCAPE_CHARACTER)) {
+                String[] row;
+                while ((row = csv.readNext()) != null) {
+                    accept(consumer, row);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot read back the temporary file of the export", e);
+            }
+        }
+        for (String[] row : rows) {
+            accept(consumer, row);
+        }
+    }
+
+    private void accept(BiConsumer<String[], Map<String, String>> consumer, String[] row) {
+        Map<String, String> properties = new HashMap<>();
+        for (int i = fixedColumns; i + 1 < row.length; i += 2) {
+            properties.put(row[i], row[i + 1]);
+        }
+        consumer.accept(Arrays.copyOf(row, fixedColumns), properties);
+    }
+
+    @Override
+    public void close() {
+        rows = new ArrayList<>();
+        writers.remove(this);
+        try {
+            closeWriter();
+        } catch (RuntimeException e) {
+            // ignore, the file is deleted anyway
+        }
+        if (file != null) file.delete();
+    }
+}
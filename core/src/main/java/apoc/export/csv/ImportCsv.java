@@ -8,9 +8,10 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.stream.Stream;
 
 public class ImportCsv {
@@ -37,29 +38,53 @@ public class ImportCsv {
             @Name("relationships") List<Map<String, String>> relationships,
             @Name("config") Map<String, Object> config
     ) throws Exception {
-        ProgressInfo result =
-                Util.inThread(pools, () -> {
-                    final ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo("progress.csv", "file", "csv"));
+        final CsvLoaderConfig clc = CsvLoaderConfig.from(config);
+        final Callable<List<ProgressInfo>> importer = () -> {
+            final ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo("progress.csv", "file", "csv"));
 
-                    final CsvLoaderConfig clc = CsvLoaderConfig.from(config);
-                    final CsvEntityLoader loader = new CsvEntityLoader(clc, reporter, log);
+            final CsvEntityLoader loader = new CsvEntityLoader(clc, reporter, log);
 
-                    final Map<String, Map<String, Long>> idMapping = new HashMap<>();
-                    for (Map<String, Object> node : nodes) {
-                        final String fileName = (String) node.get("fileName");
-                        final List<String> labels = (List<String>) node.get("labels");
-                        loader.loadNodes(fileName, labels, db, idMapping);
+            // in parallel mode the total is followed by the progress of each file
+            final List<ProgressInfo> files = new ArrayList<>();
+            try (CsvIdMapping idMapping = new CsvIdMapping(clc.getSpillIdMapping())) {
+                for (Map<String, Object> node : nodes) {
+                    final String fileName = (String) node.get("fileName");
+                    final List<String> labels = (List<String>) node.get("labels");
+                    final ProgressInfo before = new ProgressInfo(reporter.getTotal());
+                    loader.loadNodes(fileName, labels, db, idMapping);
+                    if (clc.getParallel()) {
+                        files.add(fileProgress(fileName, before, reporter.getTotal()));
                     }
+                }
 
+                if (clc.getParallel()) {
+                    files.addAll(new ParallelRelationshipLoader(loader, clc, db, pools, reporter).load(relationships, idMapping));
+                } else {
                     for (Map<String, String> relationship : relationships) {
                         final String fileName = relationship.get("fileName");
                         final String type = relationship.get("type");
                         loader.loadRelationships(fileName, type, db, idMapping);
                     }
+                }
+            }
 
-                    return reporter.getTotal();
-                });
-        return Stream.of(result);
+            final List<ProgressInfo> progress = new ArrayList<>();
+            progress.add(reporter.getTotal());
+            progress.addAll(files);
+            return progress;
+        };
+        // the parallel import waits for its writes on the default pool, so it mustn't occupy one of its threads
+        List<ProgressInfo> result = clc.getParallel() ? importer.call() : Util.inThread(pools, importer);
+        return result.stream();
+    }
+
+    private static ProgressInfo fileProgress(String fileName, ProgressInfo before, ProgressInfo after) {
+        final ProgressInfo progress = new ProgressInfo(fileName, "file", "csv");
+        progress.update(after.nodes - before.nodes, after.relationships - before.relationships, after.properties - before.properties);
+        progress.rows = progress.nodes;
+        progress.time = after.time - before.time;
+        progress.done = true;
+        return progress;
     }
 
 
@@ -0,0 +1,267 @@
+package apoc.export.csv;
+
+import apoc.Pools;
+import apoc.export.csv.CsvEntityLoader.RelationshipRow;
+import apoc.export.util.ProgressReporter;
+import apoc.result.ProgressInfo;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the relationship files of <code>apoc.import.csv</code> with <code>parallel: true</code>.
+ *
+ * Every file is parsed by its own reader on the io pool, which also resolves the start and end node of each row.
+ * The rows are partitioned by the residues of their start and end node ids modulo <code>2 * concurrency</code>,
+ * one bucket per unordered pair of residues. Buckets sharing no residue touch disjoint sets of nodes, so they are
+ * written concurrently on the default pool without ever competing for the lock of a node: a bucket is written once
+ * it holds <code>batchSize</code> rows and no other bucket of its residues is being written. When the rows buffered
+ * by all the buckets exceed <code>2 * concurrency * batchSize</code> the largest buckets are written even if they
+ * are not full, so memory is bounded by the batch size and concurrency rather than by the size of the files.
+ *
+ * The rows are read and the writes scheduled on the calling thread, which must not be a thread of the default pool
+ * as it waits for the writes.
+ */
+class ParallelRelationshipLoader {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final CsvEntityLoader loader;
+    private final GraphDatabaseService db;
+    private final Pools pools;
+    private final ProgressReporter reporter;
+    private final int batchSize;
+    private final int residues;
+    /** the residues of each bucket */
+    private final int[][] pairs;
+    private final List<List<RelationshipRow>> buckets;
+    /** the residues of the buckets being written */
+    private final boolean[] busy;
+    private final long maxBuffered;
+    private final Set<Future<Integer>> running = new HashSet<>();
+    private CompletionService<Integer> writes;
+    private long buffered;
+    private final Map<String, ProgressInfo> progress = new LinkedHashMap<>();
+    private volatile boolean cancelled;
+    private long start;
+
+    ParallelRelationshipLoader(CsvEntityLoader loader, CsvLoaderConfig clc, GraphDatabaseService db, Pools pools, ProgressReporter reporter) {
+        this.loader = loader;
+        this.db = db;
+        this.pools = pools;
+        this.reporter = reporter;
+        this.batchSize = clc.getBatchSize();
+        this.residues = 2 * clc.getConcurrency();
+        this.pairs = new int[residues * (residues + 1) / 2][];
+        this.buckets = new ArrayList<>(pairs.length);
+        for (int b = 0; b < residues; b++) {
+            for (int a = 0; a <= b; a++) {
+                pairs[bucket(a, b)] = new int[]{a, b};
+            }
+        }
+        for (int i = 0; i < pairs.length; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        this.busy = new boolean[residues];
+        this.maxBuffered = (long) batchSize * residues;
+    }
+
+    private static int bucket(int a, int b) {
+        return a <= b ? b * (b + 1) / 2 + a : a * (a + 1) / 2 + b;
+    }
+
+    /**
+     * @return the progress of each file, in the order of the given files
+     */
+    List<ProgressInfo> load(List<Map<String, String>> relationships, CsvIdMapping idMapping) {
+        start = System.currentTimeMillis();
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(residues * 4);
+        List<Future<?>> readers = new ArrayList<>();
+        for (Map<String, String> relationship : relationships) {
+            final String fileName = relationship.get("fileName");
+            final String type = relationship.get("type");
+            progress.putIfAbsent(fileName, new ProgressInfo(fileName, "file", "csv"));
+            readers.add(pools.getIoExecutorService().submit(() -> read(fileName, type, idMapping, queue)));
+        }
+        writes = new ExecutorCompletionService<>(pools.getDefaultExecutorService());
+        try {
+            int finished = 0;
+            while (finished < readers.size()) {
+                Chunk chunk = queue.take();
+                if (chunk.error != null) {
+                    throw new RuntimeException("Error reading relationships from " + chunk.fileName, chunk.error);
+                }
+                if (chunk.rows == null) {
+                    finished++;
+                    continue;
+                }
+                for (RelationshipRow row : chunk.rows) {
+                    buckets.get(bucket((int) (row.start % residues), (int) (row.end % residues))).add(row);
+                }
+                buffered += chunk.rows.size();
+                collectWrites();
+                submitWrites(batchSize);
+                while (buffered > maxBuffered) {
+                    if (submitWrites(1) == 0) awaitWrite();
+                }
+            }
+            while (buffered > 0 || !running.isEmpty()) {
+                collectWrites();
+                if (submitWrites(1) == 0 && !running.isEmpty()) awaitWrite();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading relationships", e);
+        } finally {
+            cancelled = true;
+            readers.forEach(f -> f.cancel(true));
+            running.forEach(f -> f.cancel(true));
+        }
+        progress.values().forEach(p -> p.done = true);
+        return new ArrayList<>(progress.values());
+    }
+
+    private void read(String fileName, String type, CsvIdMapping idMapping, BlockingQueue<Chunk> queue) {
+        try {
+            List<RelationshipRow>[] current = new List[]{new ArrayList<>(CHUNK_SIZE)};
+            loader.readRelationships(fileName, type, idMapping, row -> {
+                current[0].add(row);
+                if (current[0].size() >= CHUNK_SIZE) {
+                    put(queue, new Chunk(fileName, current[0], null));
+                    current[0] = new ArrayList<>(CHUNK_SIZE);
+                }
+            });
+            if (!current[0].isEmpty()) {
+                put(queue, new Chunk(fileName, current[0], null));
+            }
+            put(queue, new Chunk(fileName, null, null));
+        } catch (CancellationException e) {
+            // the import failed elsewhere
+        } catch (Exception e) {
+            if (!cancelled) {
+                put(queue, new Chunk(fileName, null, e));
+            }
+        }
+    }
+
+    private void put(BlockingQueue<Chunk> queue, Chunk chunk) {
+        try {
+            while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (cancelled) throw new CancellationException();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Writes the buckets of at least <code>minRows</code> rows, the largest first, unless a bucket of one of their
+     * residues is being written
+     *
+     * @return the number of buckets submitted
+     */
+    private int submitWrites(int minRows) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int bucket = 0; bucket < buckets.size(); bucket++) {
+            int size = buckets.get(bucket).size();
+            if (size > 0 && size >= minRows) candidates.add(bucket);
+        }
+        candidates.sort(Comparator.comparingInt((Integer bucket) -> buckets.get(bucket).size()).reversed());
+        int submitted = 0;
+        for (int bucket : candidates) {
+            int[] pair = pairs[bucket];
+            if (busy[pair[0]] || busy[pair[1]]) continue;
+            busy[pair[0]] = busy[pair[1]] = true;
+            List<RelationshipRow> rows = buckets.get(bucket);
+            buckets.set(bucket, new ArrayList<>());
+            buffered -= rows.size();
+            running.add(writes.submit(() -> write(rows), bucket));
+            submitted++;
+        }
+        return submitted;
+    }
+
+    private void collectWrites() {
+        Future<Integer> done;
+        while ((done = writes.poll()) != null) {
+            completed(done);
+        }
+    }
+
+    private void awaitWrite() throws InterruptedException {
+        completed(writes.take());
+    }
+
+    private void completed(Future<Integer> done) {
+        running.remove(done);
+        try {
+            int[] pair = pairs[done.get()];
+            busy[pair[0]] = busy[pair[1]] = false;
+        } catch (InterruptedException | ExecutionException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new RuntimeException("Error writing relationships: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void write(List<RelationshipRow> rows) {
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<RelationshipRow> batch = rows.subList(from, Math.min(rows.size(), from + batchSize));
+            // relationships and properties created per file
+            Map<String, long[]> counts = new HashMap<>();
+            try (Transaction tx = db.beginTx()) {
+                for (RelationshipRow row : batch) {
+                    int props = CsvEntityLoader.createRelationship(tx, row);
+                    long[] count = counts.computeIfAbsent(row.fileName, k -> new long[2]);
+                    count[0]++;
+                    count[1] += props;
+                }
+                tx.commit();
+            }
+            long relationships = 0, properties = 0;
+            for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+                ProgressInfo info = progress.get(entry.getKey());
+                synchronized (info) {
+                    info.update(0, entry.getValue()[0], entry.getValue()[1]);
+                    info.rows += entry.getValue()[0];
+                    info.batches++;
+                    info.updateTime(start);
+                }
+                relationships += entry.getValue()[0];
+                properties += entry.getValue()[1];
+            }
+            synchronized (reporter) {
+                reporter.update(0, relationships, properties);
+            }
+        }
+    }
+
+    private static class Chunk {
+        final String fileName;
+        /** null once the file has been read completely */
+        final List<RelationshipRow> rows;
+        final Exception error;
+
+        Chunk(String fileName, List<RelationshipRow> rows, Exception error) {
+            this.fileName = fileName;
+            this.rows = rows;
+            this.error = error;
+        }
+    }
+}
@@ -27,10 +27,18 @@ public class ImportJson {
 
     @Procedure(value = "apoc.import.json", mode = Mode.WRITE)
     @Description("apoc.import.json(file,config) - imports the json list to the provided file")
-    public Stream<ProgressInfo> all(@Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+    public Stream<ProgressInfo> all(@Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+        ImportJsonConfig importJsonConfig = new ImportJsonConfig(config);
+        if (importJsonConfig.isParallel()) {
+            // the pipeline waits for its parsers on the default pool, so it runs on the calling thread
+            ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(fileName, "file", "json"));
+            try (final CountingReader reader = FileUtils.readerFor(fileName)) {
+                new JsonImportPipeline(importJsonConfig, db, pools, reporter).run(reader);
+            }
+            return Stream.of(reporter.getTotal());
+        }
         ProgressInfo result =
                 Util.inThread(pools, () -> {
-                    ImportJsonConfig importJsonConfig = new ImportJsonConfig(config);
                     ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(fileName, "file", "json"));
 
                     try (final CountingReader reader = FileUtils.readerFor(fileName);
@@ -17,6 +17,9 @@ public class ImportJsonConfig {
 
     private final String importIdName;
 
+    private final boolean parallel;
+    private final int concurrency;
+
     public ImportJsonConfig(Map<String, Object> config) {
         config = config == null ? Collections.emptyMap() : config;
         this.nodePropertyMappings = (Map<String, Map<String, String>>) config.getOrDefault("nodePropertyMappings", Collections.emptyMap());
@@ -24,6 +27,11 @@ public class ImportJsonConfig {
         this.unwindBatchSize = Util.toInteger(config.getOrDefault("unwindBatchSize", 5000));
         this.txBatchSize = Util.toInteger(config.getOrDefault("txBatchSize", 5000));
         this.importIdName = (String) config.getOrDefault("importIdName", "neo4jImportId");
+        this.parallel = Util.toBoolean(config.getOrDefault("parallel", false));
+        this.concurrency = Util.toInteger(config.getOrDefault("concurrency", Runtime.getRuntime().availableProcessors()));
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency parameter must be > 0");
+        }
     }
 
     public String typeForNode(Collection<String> labels, String property) {
@@ -49,4 +57,12 @@ public class ImportJsonConfig {
     public String getImportIdName() {
         return importIdName;
     }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
 }
@@ -0,0 +1,203 @@
+package apoc.export.json;
+
+import apoc.Pools;
+import apoc.export.util.ProgressReporter;
+import apoc.util.JsonUtil;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports a json lines file for <code>apoc.import.json</code> with <code>parallel: true</code>, as a pipeline of
+ * three stages connected by bounded queues:
+ *
+ * <ol>
+ *     <li>a reader on the io pool splitting the input into blocks of lines</li>
+ *     <li>parsers on the default pool, turning each block into rows whose properties are already converted</li>
+ *     <li>the calling thread, taking the parsed blocks in input order and writing their rows with UNWIND statements,
+ *     one per label set or relationship type, committed every <code>txBatchSize</code> rows</li>
+ * </ol>
+ *
+ * The calling thread must not be a thread of the default pool, as it waits for the parsers.
+ *
+ * Rows of the same kind are grouped even when they're interleaved, but all the nodes read before a relationship
+ * are written before it, so that it can match its start and end nodes.
+ */
+class JsonImportPipeline {
+
+    private static final int BLOCK_SIZE = 1000;
+    /** the number of rows buffered across groups is bounded to this number of UNWIND batches */
+    private static final int MAX_BUFFERED_BATCHES = 10;
+    private static final List<Row> END = Collections.emptyList();
+
+    private final JsonImporter importer;
+    private final GraphDatabaseService db;
+    private final Pools pools;
+    private final ProgressReporter reporter;
+    private final int concurrency;
+    private final int unwindBatchSize;
+    private final int txBatchSize;
+
+    private final Map<Object, List<Map<String, Object>>> batches = new LinkedHashMap<>();
+    private String currentType;
+    private long buffered;
+    private Transaction tx;
+    private long txRows;
+    private volatile boolean cancelled;
+
+    JsonImportPipeline(ImportJsonConfig config, GraphDatabaseService db, Pools pools, ProgressReporter reporter) {
+        this.importer = new JsonImporter(config, db, reporter);
+        this.db = db;
+        this.pools = pools;
+        this.reporter = reporter;
+        this.concurrency = config.getConcurrency();
+        this.txBatchSize = config.getTxBatchSize();
+        this.unwindBatchSize = Math.min(config.getUnwindBatchSize(), txBatchSize);
+    }
+
+    private static class Row {
+        final String type;
+        final Object group;
+        final Map<String, Object> param;
+        /** the number of properties as they are in the file */
+        final int propertyCount;
+
+        Row(String type, Object group, Map<String, Object> param, int propertyCount) {
+            this.type = type;
+            this.group = group;
+            this.param = param;
+            this.propertyCount = propertyCount;
+        }
+    }
+
+    void run(Reader input) {
+        BlockingQueue<Future<List<Row>>> blocks = new ArrayBlockingQueue<>(concurrency * 2);
+        Future<?> reader = pools.getIoExecutorService().submit(() -> read(input, blocks));
+        try {
+            tx = db.beginTx();
+            List<Row> rows;
+            while ((rows = blocks.take().get()) != END) {
+                for (Row row : rows) {
+                    add(row);
+                }
+            }
+            flushAll();
+            tx.commit();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while importing json", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error parsing json: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            cancelled = true;
+            reader.cancel(true);
+            blocks.forEach(block -> block.cancel(true));
+            if (tx != null) tx.close();
+        }
+        reporter.done();
+    }
+
+    private void read(Reader input, BlockingQueue<Future<List<Row>>> blocks) {
+        try (BufferedReader lines = new BufferedReader(input)) {
+            List<String> block = new ArrayList<>(BLOCK_SIZE);
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (line.isBlank()) continue;
+                block.add(line);
+                if (block.size() == BLOCK_SIZE) {
+                    put(blocks, parse(block));
+                    block = new ArrayList<>(BLOCK_SIZE);
+                }
+            }
+            if (!block.isEmpty()) {
+                put(blocks, parse(block));
+            }
+            put(blocks, CompletableFuture.completedFuture(END));
+        } catch (CancellationException e) {
+            // the import failed while writing
+        } catch (Exception e) {
+            if (!cancelled) {
+                put(blocks, CompletableFuture.failedFuture(e));
+            }
+        }
+    }
+
+    private Future<List<Row>> parse(List<String> block) {
+        return pools.getDefaultExecutorService().submit(() -> {
+            List<Row> rows = new ArrayList<>(block.size());
+            for (String line : block) {
+                Map<String, Object> param = JsonUtil.OBJECT_MAPPER.readValue(line, Map.class);
+                String type = (String) param.get("type");
+                Object group = importer.getGroup(type, param);
+                Map<String, Object> properties = (Map<String, Object>) param.getOrDefault("properties", Collections.emptyMap());
+                param.put("properties", importer.convertProperties(type, properties, group));
+                rows.add(new Row(type, group, param, properties.size()));
+            }
+            return rows;
+        });
+    }
+
+    private void put(BlockingQueue<Future<List<Row>>> blocks, Future<List<Row>> block) {
+        try {
+            while (!blocks.offer(block, 100, TimeUnit.MILLISECONDS)) {
+                if (cancelled) {
+                    block.cancel(true);
+                    throw new CancellationException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    private void add(Row row) {
+        if (currentType != null && !currentType.equals(row.type)) {
+            flushAll();
+        }
+        currentType = row.type;
+        importer.updateReporter(row.type, row.propertyCount);
+        List<Map<String, Object>> batch = batches.computeIfAbsent(row.group, k -> new ArrayList<>(unwindBatchSize));
+        batch.add(row.param);
+        buffered++;
+        if (batch.size() >= unwindBatchSize) {
+            batches.remove(row.group);
+            write(row.group, batch);
+        } else if (buffered >= (long) unwindBatchSize * MAX_BUFFERED_BATCHES) {
+            flushAll();
+        }
+    }
+
+    private void flushAll() {
+        for (Map.Entry<Object, List<Map<String, Object>>> entry : batches.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+        batches.clear();
+    }
+
+    private void write(Object group, List<Map<String, Object>> batch) {
+        tx.execute(importer.getQuery(currentType, group), Collections.singletonMap("rows", batch)).close();
+        buffered -= batch.size();
+        txRows += batch.size();
+        if (txRows >= txBatchSize) {
+            tx.commit();
+            tx.close();
+            tx = db.beginTx();
+            txRows = 0;
+        }
+    }
+}
@@ -76,7 +76,7 @@ public class JsonImporter implements Closeable {
 
         final Map<String, Object> properties = (Map<String, Object>) param.getOrDefault("properties", Collections.emptyMap());
         updateReporter(type, properties);
-        param.put("properties", convertProperties(type, properties, null));
+        param.put("properties", convertProperties(type, properties, "node".equals(type) ? lastLabels : lastRelTypes));
 
         paramList.add(param);
         if (paramList.size() % txBatchSize == 0) {
@@ -111,10 +111,7 @@ public class JsonImporter implements Closeable {
     }
 
     private void manageRelationship(Map<String, Object> param) {
-        Map<String, Object> relType = Util.map(
-                "start", getLabels((Map<String, Object>) param.get("start")),
-                "end", getLabels((Map<String, Object>) param.get("end")),
-                "label", getType(param));
+        Map<String, Object> relType = getRelType(param);
         if (lastRelTypes == null) {
             lastRelTypes = relType;
         }
@@ -136,7 +133,11 @@ public class JsonImporter implements Closeable {
     }
 
     private void updateReporter(String type, Map<String, Object> properties) {
-        final int size = properties.size() + 1; // +1 is for the "neo4jImportId"
+        updateReporter(type, properties.size());
+    }
+
+    void updateReporter(String type, int propertyCount) {
+        final int size = propertyCount + 1; // +1 is for the "neo4jImportId"
         switch (type) {
             case "node":
                 reporter.update(1, 0, size);
@@ -172,12 +173,32 @@ public class JsonImporter implements Closeable {
                 .collect(Collectors.toList());
     }
 
-    private Map<String, Object> convertProperties(String type, Map<String, Object> properties, String keyPrefix) {
+    /**
+     * @return the group of rows that can be written by the same statement: the labels of a node,
+     * or the type and the start and end labels of a relationship
+     */
+    Object getGroup(String type, Map<String, Object> param) {
+        switch (type) {
+            case "node":
+                return getLabels(param);
+            case "relationship":
+                return getRelType(param);
+            default:
+                throw new IllegalArgumentException("Current type not supported: " + type);
+        }
+    }
+
+    /**
+     * Flattens the nested maps and converts the values of the properties mapped to custom types
+     *
+     * @param group the group of the entity, see {@link #getGroup(String, Map)}
+     */
+    Map<String, Object> convertProperties(String type, Map<String, Object> properties, Object group) {
         return properties.entrySet().stream()
                 .flatMap(e -> {
                      if (e.getValue() instanceof Map) {
                          Map<String, Object> map = (Map<String, Object>) e.getValue();
-                         String classType = getClassType(type, e.getKey());
+                         String classType = getClassType(type, e.getKey(), group);
                          if (classType != null && "POINT".equals(classType.toUpperCase())) {
                              return Stream.of(e);
                          }
@@ -188,7 +209,7 @@ public class JsonImporter implements Closeable {
                 })
                 .map(e -> {
                     String key = e.getKey();
-                    final String classType = getClassType(type, key);
+                    final String classType = getClassType(type, key, group);
                     if (e.getValue() instanceof Collection) {
                         final List<Object> coll = convertList((Collection<Object>) e.getValue(), classType);
                         return new AbstractMap.SimpleEntry<>(e.getKey(), coll);
@@ -201,14 +222,14 @@ public class JsonImporter implements Closeable {
                 .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue()));
     }
 
-    private String getClassType(String type, String key) {
+    private String getClassType(String type, String key, Object group) {
         final String classType;
         switch (type) {
             case "node":
-                classType = importJsonConfig.typeForNode(lastLabels, key);
+                classType = importJsonConfig.typeForNode((List<String>) group, key);
                 break;
             case "relationship":
-                classType = importJsonConfig.typeForRel((String) lastRelTypes.get("label"), key);
+                classType = importJsonConfig.typeForRel((String) ((Map<String, Object>) group).get("label"), key);
                 break;
             default:
                 classType = null;
@@ -272,6 +293,13 @@ public class JsonImporter implements Closeable {
         return z != null ? Values.pointValue(crs, x, y, z) : Values.pointValue(crs, x, y);
     }
 
+    private Map<String, Object> getRelType(Map<String, Object> param) {
+        return Util.map(
+                "start", getLabels((Map<String, Object>) param.get("start")),
+                "end", getLabels((Map<String, Object>) param.get("end")),
+                "label", getType(param));
+    }
+
     private String getType(Map<String, Object> param) {
         return Util.quote((String) param.get("label"));
     }
@@ -288,24 +316,28 @@ public class JsonImporter implements Closeable {
         return join.isBlank() ? join : (":" + join);
     }
 
-    private void write(Transaction tx, List<Map<String, Object>> resultList) {
-        if (resultList.isEmpty()) return;
-        final String type = (String) resultList.get(0).get("type");
-        String query = null;
+    /**
+     * @return the UNWIND statement writing the rows of the given type and group
+     */
+    String getQuery(String type, Object group) {
         switch (type) {
             case "node":
-                query = String.format(CREATE_NODE, getLabelString(lastLabels), importJsonConfig.getImportIdName());
-                break;
+                return String.format(CREATE_NODE, getLabelString((List<String>) group), importJsonConfig.getImportIdName());
             case "relationship":
-                String rel = (String) lastRelTypes.get("label");
-                query = String.format(CREATE_RELS, getLabelString((List<String>) lastRelTypes.get("start")),
+                Map<String, Object> relType = (Map<String, Object>) group;
+                return String.format(CREATE_RELS, getLabelString((List<String>) relType.get("start")),
                         importJsonConfig.getImportIdName(),
-                        getLabelString((List<String>) lastRelTypes.get("end")),
-                        rel);
-                break;
+                        getLabelString((List<String>) relType.get("end")),
+                        relType.get("label"));
             default:
                 throw new IllegalArgumentException("Current type not supported: " + type);
         }
+    }
+
+    private void write(Transaction tx, List<Map<String, Object>> resultList) {
+        if (resultList.isEmpty()) return;
+        final String type = (String) resultList.get(0).get("type");
+        final String query = getQuery(type, "node".equals(type) ? lastLabels : lastRelTypes);
         if (StringUtils.isNotBlank(query)) {
             db.executeTransactionally(query, Collections.singletonMap("rows", resultList));
         }
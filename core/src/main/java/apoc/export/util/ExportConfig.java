@@ -154,6 +154,10 @@ public class ExportConfig {
         return toBoolean(config.getOrDefault("separateFiles", false));
     }
 
+    public boolean isSinglePass() {
+        return toBoolean(config.getOrDefault("singlePass", false));
+    }
+
     private static Set<String> convertCaption(Object value) {
         if (value == null) return null;
         if (!(value instanceof List)) throw new RuntimeException("Only array of Strings are allowed!");
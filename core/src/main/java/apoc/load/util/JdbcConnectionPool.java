@@ -0,0 +1,497 @@
+package apoc.load.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import static apoc.ApocConfig.apocConfig;
+
+/**
+ * A bounded pool of connections to a database configured as <code>apoc.jdbc.&lt;key&gt;.url</code>, with a cache of
+ * prepared statements per connection.
+ *
+ * The connections handed out are proxies, closing them returns the connection to the pool after rolling back what is
+ * not committed, and closing their prepared statements returns them to the cache of the connection. A connection idle
+ * for more than <code>idleTimeout</code> is closed on the next use of the pool, or by {@link #evictAll()} which
+ * {@link apoc.Pools} runs periodically, and one idle for more than
+ * <code>validationInterval</code> is validated before being handed out again.
+ */
+public class JdbcConnectionPool {
+
+    private static final String PREFIX = "apoc.jdbc.";
+    private static final Map<String, JdbcConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final Callable<Connection> factory;
+    private final int maxSize;
+    private final long idleTimeout;
+    private final long maxWait;
+    private final long validationInterval;
+    private final int validationTimeout;
+    private final int statementCacheSize;
+
+    /** the idle connections, the most recently used first */
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    /** the number of open connections, idle or not */
+    private int size;
+    private boolean closed;
+
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+
+    private JdbcConnectionPool(String name, String key, Callable<Connection> factory) {
+        this.name = name;
+        this.factory = factory;
+        this.maxSize = apocConfig().getInt(setting(key, "maxSize"), 10);
+        this.idleTimeout = apocConfig().getInt(setting(key, "idleTimeout"), 600_000);
+        this.maxWait = apocConfig().getInt(setting(key, "maxWait"), 30_000);
+        this.validationInterval = apocConfig().getInt(setting(key, "validationInterval"), 1000);
+        this.validationTimeout = apocConfig().getInt(setting(key, "validationTimeout"), 5);
+        this.statementCacheSize = apocConfig().getInt(setting(key, "statementCacheSize"), 50);
+        if (maxSize < 1) {
+            throw new IllegalArgumentException(setting(key, "maxSize") + " must be positive, got " + maxSize);
+        }
+    }
+
+    private static String setting(String key, String name) {
+        return PREFIX + key + ".pool." + name;
+    }
+
+    /**
+     * @return true if <code>apoc.jdbc.&lt;key&gt;.pool.enabled</code> is true, the connections aren't pooled otherwise
+     */
+    public static boolean isEnabled(String key) {
+        return apocConfig().getBoolean(setting(key, "enabled"), false);
+    }
+
+    /**
+     * @return the pool of the connections opened by the factory, for the key, url and user
+     */
+    public static JdbcConnectionPool get(String key, String jdbcUrl, String user, String password, Callable<Connection> factory) {
+        String id = String.join("\u0000", key, jdbcUrl, String.valueOf(user), String.valueOf(password));
+        return POOLS.computeIfAbsent(id, k -> new JdbcConnectionPool(user == null ? key : key + " (" + user + ")", key, factory));
+    }
+
+    public static Stream<JdbcConnectionPool> pools() {
+        return POOLS.values().stream();
+    }
+
+    /**
+     * Closes the connections of all the pools idle for more than their idleTimeout
+     */
+    public static void evictAll() {
+        POOLS.values().forEach(JdbcConnectionPool::evict);
+    }
+
+    /**
+     * Closes the idle connections of all the pools and removes them, the connections in use are closed once
+     * released. The pools are created again on their next use.
+     */
+    public static void closeAll() {
+        for (String id : new ArrayList<>(POOLS.keySet())) {
+            JdbcConnectionPool pool = POOLS.remove(id);
+            if (pool != null) pool.close();
+        }
+    }
+
+    private void close() {
+        List<PooledConnection> connections;
+        synchronized (this) {
+            closed = true;
+            connections = new ArrayList<>(idle);
+            size -= idle.size();
+            idle.clear();
+            notifyAll();
+        }
+        connections.forEach(PooledConnection::destroy);
+    }
+
+    /**
+     * @return a connection of the pool, waiting up to <code>maxWait</code> ms for one to be released if all the
+     * connections of the pool are in use
+     */
+    public Connection getConnection() throws Exception {
+        long deadline = System.currentTimeMillis() + maxWait;
+        while (true) {
+            PooledConnection connection;
+            List<PooledConnection> evicted = Collections.emptyList();
+            try {
+                synchronized (this) {
+                    evicted = evictIdle();
+                    while (!closed && idle.isEmpty() && size >= maxSize) {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            timeouts.increment();
+                            throw new SQLException(String.format("Timeout of %d ms waiting for one of the %d connections of the pool %s", maxWait, maxSize, name));
+                        }
+                        wait(remaining);
+                    }
+                    if (closed) {
+                        throw new SQLException("The pool " + name + " is closed");
+                    }
+                    connection = idle.pollFirst();
+                    if (connection == null) {
+                        size++;
+                    }
+                }
+            } finally {
+                evicted.forEach(PooledConnection::destroy);
+            }
+            if (connection == null) {
+                connection = create();
+            } else if (!connection.isValid()) {
+                validationFailures.increment();
+                synchronized (this) {
+                    size--;
+                    notifyAll();
+                }
+                connection.destroy();
+                continue;
+            }
+            borrowed.increment();
+            return connection.proxy();
+        }
+    }
+
+    private PooledConnection create() throws Exception {
+        try {
+            PooledConnection connection = new PooledConnection(factory.call());
+            created.increment();
+            return connection;
+        } catch (Exception e) {
+            synchronized (this) {
+                size--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private void release(PooledConnection connection) {
+        boolean reusable = connection.reset();
+        List<PooledConnection> evicted;
+        synchronized (this) {
+            reusable &= !closed;
+            if (reusable) {
+                connection.lastUsed = System.currentTimeMillis();
+                idle.addFirst(connection);
+            } else {
+                size--;
+            }
+            evicted = evictIdle();
+            notifyAll();
+        }
+        if (!reusable) {
+            connection.destroy();
+        }
+        evicted.forEach(PooledConnection::destroy);
+    }
+
+    /**
+     * @return the connections idle for more than idleTimeout, removed from the pool
+     */
+    private List<PooledConnection> evictIdle() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> evicted = new ArrayList<>();
+        while (!idle.isEmpty() && now - idle.peekLast().lastUsed > idleTimeout) {
+            evicted.add(idle.pollLast());
+            size--;
+        }
+        return evicted;
+    }
+
+    /**
+     * Closes the connections idle for more than idleTimeout
+     */
+    public void evict() {
+        List<PooledConnection> evicted;
+        synchronized (this) {
+            evicted = evictIdle();
+        }
+        evicted.forEach(PooledConnection::destroy);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int getActive() {
+        return size - idle.size();
+    }
+
+    public synchronized int getIdle() {
+        return idle.size();
+    }
+
+    public long getBorrowed() {
+        return borrowed.sum();
+    }
+
+    public long getCreated() {
+        return created.sum();
+    }
+
+    public long getDestroyed() {
+        return destroyed.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getValidationFailures() {
+        return validationFailures.sum();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // already closed or broken
+        }
+    }
+
+    private class PooledConnection {
+        private final Connection connection;
+        private final boolean autoCommit;
+        /** used by the thread the connection is handed out to only */
+        private final Map<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= statementCacheSize) return false;
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.autoCommit = connection.getAutoCommit();
+        }
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(JdbcConnectionPool.class.getClassLoader(), new Class[]{Connection.class}, new ConnectionHandler(this));
+        }
+
+        boolean isValid() {
+            try {
+                if (connection.isClosed()) return false;
+                if (System.currentTimeMillis() - lastUsed < validationInterval) return true;
+                return connection.isValid(validationTimeout);
+            } catch (SQLFeatureNotSupportedException | AbstractMethodError e) {
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        /**
+         * Rolls back what is not committed and restores the auto-commit mode of the connection
+         * @return false if the connection can't be reused
+         */
+        boolean reset() {
+            try {
+                if (connection.isClosed()) return false;
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+                if (connection.getAutoCommit() != autoCommit) {
+                    connection.setAutoCommit(autoCommit);
+                }
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        PreparedStatement prepare(Connection proxy, Method method, Object[] args) throws Throwable {
+            StringBuilder key = new StringBuilder();
+            for (Object arg : args) {
+                key.append(arg).append('\u0000');
+            }
+            CachedStatement cached = statements.get(key.toString());
+            if (cached != null && !cached.inUse && !cached.statement.isClosed()) {
+                statementCacheHits.increment();
+                cached.inUse = true;
+                return cached.proxy(proxy);
+            }
+            statementCacheMisses.increment();
+            PreparedStatement statement = (PreparedStatement) invoke(connection, method, args);
+            if (cached != null && cached.inUse) {
+                // the same statement is prepared twice on the connection, this one isn't cached
+                CachedStatement uncached = new CachedStatement(statement);
+                uncached.evicted = true;
+                uncached.inUse = true;
+                return uncached.proxy(proxy);
+            }
+            cached = new CachedStatement(statement);
+            cached.inUse = true;
+            statements.put(key.toString(), cached);
+            return cached.proxy(proxy);
+        }
+
+        void destroy() {
+            statements.values().forEach(cached -> closeQuietly(cached.statement));
+            statements.clear();
+            closeQuietly(connection);
+            destroyed.increment();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final PooledConnection connection;
+        private boolean closed;
+
+        ConnectionHandler(PooledConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(connection);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || connection.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + connection.connection;
+            }
+            if (closed) {
+                throw new SQLException("The connection is closed");
+            }
+            if (method.getName().equals("prepareStatement") && statementCacheSize > 0 && isCacheable(method)) {
+                return connection.prepare((Connection) proxy, method, args);
+            }
+            return JdbcConnectionPool.invoke(connection.connection, method, args);
+        }
+
+        /**
+         * @return true for prepareStatement(sql) and prepareStatement(sql, resultSetType, resultSetConcurrency)
+         */
+        private boolean isCacheable(Method method) {
+            Class<?>[] types = method.getParameterTypes();
+            return types.length == 1 || (types.length == 3 && types[1] == int.class && types[2] == int.class);
+        }
+    }
+
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement proxy(Connection connection) {
+            return (PreparedStatement) Proxy.newProxyInstance(JdbcConnectionPool.class.getClassLoader(), new Class[]{PreparedStatement.class}, new StatementHandler(this, connection));
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly(statement);
+            }
+        }
+
+        void release() {
+            inUse = false;
+            if (evicted) {
+                closeQuietly(statement);
+                return;
+            }
+            try {
+                statement.clearParameters();
+            } catch (SQLException e) {
+                evict();
+            }
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection connection;
+        private boolean closed;
+
+        StatementHandler(CachedStatement cached, Connection connection) {
+            this.cached = cached;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        cached.release();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || cached.statement.isClosed();
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached " + cached.statement;
+            }
+            if (closed) {
+                throw new SQLException("The statement is closed");
+            }
+            return JdbcConnectionPool.invoke(cached.statement, method, args);
+        }
+    }
+}
@@ -20,6 +20,20 @@ public class JdbcUtil {
 
     private JdbcUtil() {}
 
+    /**
+     * @param urlOrKey the url, or the key of <code>apoc.jdbc.&lt;key&gt;.url</code> for a connection of the pool of the key
+     * @param jdbcUrl the url the key refers to
+     * @return a connection, returned to its pool, if any, when closed
+     */
+    public static Connection getConnection(String urlOrKey, String jdbcUrl, LoadJdbcConfig config) throws Exception {
+        if (urlOrKey.contains(":") || !JdbcConnectionPool.isEnabled(urlOrKey)) {
+            return getConnection(jdbcUrl, config);
+        }
+        String user = config.hasCredentials() ? config.getCredentials().getUser() : null;
+        String password = config.hasCredentials() ? config.getCredentials().getPassword() : null;
+        return JdbcConnectionPool.get(urlOrKey, jdbcUrl, user, password, () -> getConnection(jdbcUrl, config)).getConnection();
+    }
+
     public static Connection getConnection(String jdbcUrl, LoadJdbcConfig config) throws Exception {
         if(config.hasCredentials()) {
             return createConnection(jdbcUrl, config.getCredentials().getUser(), config.getCredentials().getPassword());
@@ -22,6 +22,12 @@ public class LoadJdbcConfig {
 
     private final boolean autoCommit;
 
+    private final Map<String, Object> partition;
+
+    private final int concurrency;
+
+    private final int bufferSize;
+
     public LoadJdbcConfig(Map<String,Object> config) {
         config = config != null ? config : Collections.emptyMap();
         try {
@@ -33,6 +39,15 @@ public class LoadJdbcConfig {
         this.credentials = config.containsKey("credentials") ? createCredentials((Map<String, String>) config.get("credentials")) : null;
         this.fetchSize = Util.toLong(config.getOrDefault("fetchSize", 5000L));
         this.autoCommit = Util.toBoolean(config.getOrDefault("autoCommit", false));
+        this.partition = (Map<String, Object>) config.get("partition");
+        this.concurrency = Util.toInteger(config.getOrDefault("concurrency", Runtime.getRuntime().availableProcessors()));
+        this.bufferSize = Util.toInteger(config.getOrDefault("bufferSize", 1000));
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive, got " + concurrency);
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive, got " + bufferSize);
+        }
     }
 
     public ZoneId getZoneId(){
@@ -82,4 +97,24 @@ public class LoadJdbcConfig {
     public boolean isAutoCommit() {
         return autoCommit;
     }
+
+    /**
+     * @return <code>column</code>, <code>lower</code>, <code>upper</code> and <code>count</code> of the ranges to read
+     * in parallel, null to read with a single query
+     */
+    public Map<String, Object> getPartition() {
+        return partition;
+    }
+
+    public boolean isPartitioned() {
+        return partition != null;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
 }
\ No newline at end of file
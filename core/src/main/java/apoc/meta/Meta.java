@@ -1,5 +1,6 @@
 package apoc.meta;
 
+import apoc.Pools;
 import apoc.export.util.NodesAndRelsSubGraph;
 import apoc.result.GraphResult;
 import apoc.result.MapResult;
@@ -30,9 +31,12 @@ import org.neo4j.graphdb.schema.Schema;
 import org.neo4j.graphdb.spatial.Point;
 import org.neo4j.internal.helpers.collection.Iterables;
 import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.internal.kernel.api.NodeCursor;
 import org.neo4j.internal.kernel.api.Read;
 import org.neo4j.internal.kernel.api.TokenRead;
 import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
@@ -60,12 +64,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import static apoc.util.MapUtil.map;
+import static apoc.util.kernel.MultiThreadedGlobalGraphOperations.GlobalOperationsTypes.NODES;
+import static apoc.util.kernel.MultiThreadedGlobalGraphOperations.getHighestIdInUseForStore;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonMap;
 import static org.neo4j.internal.kernel.api.TokenRead.ANY_LABEL;
@@ -87,6 +96,14 @@ public class    Meta {
 
     @Context public Log log;
 
+    @Context
+    public Pools pools;
+
+    @Context
+    public MetaProfileHandler metaProfileHandler;
+
+    private static final int PARALLEL_PARTITIONS_PER_LABEL = Pools.DEFAULT_POOL_THREADS * 4;
+
     public static class ConstraintTracker {
         // The following maps are (label|rel-type)/constraintdefinition entries
 
@@ -481,7 +498,15 @@ public class    Meta {
     @Description("apoc.meta.data({config})  - examines a subset of the graph to provide a tabular meta information")
     public Stream<MetaResult> data(@Name(value = "config",defaultValue = "{}") Map<String,Object> config) {
         MetaConfig metaConfig = new MetaConfig(config);
-        return collectMetaData(new DatabaseSubGraph(transaction), metaConfig).values().stream().flatMap(x -> x.values().stream());
+        if (useCache(metaConfig)) {
+            List<MetaResult> results = metaProfileHandler.cached(cacheKey("data", config), () -> collectMetaDataResults(metaConfig));
+            return withCurrentCounts(results).stream();
+        }
+        return collectMetaDataResults(metaConfig).stream();
+    }
+
+    private List<MetaResult> collectMetaDataResults(MetaConfig metaConfig) {
+        return collectMetaData(new DatabaseSubGraph(transaction), metaConfig).values().stream().flatMap(x -> x.values().stream()).collect(Collectors.toList());
     }
 
     @Procedure
@@ -489,13 +514,98 @@ public class    Meta {
     public Stream<MapResult> schema(@Name(value = "config",defaultValue = "{}") Map<String,Object> config) {
         MetaStats metaStats = collectStats();
         MetaConfig metaConfig = new MetaConfig(config);
+        if (useCache(metaConfig)) {
+            Map<String, Object> schema = metaProfileHandler.cached(cacheKey("schema", config), () -> collectSchema(metaStats, metaConfig));
+            return Stream.of(new MapResult(withCurrentCounts(schema, metaStats)));
+        }
+        return Stream.of(new MapResult(collectSchema(metaStats, metaConfig)));
+    }
+
+    private Map<String, Object> collectSchema(MetaStats metaStats, MetaConfig metaConfig) {
         Map<String, Map<String, MetaResult>> metaData = collectMetaData(new DatabaseSubGraph(transaction), metaConfig);
 
         Map<String, Object> relationships = collectRelationshipsMetaData(metaStats, metaData);
         Map<String, Object> nodes = collectNodesMetaData(metaStats, metaData, relationships);
 
         nodes.putAll(relationships);
-        return Stream.of(new MapResult(nodes));
+        return nodes;
+    }
+
+    /**
+     * Copies a cached schema, replacing the counts of labels and relationship types with the ones of the count store
+     */
+    private Map<String, Object> withCurrentCounts(Map<String, Object> schema, MetaStats metaStats) {
+        Map<String, Object> result = new LinkedHashMap<>(schema.size());
+        schema.forEach((name, value) -> {
+            Map<String, Object> entry = new LinkedHashMap<>((Map<String, Object>) value);
+            entry.put("count", "node".equals(entry.get("type")) ? metaStats.labels.get(name) : metaStats.relTypesCount.get(name));
+            result.put(name, entry);
+        });
+        return result;
+    }
+
+    /**
+     * Copies cached rows, replacing the counts of the relationship rows with the ones of the count store
+     */
+    private List<MetaResult> withCurrentCounts(List<MetaResult> results) {
+        TokenRead tokenRead = kernelTx.tokenRead();
+        Read read = kernelTx.dataRead();
+        return results.stream().map(cached -> {
+            if (!Types.RELATIONSHIP.name().equals(cached.type)) return cached;
+            // rows of a label list its relationship types, rows of a relationship type list the labels of their start nodes
+            boolean ofLabel = "node".equals(cached.elementType);
+            int labelId = tokenRead.nodeLabel(ofLabel ? cached.label : cached.property);
+            int typeId = tokenRead.relationshipType(ofLabel ? cached.property : cached.label);
+            MetaResult result = copy(cached);
+            result.count = labelId == TokenRead.NO_TOKEN || typeId == TokenRead.NO_TOKEN ? 0 : read.countsForRelationship(labelId, typeId, ANY_LABEL);
+            return result;
+        }).collect(Collectors.toList());
+    }
+
+    private static MetaResult copy(MetaResult cached) {
+        MetaResult result = new MetaResult(cached.label, cached.property);
+        result.count = cached.count;
+        result.unique = cached.unique;
+        result.index = cached.index;
+        result.existence = cached.existence;
+        result.type = cached.type;
+        result.array = cached.array;
+        result.sample = cached.sample;
+        result.leftCount = cached.leftCount;
+        result.rightCount = cached.rightCount;
+        result.left = cached.left;
+        result.right = cached.right;
+        result.other = cached.other;
+        result.otherLabels = cached.otherLabels;
+        result.elementType = cached.elementType;
+        return result;
+    }
+
+    private boolean useCache(MetaConfig config) {
+        return config.isCached() && metaProfileHandler != null && metaProfileHandler.isUsable(config.getMaxStaleness());
+    }
+
+    /**
+     * Cached results are also keyed by the indexes and constraints, as they are part of the result
+     */
+    private String cacheKey(String procedure, Map<String, Object> config) {
+        Schema schema = tx.schema();
+        String indexes = StreamSupport.stream(schema.getIndexes().spliterator(), false).map(IndexDefinition::getName).sorted().collect(Collectors.joining(","));
+        String constraints = StreamSupport.stream(schema.getConstraints().spliterator(), false).map(ConstraintDefinition::getName).sorted().collect(Collectors.joining(","));
+        return procedure + ":" + new TreeMap<>(config == null ? Collections.emptyMap() : config) + ":" + indexes + ":" + constraints;
+    }
+
+    @Procedure("apoc.meta.cache.status")
+    @Description("apoc.meta.cache.status() - returns the state of the meta profile cache, including its staleness bound in ms")
+    public Stream<MapResult> cacheStatus() {
+        return Stream.of(new MapResult(metaProfileHandler.status()));
+    }
+
+    @Procedure("apoc.meta.cache.rebuild")
+    @Description("apoc.meta.cache.rebuild() - rebuilds the meta profile cache with a full scan of the database")
+    public Stream<MapResult> cacheRebuild() {
+        metaProfileHandler.rebuild();
+        return Stream.of(new MapResult(metaProfileHandler.status()));
     }
 
 
@@ -511,7 +621,7 @@ public class    Meta {
     public Stream<Tables4LabelsProfile.NodeTypePropertiesEntry> nodeTypeProperties(@Name(value = "config",defaultValue = "{}") Map<String,Object> config) {
         MetaConfig metaConfig = new MetaConfig(config);
         try {
-            return collectTables4LabelsProfile(metaConfig).asNodeStream();
+            return tables4LabelsProfile(metaConfig).asNodeStream();
         } catch (Exception e) {
             log.debug("meta.nodeTypeProperties(): Failed to return stream", e);
             throw new RuntimeException(e);
@@ -528,18 +638,22 @@ public class    Meta {
     public Stream<Tables4LabelsProfile.RelTypePropertiesEntry> relTypeProperties(@Name(value = "config",defaultValue = "{}") Map<String,Object> config) {
         MetaConfig metaConfig = new MetaConfig(config);
         try {
-            return collectTables4LabelsProfile(metaConfig).asRelStream();
+            return tables4LabelsProfile(metaConfig).asRelStream();
         } catch (Exception e) {
             log.debug("meta.relTypeProperties(): Failed to return stream", e);
             throw new RuntimeException(e);
         }
     }
 
-    private Tables4LabelsProfile collectTables4LabelsProfile (MetaConfig config) {
-        Tables4LabelsProfile profile = new Tables4LabelsProfile();
-
-        Schema schema = tx.schema();
+    private Tables4LabelsProfile tables4LabelsProfile(MetaConfig config) {
+        if (useCache(config)) {
+            trackConstraints(tx.schema());
+            return metaProfileHandler.toTables4LabelsProfile(config);
+        }
+        return collectTables4LabelsProfile(config);
+    }
 
+    private void trackConstraints(Schema schema) {
         for (ConstraintDefinition cd : schema.getConstraints()) {
             if (cd.isConstraintType(ConstraintType.NODE_PROPERTY_EXISTENCE)) {
                 List<String> props = new ArrayList<String>(10);
@@ -559,6 +673,14 @@ public class    Meta {
                 ConstraintTracker.relConstraints.put(cd.getRelationshipType().name(), props);
             }
         }
+    }
+
+    private Tables4LabelsProfile collectTables4LabelsProfile (MetaConfig config) {
+        Tables4LabelsProfile profile = new Tables4LabelsProfile();
+
+        Schema schema = tx.schema();
+
+        trackConstraints(schema);
 
         Map<String, Long> countStore = getLabelCountStore();
 
@@ -568,6 +690,9 @@ public class    Meta {
         Set<String> includeRels = config.getIncludesRels();
         Set<String> excludeRels = config.getExcludeRels();
 
+        List<Callable<Tables4LabelsProfile>> partitions = new ArrayList<>();
+        long highestNodeId = config.isParallel() ? getHighestIdInUseForStore(((GraphDatabaseAPI) db).getDependencyResolver(), NODES) : 0L;
+
         for (Label label : tx.getAllLabelsInUse()) {
             String labelName = label.name();
 
@@ -582,23 +707,17 @@ public class    Meta {
 
                 //System.out.println("Sampling " + sample + " for " + labelName);
 
+                if (config.isParallel()) {
+                    partitions.addAll(partitionsForLabel(label, labelCount, sample, highestNodeId, config));
+                    continue;
+                }
+
                 try (ResourceIterator<Node> nodes = tx.findNodes(label)) {
                     int count = 1;
                     while (nodes.hasNext()) {
                         Node node = nodes.next();
                         if(count++ % sample == 0) {
-                            boolean skipNode = false;
-                            for (RelationshipType rel : node.getRelationshipTypes()) {
-                                String relName = rel.name();
-                                if (excludeRels.contains(relName)) {
-                                    // Skip if explicitly excluded
-                                    skipNode = true;
-                                } else if (!includeRels.isEmpty() && !includeRels.contains(relName)) {
-                                    // Skip if included set is specified and this is not in it.
-                                    skipNode = true;
-                                }
-                            }
-                            if (skipNode != true) {
+                            if (isIncludedByRelTypes(node, includeRels, excludeRels)) {
                                 profile.observe(node, config);
                             }
                         }
@@ -607,9 +726,98 @@ public class    Meta {
             }
         }
 
+        if (config.isParallel()) {
+            List<Future<Tables4LabelsProfile>> futures = partitions.stream()
+                    .map(partition -> pools.getDefaultExecutorService().submit(partition))
+                    .collect(Collectors.toList());
+            try {
+                for (Future<Tables4LabelsProfile> future : futures) {
+                    profile.merge(future.get());
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                futures.forEach(future -> future.cancel(true));
+                throw new RuntimeException("Error sampling nodes in parallel", e);
+            }
+        }
+
         return profile.finished();
     }
 
+    private static boolean isIncludedByRelTypes(Node node, Set<String> includeRels, Set<String> excludeRels) {
+        boolean skipNode = false;
+        for (RelationshipType rel : node.getRelationshipTypes()) {
+            String relName = rel.name();
+            if (excludeRels.contains(relName)) {
+                // Skip if explicitly excluded
+                skipNode = true;
+            } else if (!includeRels.isEmpty() && !includeRels.contains(relName)) {
+                // Skip if included set is specified and this is not in it.
+                skipNode = true;
+            }
+        }
+        return !skipNode;
+    }
+
+    /**
+     * Splits the sampling of a label into tasks that each build a partial profile in their own transaction.
+     * When the label is dense enough in the node store, only every sample-th node id is read (starting at a random
+     * offset in each id range), so the nodes skipped by the sampling are never loaded. Sparse labels are sampled
+     * from the label scan in a single task.
+     */
+    private List<Callable<Tables4LabelsProfile>> partitionsForLabel(Label label, long labelCount, long sample, long highestNodeId, MetaConfig config) {
+        long stride = Math.max(1L, sample);
+        if (labelCount == 0) {
+            return Collections.emptyList();
+        }
+        if (highestNodeId / stride > labelCount) {
+            return Collections.singletonList(() -> {
+                Tables4LabelsProfile partial = new Tables4LabelsProfile();
+                try (Transaction innerTx = db.beginTx();
+                     ResourceIterator<Node> nodes = innerTx.findNodes(label)) {
+                    long count = 1;
+                    while (nodes.hasNext()) {
+                        Node node = nodes.next();
+                        if (count++ % stride == 0 && isIncludedByRelTypes(node, config.getIncludesRels(), config.getExcludeRels())) {
+                            partial.observe(node, config);
+                        }
+                    }
+                    innerTx.commit();
+                }
+                return partial;
+            });
+        }
+        long rangeSize = Math.max(stride, (highestNodeId / PARALLEL_PARTITIONS_PER_LABEL) / stride * stride);
+        List<Callable<Tables4LabelsProfile>> result = new ArrayList<>();
+        for (long rangeStart = 0; rangeStart < highestNodeId; rangeStart += rangeSize) {
+            long start = rangeStart;
+            long end = Math.min(highestNodeId, rangeStart + rangeSize);
+            result.add(() -> sampleIdRange(label, start, end, stride, config));
+        }
+        return result;
+    }
+
+    private Tables4LabelsProfile sampleIdRange(Label label, long start, long end, long stride, MetaConfig config) {
+        Tables4LabelsProfile partial = new Tables4LabelsProfile();
+        try (Transaction innerTx = db.beginTx()) {
+            KernelTransaction ktx = ((InternalTransaction) innerTx).kernelTransaction();
+            int labelId = ktx.tokenRead().nodeLabel(label.name());
+            Read read = ktx.dataRead();
+            try (NodeCursor cursor = ktx.cursors().allocateNodeCursor(ktx.pageCursorTracer())) {
+                for (long id = start + ThreadLocalRandom.current().nextLong(stride); id < end; id += stride) {
+                    read.singleNode(id, cursor);
+                    if (cursor.next() && cursor.hasLabel(labelId)) {
+                        Node node = innerTx.getNodeById(id);
+                        if (isIncludedByRelTypes(node, config.getIncludesRels(), config.getExcludeRels())) {
+                            partial.observe(node, config);
+                        }
+                    }
+                }
+            }
+            innerTx.commit();
+        }
+        return partial;
+    }
+
     // End new code
 
     private Map<String, Map<String, MetaResult>> collectMetaData(SubGraph graph, MetaConfig config) {
@@ -16,6 +16,9 @@ public class MetaConfig {
     private final long maxRels;
     private final long sample;
     private final boolean addRelationshipsBetweenNodes;
+    private final boolean parallel;
+    private final boolean cached;
+    private final long maxStaleness;
 
     /**
      * A map of values, with the following keys and meanings.
@@ -30,6 +33,11 @@ public class MetaConfig {
      * every 1000th node will be examined.  It does **not** mean that a total of 1000 nodes
      * will be sampled.
      * - maxRels: the maximum number of relationships of a given type to look at.
+     * - parallel: if true, the sampled nodes are read in id ranges on the worker pool, and
+     * the partial profiles are merged at the end.
+     * - cached: if true, answer from the meta profile cache when it's enabled and built.
+     * - maxStaleness: the maximum staleness bound in ms of the cache to accept, otherwise the
+     * graph is scanned as usual. Any staleness is accepted by default.
      * @param config
      */
 
@@ -60,6 +68,9 @@ public class MetaConfig {
         this.sample = (long) config.getOrDefault("sample", 1000L);
         this.maxRels = (long) config.getOrDefault("maxRels", 100L);
         this.addRelationshipsBetweenNodes = Util.toBoolean(config.getOrDefault("addRelationshipsBetweenNodes", true));
+        this.parallel = Util.toBoolean(config.getOrDefault("parallel", false));
+        this.cached = Util.toBoolean(config.getOrDefault("cached", false));
+        this.maxStaleness = Util.toLong(config.getOrDefault("maxStaleness", -1L));
     }
 
 
@@ -135,4 +146,16 @@ public class MetaConfig {
     public boolean isAddRelationshipsBetweenNodes() {
         return addRelationshipsBetweenNodes;
     }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public long getMaxStaleness() {
+        return maxStaleness;
+    }
 }
@@ -0,0 +1,332 @@
+package apoc.meta;
+
+import apoc.meta.tablesforlabels.OrderedLabels;
+import apoc.meta.tablesforlabels.PropertyContainerProfile;
+import apoc.meta.tablesforlabels.PropertyTracker;
+import apoc.util.Util;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static apoc.util.MapUtil.map;
+
+/**
+ * Exact counts of the label sets, relationship patterns and property types of a database, maintained incrementally
+ * from the data of committed transactions by the {@link MetaProfileHandler}.
+ *
+ * A delta of a transaction is a profile with negative counts for the state of the touched entities before the
+ * transaction and positive counts for their state after it, so applying it moves the profile to the new state.
+ */
+public class MetaProfile {
+
+    private static final String LABEL_SEPARATOR = "@@@";
+    private static final String PATTERN_SEPARATOR = "###";
+
+    private final Map<List<String>, EntityStats> nodes = new LinkedHashMap<>();
+    private final Map<String, EntityStats> relationships = new LinkedHashMap<>();
+
+    static class EntityStats {
+        long count;
+        final Map<String, Map<String, Long>> propertyTypes = new TreeMap<>();
+
+        /**
+         * @return true if an entry was added or removed, i.e. the shape changed
+         */
+        boolean add(long count, Map<String, Map<String, Long>> propertyTypes) {
+            boolean changed = false;
+            this.count += count;
+            for (Map.Entry<String, Map<String, Long>> property : propertyTypes.entrySet()) {
+                Map<String, Long> types = this.propertyTypes.computeIfAbsent(property.getKey(), k -> new TreeMap<>());
+                for (Map.Entry<String, Long> type : property.getValue().entrySet()) {
+                    Long previous = types.get(type.getKey());
+                    long next = (previous == null ? 0 : previous) + type.getValue();
+                    if (next == 0) {
+                        types.remove(type.getKey());
+                        changed |= previous != null;
+                    } else {
+                        types.put(type.getKey(), next);
+                        changed |= previous == null;
+                    }
+                }
+                if (types.isEmpty()) {
+                    this.propertyTypes.remove(property.getKey());
+                }
+            }
+            return changed;
+        }
+
+        void observe(Map<String, Object> properties, long sign) {
+            count += sign;
+            properties.forEach((key, value) -> propertyTypes.computeIfAbsent(key, k -> new TreeMap<>())
+                    .merge(PropertyTracker.assignTypeName(value), sign, Long::sum));
+        }
+
+        boolean isEmpty() {
+            return count == 0 && propertyTypes.isEmpty();
+        }
+
+        boolean isZero() {
+            return count == 0 && propertyTypes.values().stream().allMatch(types -> types.values().stream().allMatch(c -> c == 0));
+        }
+
+        Map<String, Object> toMap() {
+            return map("count", count, "properties", propertyTypes);
+        }
+
+        static EntityStats fromMap(Map<String, Object> map) {
+            EntityStats stats = new EntityStats();
+            Map<String, Map<String, Object>> properties = (Map<String, Map<String, Object>>) map.getOrDefault("properties", Collections.emptyMap());
+            properties.forEach((key, types) -> {
+                Map<String, Long> counts = new TreeMap<>();
+                types.forEach((type, count) -> counts.put(type, Util.toLong(count)));
+                stats.propertyTypes.put(key, counts);
+            });
+            stats.count = Util.toLong(map.get("count"));
+            return stats;
+        }
+    }
+
+    public synchronized int nodeTypeCount() {
+        return nodes.size();
+    }
+
+    public synchronized int relationshipPatternCount() {
+        return relationships.size();
+    }
+
+    public void observe(Node node) {
+        observeNode(labelNames(node.getLabels()), node.getAllProperties(), 1);
+    }
+
+    public void observe(Relationship rel) {
+        observeRelationship(labelNames(rel.getStartNode().getLabels()), labelNames(rel.getEndNode().getLabels()),
+                rel.getType().name(), rel.getAllProperties(), 1);
+    }
+
+    private void observeNode(List<String> labels, Map<String, Object> properties, long sign) {
+        if (labels.isEmpty()) return;
+        nodes.computeIfAbsent(labels, k -> new EntityStats()).observe(properties, sign);
+    }
+
+    private void observeRelationship(List<String> startLabels, List<String> endLabels, String type, Map<String, Object> properties, long sign) {
+        String pattern = String.join(LABEL_SEPARATOR, startLabels) + PATTERN_SEPARATOR + String.join(LABEL_SEPARATOR, endLabels) + PATTERN_SEPARATOR + type;
+        relationships.computeIfAbsent(pattern, k -> new EntityStats()).observe(properties, sign);
+    }
+
+    /**
+     * Applies the delta of a committed transaction
+     * @return true if a label set, relationship pattern or property type appeared or disappeared
+     */
+    public synchronized boolean apply(MetaProfile delta) {
+        return apply(nodes, delta.nodes) | apply(relationships, delta.relationships);
+    }
+
+    private static <K> boolean apply(Map<K, EntityStats> target, Map<K, EntityStats> delta) {
+        boolean changed = false;
+        for (Map.Entry<K, EntityStats> entry : delta.entrySet()) {
+            if (entry.getValue().isZero()) continue;
+            EntityStats stats = target.get(entry.getKey());
+            if (stats == null) {
+                stats = new EntityStats();
+                target.put(entry.getKey(), stats);
+                changed = true;
+            }
+            changed |= stats.add(entry.getValue().count, entry.getValue().propertyTypes);
+            if (stats.isEmpty()) {
+                target.remove(entry.getKey());
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Computes the changes a transaction makes to the profile, must be called before commit while the state of the
+     * transaction is still readable
+     */
+    public static MetaProfile delta(TransactionData data, Transaction tx) {
+        Map<Long, Node> touchedNodes = new HashMap<>();
+        Set<Long> createdNodes = new HashSet<>();
+        Set<Long> deletedNodes = new HashSet<>();
+        data.createdNodes().forEach(n -> { createdNodes.add(n.getId()); touchedNodes.put(n.getId(), n); });
+        data.deletedNodes().forEach(n -> { deletedNodes.add(n.getId()); touchedNodes.put(n.getId(), n); });
+
+        Map<Long, Set<String>> assignedLabels = new HashMap<>();
+        Map<Long, Set<String>> removedLabels = new HashMap<>();
+        for (LabelEntry entry : data.assignedLabels()) {
+            touchedNodes.putIfAbsent(entry.node().getId(), entry.node());
+            assignedLabels.computeIfAbsent(entry.node().getId(), k -> new HashSet<>()).add(entry.label().name());
+        }
+        for (LabelEntry entry : data.removedLabels()) {
+            touchedNodes.putIfAbsent(entry.node().getId(), entry.node());
+            removedLabels.computeIfAbsent(entry.node().getId(), k -> new HashSet<>()).add(entry.label().name());
+        }
+        Map<Long, Map<String, Object>> previousNodeProperties = new HashMap<>();
+        for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+            touchedNodes.putIfAbsent(entry.entity().getId(), entry.entity());
+            previousNodeProperties.computeIfAbsent(entry.entity().getId(), k -> new HashMap<>()).put(entry.key(), entry.previouslyCommittedValue());
+        }
+        for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+            touchedNodes.putIfAbsent(entry.entity().getId(), entry.entity());
+            previousNodeProperties.computeIfAbsent(entry.entity().getId(), k -> new HashMap<>()).put(entry.key(), entry.previouslyCommittedValue());
+        }
+
+        MetaProfile delta = new MetaProfile();
+        Map<Long, List<String>> labelsBefore = new HashMap<>();
+        Map<Long, List<String>> labelsAfter = new HashMap<>();
+        Set<Long> relabeledNodes = new HashSet<>();
+        for (Map.Entry<Long, Node> entry : touchedNodes.entrySet()) {
+            long id = entry.getKey();
+            Node node = entry.getValue();
+            boolean deleted = deletedNodes.contains(id);
+            List<String> after = deleted ? Collections.emptyList() : labelNames(node.getLabels());
+            labelsAfter.put(id, after);
+            if (!deleted) {
+                delta.observeNode(after, node.getAllProperties(), 1);
+            }
+            if (!createdNodes.contains(id)) {
+                Set<String> before = new TreeSet<>(after);
+                before.removeAll(assignedLabels.getOrDefault(id, Collections.emptySet()));
+                before.addAll(removedLabels.getOrDefault(id, Collections.emptySet()));
+                labelsBefore.put(id, new ArrayList<>(before));
+                delta.observeNode(labelsBefore.get(id), previous(deleted ? Collections.emptyMap() : node.getAllProperties(), previousNodeProperties.get(id)), -1);
+                if (!deleted && !before.equals(new TreeSet<>(after))) {
+                    relabeledNodes.add(id);
+                }
+            }
+        }
+
+        Map<Long, Relationship> touchedRels = new HashMap<>();
+        Set<Long> createdRels = new HashSet<>();
+        Set<Long> deletedRels = new HashSet<>();
+        data.createdRelationships().forEach(r -> { createdRels.add(r.getId()); touchedRels.put(r.getId(), r); });
+        data.deletedRelationships().forEach(r -> { deletedRels.add(r.getId()); touchedRels.put(r.getId(), r); });
+        Map<Long, Map<String, Object>> previousRelProperties = new HashMap<>();
+        for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) {
+            touchedRels.putIfAbsent(entry.entity().getId(), entry.entity());
+            previousRelProperties.computeIfAbsent(entry.entity().getId(), k -> new HashMap<>()).put(entry.key(), entry.previouslyCommittedValue());
+        }
+        for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) {
+            touchedRels.putIfAbsent(entry.entity().getId(), entry.entity());
+            previousRelProperties.computeIfAbsent(entry.entity().getId(), k -> new HashMap<>()).put(entry.key(), entry.previouslyCommittedValue());
+        }
+        // a label change moves every relationship of the node to another pattern
+        for (Long id : relabeledNodes) {
+            for (Relationship rel : touchedNodes.get(id).getRelationships()) {
+                touchedRels.putIfAbsent(rel.getId(), rel);
+            }
+        }
+
+        for (Map.Entry<Long, Relationship> entry : touchedRels.entrySet()) {
+            long id = entry.getKey();
+            Relationship rel = entry.getValue();
+            boolean deleted = deletedRels.contains(id);
+            String type = rel.getType().name();
+            long startId = rel.getStartNode().getId();
+            long endId = rel.getEndNode().getId();
+            if (!deleted) {
+                delta.observeRelationship(labels(labelsAfter, startId, tx), labels(labelsAfter, endId, tx), type, rel.getAllProperties(), 1);
+            }
+            if (!createdRels.contains(id)) {
+                delta.observeRelationship(labels(labelsBefore, startId, tx), labels(labelsBefore, endId, tx), type,
+                        previous(deleted ? Collections.emptyMap() : rel.getAllProperties(), previousRelProperties.get(id)), -1);
+            }
+        }
+        return delta;
+    }
+
+    private static List<String> labels(Map<Long, List<String>> touched, long nodeId, Transaction tx) {
+        List<String> labels = touched.get(nodeId);
+        return labels != null ? labels : labelNames(tx.getNodeById(nodeId).getLabels());
+    }
+
+    private static Map<String, Object> previous(Map<String, Object> current, Map<String, Object> previousValues) {
+        if (previousValues == null) return current;
+        Map<String, Object> result = new HashMap<>(current);
+        previousValues.forEach((key, value) -> {
+            if (value == null) result.remove(key);
+            else result.put(key, value);
+        });
+        return result;
+    }
+
+    private static List<String> labelNames(Iterable<Label> labels) {
+        List<String> names = new ArrayList<>();
+        labels.forEach(label -> names.add(label.name()));
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Builds the profile returned by apoc.meta.nodeTypeProperties / apoc.meta.relTypeProperties, with exact counts
+     */
+    public synchronized Tables4LabelsProfile toTables4LabelsProfile(MetaConfig config) {
+        Tables4LabelsProfile profile = new Tables4LabelsProfile();
+        nodes.forEach((labelNames, stats) -> {
+            List<Label> labels = labelNames.stream().map(Label::label).collect(Collectors.toList());
+            if (labels.stream().noneMatch(config::matches)) return;
+            OrderedLabels orderedLabels = new OrderedLabels(labels);
+            fill(profile.getNodeProfile(orderedLabels), stats, true);
+            profile.obsByNode.put(orderedLabels, stats.count);
+        });
+        relationships.forEach((pattern, stats) -> {
+            if (!config.matches(RelationshipType.withName(Tables4LabelsProfile.decipherRelMap.getRelType(pattern)))) return;
+            if (Tables4LabelsProfile.decipherRelMap.getSourceLabels(pattern).stream().map(Label::label).noneMatch(config::matches)) return;
+            fill(profile.getRelProfile(pattern), stats, false);
+            profile.obsByRelType.put(pattern, stats.count);
+        });
+        return profile.finished();
+    }
+
+    private static void fill(PropertyContainerProfile profile, EntityStats stats, boolean isNode) {
+        profile.observations = stats.count;
+        profile.isNode = isNode;
+        stats.propertyTypes.forEach((key, types) -> {
+            PropertyTracker tracker = new PropertyTracker(key);
+            tracker.types.addAll(types.keySet());
+            tracker.observations = types.values().stream().mapToLong(Long::longValue).sum();
+            profile.addTracker(tracker);
+        });
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        return map("nodes", toList(nodes, "labels"), "relationships", toList(relationships, "pattern"));
+    }
+
+    private static <K> List<Map<String, Object>> toList(Map<K, EntityStats> entries, String keyName) {
+        return entries.entrySet().stream().map(e -> {
+            Map<String, Object> entry = new LinkedHashMap<>(e.getValue().toMap());
+            entry.put(keyName, e.getKey());
+            return entry;
+        }).collect(Collectors.toList());
+    }
+
+    public static MetaProfile fromMap(Map<String, Object> map) {
+        MetaProfile profile = new MetaProfile();
+        for (Map<String, Object> entry : (Collection<Map<String, Object>>) map.getOrDefault("nodes", Collections.emptyList())) {
+            profile.nodes.put(new ArrayList<>((Collection<String>) entry.get("labels")), EntityStats.fromMap(entry));
+        }
+        for (Map<String, Object> entry : (Collection<Map<String, Object>>) map.getOrDefault("relationships", Collections.emptyList())) {
+            profile.relationships.put((String) entry.get("pattern"), EntityStats.fromMap(entry));
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,320 @@
+package apoc.meta;
+
+import apoc.ApocConfig;
+import apoc.Pools;
+import apoc.SystemLabels;
+import apoc.SystemPropertyKeys;
+import apoc.util.MapUtil;
+import apoc.util.Util;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.internal.helpers.collection.Iterators;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+import org.neo4j.logging.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static apoc.ApocConfig.APOC_META_CACHE_ENABLED;
+import static apoc.ApocConfig.APOC_META_CACHE_PERSIST_INTERVAL;
+
+/**
+ * Maintains a {@link MetaProfile} of the database from the data of every committed transaction, so that the
+ * apoc.meta.* procedures can answer with <code>cached: true</code> without scanning the graph.
+ *
+ * The profile is persisted in the system database periodically and on shutdown, and loaded again on startup.
+ * A profile that was not persisted on a clean shutdown may miss the transactions committed after it was last
+ * persisted, it is used with a staleness bound starting at that time and rebuilt in the background.
+ */
+public class MetaProfileHandler extends LifecycleAdapter implements TransactionEventListener<MetaProfile> {
+
+    public static final String NOT_ENABLED_ERROR = "The meta profile cache has not been enabled." +
+            " Set 'apoc.meta.cache.enabled=true' in your apoc.conf file located in the $NEO4J_HOME/conf/ directory.";
+
+    private final GraphDatabaseService db;
+    private final DatabaseManagementService databaseManagementService;
+    private final ApocConfig apocConfig;
+    private final Log log;
+    private final Pools pools;
+
+    private volatile MetaProfile profile;
+    /** time since when the profile may miss committed changes, -1 if it is in sync */
+    private volatile long staleSince = -1;
+    private volatile long lastUpdated;
+    private volatile long lastRebuild;
+    private volatile long lastPersisted;
+    private final AtomicLong shapeVersion = new AtomicLong();
+    private final AtomicLong appliedTransactions = new AtomicLong();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    private final AtomicBoolean registeredWithKernel = new AtomicBoolean(false);
+    private final Map<String, CachedResult> results = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> persistJob;
+
+    private static class CachedResult {
+        final long version;
+        final Object value;
+
+        CachedResult(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    public MetaProfileHandler(GraphDatabaseService db, DatabaseManagementService databaseManagementService,
+                              ApocConfig apocConfig, Log log, Pools pools) {
+        this.db = db;
+        this.databaseManagementService = databaseManagementService;
+        this.apocConfig = apocConfig;
+        this.log = log;
+        this.pools = pools;
+    }
+
+    private boolean isEnabled() {
+        return apocConfig.getBoolean(APOC_META_CACHE_ENABLED, false);
+    }
+
+    public void checkEnabled() {
+        if (!isEnabled()) {
+            throw new RuntimeException(NOT_ENABLED_ERROR);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!isEnabled()) {
+            // a snapshot left by a previous run misses whatever has been written since
+            deleteSnapshot();
+            return;
+        }
+        boolean clean = loadSnapshot();
+        register();
+        if (profile != null) {
+            // from now on the snapshot is outdated until it's persisted again
+            persist(false);
+        }
+        if (!clean) {
+            pools.getDefaultExecutorService().submit(this::rebuild);
+        }
+        long interval = apocConfig.getInt(APOC_META_CACHE_PERSIST_INTERVAL, 60);
+        persistJob = pools.getScheduledExecutorService().scheduleWithFixedDelay(() -> {
+            if (dirty.get()) persist(false);
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (persistJob != null) {
+            persistJob.cancel(false);
+        }
+        unregister();
+        if (profile != null) {
+            persist(staleSince == -1 && !rebuilding.get());
+        }
+    }
+
+    private synchronized void register() {
+        if (registeredWithKernel.compareAndSet(false, true)) {
+            databaseManagementService.registerTransactionEventListener(db.databaseName(), this);
+        }
+    }
+
+    private synchronized void unregister() {
+        if (registeredWithKernel.compareAndSet(true, false)) {
+            databaseManagementService.unregisterTransactionEventListener(db.databaseName(), this);
+        }
+    }
+
+    /**
+     * Scans the whole database into a new profile and replaces the current one
+     */
+    public void rebuild() {
+        checkEnabled();
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            register();
+            long started = System.currentTimeMillis();
+            long appliedBefore = appliedTransactions.get();
+            MetaProfile rebuilt = new MetaProfile();
+            try (Transaction tx = db.beginTx()) {
+                for (Node node : tx.getAllNodes()) {
+                    rebuilt.observe(node);
+                }
+                for (Relationship rel : tx.getAllRelationships()) {
+                    rebuilt.observe(rel);
+                }
+                tx.commit();
+            }
+            profile = rebuilt;
+            // transactions committed during the scan may or may not be part of it
+            staleSince = appliedTransactions.get() == appliedBefore ? -1 : started;
+            lastRebuild = lastUpdated = System.currentTimeMillis();
+            shapeVersion.incrementAndGet();
+            results.clear();
+            dirty.set(true);
+            persist(false);
+        } catch (Exception e) {
+            log.warn("Cannot rebuild the meta profile of database " + db.databaseName(), e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    @Override
+    public MetaProfile beforeCommit(TransactionData txData, Transaction transaction, GraphDatabaseService databaseService) {
+        try {
+            return MetaProfile.delta(txData, transaction);
+        } catch (Exception e) {
+            // never fail the user transaction because of the cache
+            log.warn("Cannot compute the meta profile changes of a transaction, the profile is now stale", e);
+            markStale();
+            return null;
+        }
+    }
+
+    @Override
+    public void afterCommit(TransactionData txData, MetaProfile delta, GraphDatabaseService databaseService) {
+        appliedTransactions.incrementAndGet();
+        MetaProfile current = profile;
+        if (delta == null || current == null) return;
+        if (current.apply(delta)) {
+            shapeVersion.incrementAndGet();
+            results.clear();
+        }
+        lastUpdated = System.currentTimeMillis();
+        dirty.set(true);
+    }
+
+    @Override
+    public void afterRollback(TransactionData txData, MetaProfile delta, GraphDatabaseService databaseService) {
+    }
+
+    private void markStale() {
+        if (staleSince == -1) {
+            staleSince = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @return the upper bound in ms of the time range of committed changes the profile may miss, 0 if it is in sync,
+     * null if there is no profile yet
+     */
+    public Long staleness() {
+        if (profile == null) return null;
+        long since = staleSince;
+        return since == -1 ? 0L : System.currentTimeMillis() - since;
+    }
+
+    /**
+     * @param maxStaleness the maximum staleness in ms accepted by the caller, or -1 for any
+     * @return true if the caller can be answered from the cache
+     */
+    public boolean isUsable(long maxStaleness) {
+        if (!isEnabled()) return false;
+        Long staleness = staleness();
+        return staleness != null && (maxStaleness < 0 || staleness <= maxStaleness);
+    }
+
+    public Tables4LabelsProfile toTables4LabelsProfile(MetaConfig config) {
+        return profile.toTables4LabelsProfile(config);
+    }
+
+    /**
+     * Returns the result computed earlier for the same key, unless a label set, relationship pattern or property
+     * type has appeared or disappeared since then
+     */
+    public <T> T cached(String key, Supplier<T> supplier) {
+        long version = shapeVersion.get();
+        CachedResult cached = results.get(key);
+        if (cached != null && cached.version == version) {
+            return (T) cached.value;
+        }
+        T value = supplier.get();
+        results.put(key, new CachedResult(version, value));
+        return value;
+    }
+
+    public Map<String, Object> status() {
+        MetaProfile current = profile;
+        return MapUtil.map("enabled", isEnabled(),
+                "built", current != null,
+                "rebuilding", rebuilding.get(),
+                "staleness", staleness(),
+                "lastUpdated", lastUpdated,
+                "lastRebuild", lastRebuild,
+                "lastPersisted", lastPersisted,
+                "shapeVersion", shapeVersion.get(),
+                "nodeTypes", current == null ? 0L : (long) current.nodeTypeCount(),
+                "relationshipPatterns", current == null ? 0L : (long) current.relationshipPatternCount());
+    }
+
+    private boolean loadSnapshot() {
+        try (Transaction tx = apocConfig.getSystemDb().beginTx()) {
+            Node node = findSnapshot(tx);
+            boolean clean = false;
+            if (node != null) {
+                profile = MetaProfile.fromMap(Util.fromJson((String) node.getProperty(SystemPropertyKeys.profile.name()), Map.class));
+                clean = (boolean) node.getProperty(SystemPropertyKeys.clean.name(), false);
+                lastUpdated = lastPersisted = (long) node.getProperty(SystemPropertyKeys.lastUpdated.name(), 0L);
+                staleSince = clean ? -1 : lastPersisted;
+                shapeVersion.incrementAndGet();
+            }
+            tx.commit();
+            return clean;
+        } catch (Exception e) {
+            log.warn("Cannot load the meta profile of database " + db.databaseName(), e);
+            profile = null;
+            return false;
+        }
+    }
+
+    private void persist(boolean clean) {
+        MetaProfile current = profile;
+        if (current == null) return;
+        dirty.set(false);
+        try (Transaction tx = apocConfig.getSystemDb().beginTx()) {
+            Node node = findSnapshot(tx);
+            if (node == null) {
+                node = tx.createNode(SystemLabels.ApocMetaProfile);
+                node.setProperty(SystemPropertyKeys.database.name(), db.databaseName());
+            }
+            long now = System.currentTimeMillis();
+            node.setProperty(SystemPropertyKeys.profile.name(), Util.toJson(current.toMap()));
+            node.setProperty(SystemPropertyKeys.clean.name(), clean);
+            node.setProperty(SystemPropertyKeys.lastUpdated.name(), now);
+            tx.commit();
+            lastPersisted = now;
+        } catch (Exception e) {
+            dirty.set(true);
+            log.warn("Cannot persist the meta profile of database " + db.databaseName(), e);
+        }
+    }
+
+    private void deleteSnapshot() {
+        try (Transaction tx = apocConfig.getSystemDb().beginTx()) {
+            Node node = findSnapshot(tx);
+            if (node == null) return;
+            node.delete();
+            tx.commit();
+        } catch (Exception e) {
+            log.warn("Cannot delete the meta profile of database " + db.databaseName(), e);
+        }
+    }
+
+    private Node findSnapshot(Transaction tx) {
+        return Iterators.singleOrNull(tx.findNodes(SystemLabels.ApocMetaProfile,
+                SystemPropertyKeys.database.name(), db.databaseName()));
+    }
+}
@@ -220,6 +220,17 @@ public class Tables4LabelsProfile {
         }
     }
 
+    /**
+     * Merges a partial profile, collected by another worker over a different set of nodes, into this one
+     */
+    public Tables4LabelsProfile merge(Tables4LabelsProfile other) {
+        other.labelMap.forEach((labels, prof) -> getNodeProfile(labels).merge(prof));
+        other.relMap.forEach((relIdentifier, prof) -> getRelProfile(relIdentifier).merge(prof));
+        other.obsByNode.forEach((labels, count) -> obsByNode.merge(labels, count, Long::sum));
+        other.obsByRelType.forEach((relIdentifier, count) -> obsByRelType.merge(relIdentifier, count, Long::sum));
+        return this;
+    }
+
     public Tables4LabelsProfile finished() {
         for (PropertyContainerProfile prof : labelMap.values()) {
             prof.finished();
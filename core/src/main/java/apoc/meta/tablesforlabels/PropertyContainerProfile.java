@@ -49,6 +49,21 @@ public class PropertyContainerProfile {
         }
     }
 
+    /**
+     * Adds the observations of a profile collected by another worker to this one
+     */
+    public void merge(PropertyContainerProfile other) {
+        observations += other.observations;
+        isNode = isNode || other.isNode;
+        for (Map.Entry<String, PropertyTracker> entry : other.profile.entrySet()) {
+            profile.computeIfAbsent(entry.getKey(), PropertyTracker::new).merge(entry.getValue());
+        }
+    }
+
+    public void addTracker(PropertyTracker tracker) {
+        profile.computeIfAbsent(tracker.name, PropertyTracker::new).merge(tracker);
+    }
+
     public PropertyContainerProfile finished() {
         PropertyTracker tracker;
 
@@ -24,7 +24,13 @@ public class PropertyTracker {
         types.add(assignTypeName(value));
     }
 
-    private String assignTypeName(Object value) {
+    public void merge(PropertyTracker other) {
+        observations += other.observations;
+        nulls += other.nulls;
+        types.addAll(other.types);
+    }
+
+    public static String assignTypeName(Object value) {
         String typeName = value.getClass().getCanonicalName();
         if (typeMappings.containsKey(typeName)) {
             return typeMappings.get(typeName);
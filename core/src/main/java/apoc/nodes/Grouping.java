@@ -16,6 +16,7 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -103,7 +104,11 @@ public class Grouping {
         // also filter (esp. max) during aggregation?
         Map<String,Number> filter = configuredFilter(config);
 
-        Map<NodeKey, Set<Node>> grouped = new ConcurrentHashMap<>();
+        // each node is only kept as its id, mapped to the id of its group for each label
+        Map<NodeKey, Integer> groupIds = new ConcurrentHashMap<>();
+        AtomicInteger nextGroupId = new AtomicInteger();
+        Map<String, GroupIndex> groupIndexes = new LinkedHashMap<>();
+        labels.forEach(label -> groupIndexes.put(label, new GroupIndex()));
         Map<NodeKey, VirtualNode> virtualNodes = new ConcurrentHashMap<>();
         Map<RelKey, VirtualRelationship> virtualRels = new ConcurrentHashMap<>();
 
@@ -113,6 +118,7 @@ public class Grouping {
         for (String labelName : labels) {
             Label label = Label.label(labelName);
             Label[] singleLabel = {label};
+            GroupIndex groupIndex = groupIndexes.get(labelName);
 
             try (ResourceIterator<Node> nodes = (labelName.equals("*")) ? tx.getAllNodes().iterator() : tx.findNodes(label)) {
                 while (nodes.hasNext()) {
@@ -122,11 +128,7 @@ public class Grouping {
                             for (Node node : batch) {
                                 final Node boundNode = Util.rebind(txInThread, node);
                                 NodeKey key = keyFor(boundNode, labelName, keys);
-                                grouped.compute(key, (k, v) -> {
-                                    if (v == null) v = new HashSet<>();
-                                    v.add(boundNode);
-                                    return v;
-                                });
+                                groupIndex.set(boundNode.getId(), groupIds.computeIfAbsent(key, k -> nextGroupId.getAndIncrement()));
                                 virtualNodes.compute(key, (k, v) -> {
                                             if (v == null) {
                                                 v = new VirtualNode(singleLabel, propertiesFor(boundNode, keys));
@@ -150,49 +152,59 @@ public class Grouping {
         }
         Util.waitForFutures(futures);
         futures.clear();
-        Iterator<Map.Entry<NodeKey, Set<Node>>> entries = grouped.entrySet().iterator();
-        int size = 0;
-        List<Map.Entry<NodeKey, Set<Node>>> batch = new ArrayList<>();
-        while (entries.hasNext()) {
-            Map.Entry<NodeKey, Set<Node>> outerEntry = entries.next();
-            batch.add(outerEntry);
-            size += outerEntry.getValue().size();
-            if (size > BATCHSIZE || !entries.hasNext()) {
-                ArrayList<Map.Entry<NodeKey, Set<Node>>> submitted = new ArrayList<>(batch);
-                batch.clear();
-                size = 0;
-                futures.add(Util.inTxFuture(pool, db, txInThread -> {
-                    try {
-                        for (Map.Entry<NodeKey, Set<Node>> entry : submitted) {
-                            for (Node node : entry.getValue()) {
-                                node = Util.rebind(txInThread, node);
-                                NodeKey startKey = entry.getKey();
-                                VirtualNode v1 = virtualNodes.get(startKey);
-                                for (Relationship rel : node.getRelationships(Direction.OUTGOING)) {
-                                    if (includeRels != null && !includeRels.contains(rel.getType().name())) continue;
-                                    Node endNode = rel.getEndNode();
-                                    for (NodeKey endKey : keysFor(endNode, labels, keys)) {
-                                        VirtualNode v2 = virtualNodes.get(endKey);
-                                        if (v2 == null) continue;
-                                        if (!selfRels && startKey.equals(endKey)) continue;
-                                        virtualRels.compute(new RelKey(startKey, endKey, rel), (rk, vRel) -> {
-                                            if (vRel == null) vRel = v1.createRelationshipTo(v2, rel.getType());
-                                            if (!relAggNames.isEmpty()) {
-                                                aggregate(vRel, relAggNames, relAggKeys.length > 0 ? rel.getProperties(relAggKeys) : Collections.emptyMap());
-                                            }
-                                            return vRel;
-                                        });
+        groupIndexes.values().forEach(GroupIndex::freeze);
+        VirtualNode[] groupNodes = new VirtualNode[groupIds.size()];
+        groupIds.forEach((key, id) -> groupNodes[id] = virtualNodes.get(key));
+        GroupIndex[] indexes = groupIndexes.values().toArray(new GroupIndex[0]);
+
+        // the outgoing relationships of the grouped nodes, each one visited once from its start node,
+        // whose start and end groups are looked up by node id
+        RelationshipType[] types = includeRels == null ? new RelationshipType[0] : includeRels.stream().map(RelationshipType::withName).toArray(RelationshipType[]::new);
+        long capacity = Arrays.stream(indexes).mapToLong(GroupIndex::capacity).max().orElse(0L);
+        long nodeId = nextGrouped(indexes, 0, capacity);
+        while (nodeId < capacity && (includeRels == null || !includeRels.isEmpty())) {
+            long[] batch = new long[BATCHSIZE];
+            int batchSize = 0;
+            while (nodeId < capacity && batchSize < BATCHSIZE) {
+                batch[batchSize++] = nodeId;
+                nodeId = nextGrouped(indexes, nodeId + 1, capacity);
+            }
+            int submittedSize = batchSize;
+            futures.add(Util.inTxFuture(pool, db, txInThread -> {
+                try {
+                    for (int i = 0; i < submittedSize; i++) {
+                        long startId = batch[i];
+                        for (Relationship rel : txInThread.getNodeById(startId).getRelationships(Direction.OUTGOING, types)) {
+                            long endId = rel.getEndNodeId();
+                            Map<String, Object> relProperties = null;
+                            for (GroupIndex startIndex : indexes) {
+                                int startGroup = startIndex.get(startId);
+                                if (startGroup == -1) continue;
+                                for (GroupIndex endIndex : indexes) {
+                                    int endGroup = endIndex.get(endId);
+                                    if (endGroup == -1) continue;
+                                    if (!selfRels && startGroup == endGroup) continue;
+                                    if (relProperties == null) {
+                                        relProperties = relAggKeys.length > 0 ? rel.getProperties(relAggKeys) : Collections.emptyMap();
                                     }
+                                    Map<String, Object> properties = relProperties;
+                                    virtualRels.compute(new RelKey(startGroup, endGroup, rel), (rk, vRel) -> {
+                                        if (vRel == null) vRel = groupNodes[startGroup].createRelationshipTo(groupNodes[endGroup], rel.getType());
+                                        if (!relAggNames.isEmpty()) {
+                                            aggregate(vRel, relAggNames, properties);
+                                        }
+                                        return vRel;
+                                    });
                                 }
                             }
                         }
-                    } catch (Exception e) {
-                        log.error("Error grouping relationships", e);
                     }
-                    return null;
-                }));
-                Util.removeFinished(futures);
-            }
+                } catch (Exception e) {
+                    log.error("Error grouping relationships", e);
+                }
+                return null;
+            }));
+            Util.removeFinished(futures);
         }
         Util.waitForFutures(futures);
         Stream<VirtualNode> stream = fixAggregates(virtualNodes.values()).stream();
@@ -208,6 +220,25 @@ public class Grouping {
         return groupResultStream;
     }
 
+    /**
+     * @return the first id from <code>from</code> of a node with a group in any of the indexes, or capacity if there is none
+     */
+    private static long nextGrouped(GroupIndex[] indexes, long from, long capacity) {
+        long nodeId = from;
+        while (nodeId < capacity) {
+            boolean pageInUse = false;
+            for (GroupIndex index : indexes) {
+                if (index.hasPage(nodeId)) {
+                    pageInUse = true;
+                    if (index.get(nodeId) != -1) return nodeId;
+                }
+            }
+            // skips the rest of the page if none of the indexes has it
+            nodeId = pageInUse ? nodeId + 1 : GroupIndex.nextPage(nodeId);
+        }
+        return capacity;
+    }
+
     private Map<String, Number> configuredFilter(Map<String, Object> config) {
         Map<String, Number> filter = (Map<String, Number>) config.get("filter");
         if (filter == null || filter.isEmpty()) return null;
@@ -368,29 +399,6 @@ public class Grouping {
         return new NodeKey(label, propertiesFor(node, keys));
     }
 
-    /**
-     * Creates a grouping key for each specified label.
-     *
-     * @param node   node
-     * @param labels node labels
-     * @param keys   property keys
-     * @return grouping keys
-     */
-    private Collection<NodeKey> keysFor(Node node, Collection<String> labels, String[] keys) {
-        Map<String, Object> props = propertiesFor(node, keys);
-        List<NodeKey> result = new ArrayList<>(labels.size());
-        if (labels.contains("*")) {
-            result.add(new NodeKey("*", props));
-        } else {
-            for (Label label : node.getLabels()) {
-                if (labels.contains(label.name())) {
-                    result.add(new NodeKey(label.name(), props));
-                }
-            }
-        }
-        return result;
-    }
-
     /**
      * Represents a grouping key for nodes.
      */
@@ -425,15 +433,15 @@ public class Grouping {
      */
     private static class RelKey {
         private final int hash;
-        private final NodeKey startKey;
-        private final NodeKey endKey;
+        private final int startGroup;
+        private final int endGroup;
         private final String type;
 
-        RelKey(NodeKey startKey, NodeKey endKey, Relationship rel) {
-            this.startKey = startKey;
-            this.endKey = endKey;
+        RelKey(int startGroup, int endGroup, Relationship rel) {
+            this.startGroup = startGroup;
+            this.endGroup = endGroup;
             this.type = rel.getType().name();
-            hash = 31 * (31 * startKey.hashCode() + endKey.hashCode()) + type.hashCode();
+            hash = 31 * (31 * startGroup + endGroup) + type.hashCode();
         }
 
         @Override
@@ -443,7 +451,7 @@ public class Grouping {
 
             RelKey relKey = (RelKey) o;
 
-            return startKey.equals(relKey.startKey) && endKey.equals(relKey.endKey) && type.equals(relKey.type);
+            return startGroup == relKey.startGroup && endGroup == relKey.endGroup && type.equals(relKey.type);
         }
 
         @Override
@@ -451,4 +459,56 @@ public class Grouping {
             return hash;
         }
     }
+
+    /**
+     * Maps the ids of the nodes of a label to the ids of their groups, in primitive pages allocated for the parts
+     * of the id space the label actually uses.
+     */
+    static class GroupIndex {
+        private static final int PAGE_SHIFT = 10;
+        private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+        private final Map<Long, int[]> growingPages = new ConcurrentHashMap<>();
+        private int[][] pages = new int[0][];
+
+        void set(long nodeId, int group) {
+            // 0 marks the nodes without a group
+            growingPages.computeIfAbsent(nodeId >>> PAGE_SHIFT, page -> new int[1 << PAGE_SHIFT])[(int) (nodeId & PAGE_MASK)] = group + 1;
+        }
+
+        /**
+         * Switches to the read-only lookup array, once every node has been set
+         */
+        void freeze() {
+            long maxPage = growingPages.keySet().stream().mapToLong(Long::longValue).max().orElse(-1L);
+            pages = new int[(int) (maxPage + 1)][];
+            growingPages.forEach((page, values) -> pages[page.intValue()] = values);
+            growingPages.clear();
+        }
+
+        /**
+         * @return the number of node ids covered by the pages, once frozen
+         */
+        long capacity() {
+            return (long) pages.length << PAGE_SHIFT;
+        }
+
+        boolean hasPage(long nodeId) {
+            long page = nodeId >>> PAGE_SHIFT;
+            return page < pages.length && pages[(int) page] != null;
+        }
+
+        static long nextPage(long nodeId) {
+            return ((nodeId >>> PAGE_SHIFT) + 1) << PAGE_SHIFT;
+        }
+
+        /**
+         * @return the group of the node, or -1 if it doesn't have one
+         */
+        int get(long nodeId) {
+            long page = nodeId >>> PAGE_SHIFT;
+            if (page >= pages.length || pages[(int) page] == null) return -1;
+            return pages[(int) page][(int) (nodeId & PAGE_MASK)] - 1;
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package apoc.periodic;
+
+import apoc.util.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the size of the next batch of <code>apoc.periodic.iterate</code> with <code>batchSize: 'auto'</code>
+ * from the commit latency, failures and retries of the batches completed so far.
+ *
+ * The size grows or shrinks towards the number of rows that can be committed within <code>targetLatency</code>
+ * (by at most a factor 2 per batch), and is halved whenever a batch failed or had to be retried.
+ */
+public class AdaptiveBatchSize {
+
+    public static final String AUTO = "auto";
+    public static final long DEFAULT_TARGET_LATENCY = 1000;
+    public static final int DEFAULT_MIN_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100_000;
+    public static final int DEFAULT_INITIAL_BATCH_SIZE = 1000;
+    static final int MAX_TRAJECTORY_SIZE = 1000;
+
+    private final long targetLatencyNanos;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private volatile int current;
+    private final List<Long> trajectory = new ArrayList<>();
+
+    public AdaptiveBatchSize(long targetLatencyMillis, int minBatchSize, int maxBatchSize) {
+        if (targetLatencyMillis < 1) {
+            throw new IllegalArgumentException("targetLatency parameter must be > 0");
+        }
+        if (minBatchSize < 1 || maxBatchSize < minBatchSize) {
+            throw new IllegalArgumentException("minBatchSize parameter must be > 0 and not greater than maxBatchSize");
+        }
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.current = clamp(DEFAULT_INITIAL_BATCH_SIZE);
+        this.trajectory.add((long) current);
+    }
+
+    public static boolean isAuto(Object batchSize) {
+        return batchSize instanceof String && AUTO.equalsIgnoreCase((String) batchSize);
+    }
+
+    public static AdaptiveBatchSize fromConfig(Map<String, Object> config) {
+        return new AdaptiveBatchSize(
+                Util.toLong(config.getOrDefault("targetLatency", DEFAULT_TARGET_LATENCY)),
+                Util.toInteger(config.getOrDefault("minBatchSize", DEFAULT_MIN_BATCH_SIZE)),
+                Util.toInteger(config.getOrDefault("maxBatchSize", DEFAULT_MAX_BATCH_SIZE)));
+    }
+
+    public int next() {
+        return current;
+    }
+
+    /**
+     * @param size number of rows of the completed batch
+     * @param elapsedNanos time spent executing and committing the batch, including retries
+     * @param retries number of retries the batch needed
+     * @param failed true if the batch could not be committed
+     */
+    public synchronized void onBatchCompleted(long size, long elapsedNanos, long retries, boolean failed) {
+        int next;
+        if (failed || retries > 0) {
+            next = current / 2;
+        } else {
+            if (size == 0) return;
+            double nanosPerRow = Math.max(1d, (double) elapsedNanos / size);
+            long ideal = (long) (targetLatencyNanos / nanosPerRow);
+            next = (int) Math.max(current / 2, Math.min((long) current * 2, ideal));
+        }
+        next = clamp(next);
+        if (next != current) {
+            current = next;
+            if (trajectory.size() < MAX_TRAJECTORY_SIZE) {
+                trajectory.add((long) next);
+            }
+        }
+    }
+
+    public synchronized List<Long> getTrajectory() {
+        return Collections.unmodifiableList(new ArrayList<>(trajectory));
+    }
+
+    private int clamp(long size) {
+        return (int) Math.max(minBatchSize, Math.min(maxBatchSize, size));
+    }
+}
@@ -1,10 +1,12 @@
 package apoc.periodic;
 
 import apoc.util.Util;
+import org.HdrHistogram.Histogram;
 import org.neo4j.graphdb.QueryStatistics;
 import org.neo4j.procedure.TerminationGuard;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,6 +18,8 @@ import java.util.concurrent.atomic.AtomicLong;
 public class BatchAndTotalCollector {
     private final int failedParams;
     private long start = System.nanoTime();
+    /** the time of completion, -1 while running */
+    private volatile long end = -1;
     private AtomicLong batches = new AtomicLong();
     private long successes = 0;
     private AtomicLong count = new AtomicLong();
@@ -26,6 +30,11 @@ public class BatchAndTotalCollector {
     private Map<String, Long> batchErrors = new HashMap<>();
     private Map<String, List<Map<String, Object>>> failedParamsMap = new ConcurrentHashMap<>();
     private final boolean wasTerminated;
+    private List<Long> batchSizes = Collections.emptyList();
+
+    private AtomicLong running = new AtomicLong();
+    private final Histogram batchLatencies = new Histogram(3);
+    private volatile Long estimatedTotal;
 
     private AtomicLong nodesCreated = new AtomicLong();
     private AtomicLong nodesDeleted = new AtomicLong();
@@ -41,7 +50,8 @@ public class BatchAndTotalCollector {
     }
 
     public BatchAndTotalResult getResult() {
-        long timeTaken = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+        completed();
+        long timeTaken = TimeUnit.NANOSECONDS.toSeconds(elapsedNanos());
         Map<String, Long> updateStatistics = new HashMap<>();
         updateStatistics.put("nodesCreated", nodesCreated.get());
         updateStatistics.put("nodesDeleted", nodesDeleted.get());
@@ -53,7 +63,7 @@ public class BatchAndTotalCollector {
 
         return new BatchAndTotalResult(batches.get(), count.get(), timeTaken, successes, failedOps.get(),
                 failedBatches.get(), retried.get(), operationErrors, batchErrors, wasTerminated,
-                failedParamsMap, updateStatistics);
+                failedParamsMap, updateStatistics, batchSizes);
     }
 
     public long getBatches() {
@@ -105,6 +115,67 @@ public class BatchAndTotalCollector {
         return failedBatches;
     }
 
+    public void setEstimatedTotal(Long estimatedTotal) {
+        this.estimatedTotal = estimatedTotal;
+    }
+
+    public void batchStarted() {
+        running.incrementAndGet();
+    }
+
+    public void batchCompleted(long elapsedNanos) {
+        running.decrementAndGet();
+        synchronized (batchLatencies) {
+            batchLatencies.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+        }
+    }
+
+    /**
+     * Records the end of the execution, the time taken and the rate are computed up to it from then on
+     */
+    public synchronized void completed() {
+        if (end == -1) {
+            end = System.nanoTime();
+        }
+    }
+
+    private long elapsedNanos() {
+        long end = this.end;
+        return (end == -1 ? System.nanoTime() : end) - start;
+    }
+
+    /**
+     * Live counters of a running execution, latencies are in milliseconds
+     */
+    public Map<String, Object> getProgress() {
+        long elapsedNanos = elapsedNanos();
+        long total = count.get();
+        double rowsPerSecond = elapsedNanos > 0 ? total * 1_000_000_000d / elapsedNanos : 0d;
+        long p50, p99;
+        synchronized (batchLatencies) {
+            p50 = batchLatencies.getValueAtPercentile(50);
+            p99 = batchLatencies.getValueAtPercentile(99);
+        }
+        Long expected = estimatedTotal;
+        Long secondsRemaining = expected == null || rowsPerSecond == 0 ? null : (long) (Math.max(0, expected - total) / rowsPerSecond);
+        return Util.map("total", total,
+                "batches", batches.get(),
+                "batchesInFlight", running.get(),
+                "failedBatches", (long) failedBatches.get(),
+                "failedOperations", failedOps.get(),
+                "retries", retried.get(),
+                "rowsPerSecond", rowsPerSecond,
+                "batchLatencyP50", p50,
+                "batchLatencyP99", p99,
+                "timeTaken", TimeUnit.NANOSECONDS.toSeconds(elapsedNanos),
+                "estimatedTotal", expected,
+                "estimatedSecondsRemaining", secondsRemaining);
+    }
+
+    public void setBatchSizes(List<Long> batchSizes) {
+        this.batchSizes = batchSizes;
+    }
+
     public void incrementRetried() {
         retried.incrementAndGet();
     }
@@ -7,12 +7,14 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.QueryStatistics;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransactionTerminatedException;
 import org.neo4j.graphdb.schema.ConstraintDefinition;
 import org.neo4j.graphdb.schema.IndexDefinition;
 import org.neo4j.graphdb.schema.Schema;
 import org.neo4j.internal.helpers.collection.Iterables;
 import org.neo4j.internal.helpers.collection.Iterators;
 import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.kernel.api.exceptions.Status;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
@@ -20,6 +22,7 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.regex.Matcher;
@@ -62,6 +65,12 @@ public class Periodic {
         return pools.getJobList().entrySet().stream().map( (e) -> e.getKey().update(e.getValue()));
     }
 
+    @Procedure
+    @Description("apoc.periodic.pools() - list the executor pools with their size and saturation")
+    public Stream<Pools.PoolInfo> pools() {
+        return pools.getPoolInfos();
+    }
+
     @Procedure(mode = Mode.WRITE)
     @Description("apoc.periodic.commit(statement,params) - runs the given statement in separate transactions until it returns 0")
     public Stream<RundownResult> commit(@Name("statement") String statement, @Name(value = "params", defaultValue = "{}") Map<String,Object> parameters) throws ExecutionException, InterruptedException {
@@ -241,8 +250,62 @@ public class Periodic {
             @Name("cypherAction") String cypherAction,
             @Name("config") Map<String,Object> config) {
         validateQuery(cypherIterate);
+        int failedParams = Util.toInteger(config.getOrDefault("failedParams", -1));
+        return iterate(tx, terminationGuard, new BatchAndTotalCollector(terminationGuard, failedParams), cypherIterate, cypherAction, config);
+    }
+
+    @Procedure(mode = Mode.WRITE)
+    @Description("apoc.periodic.submitIterate('name', 'statement returning items', 'statement per item', {config}) - run apoc.periodic.iterate as a named background job, its progress is reported by apoc.periodic.list and it can be stopped by apoc.periodic.cancel")
+    public Stream<JobInfo> submitIterate(
+            @Name("name") String name,
+            @Name("cypherIterate") String cypherIterate,
+            @Name("cypherAction") String cypherAction,
+            @Name(value = "config", defaultValue = "{}") Map<String,Object> config) {
+        validateQuery(cypherIterate);
+        AtomicReference<IterateJob> self = new AtomicReference<>();
+        TerminationGuard jobGuard = () -> {
+            IterateJob job = self.get();
+            if (job != null && job.isCancelled()) throw new TransactionTerminatedException(Status.Transaction.Terminated);
+        };
+        int failedParams = Util.toInteger(config.getOrDefault("failedParams", -1));
+        BatchAndTotalCollector collector = new BatchAndTotalCollector(jobGuard, failedParams);
+        IterateJob job = new IterateJob(wrapTask(name, () -> {
+            try (Transaction jobTx = db.beginTx()) {
+                Long expectedTotal = Util.toLong(config.get("expectedTotal"));
+                collector.setEstimatedTotal(expectedTotal != null ? expectedTotal :
+                        estimateRows(jobTx, cypherIterate, (Map<String, Object>) config.getOrDefault("params", Collections.emptyMap())));
+                iterate(jobTx, jobGuard, collector, cypherIterate, cypherAction, config);
+                jobTx.commit();
+            }
+        }, log), collector);
+        self.set(job);
+
+        JobInfo info = new JobInfo(name);
+        Future future = pools.getJobList().remove(info);
+        if (future != null && !future.isDone()) future.cancel(false);
+
+        pools.getScheduledExecutorService().execute(job);
+        pools.getJobList().put(info, job);
+        return Stream.of(info.update(job));
+    }
+
+    /**
+     * planner estimate of the rows returned by the statement, null if not available
+     */
+    private static Long estimateRows(Transaction tx, String statement, Map<String,Object> params) {
+        try (Result result = tx.execute("EXPLAIN " + statement, params)) {
+            Object rows = result.getExecutionPlanDescription().getArguments().get("EstimatedRows");
+            return rows instanceof Number ? ((Number) rows).longValue() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
 
-        long batchSize = Util.toLong(config.getOrDefault("batchSize", 10000));
+    private Stream<BatchAndTotalResult> iterate(Transaction tx, TerminationGuard terminationGuard, BatchAndTotalCollector collector,
+                                                String cypherIterate, String cypherAction, Map<String,Object> config) {
+        Object batchSizeConfig = config.getOrDefault("batchSize", 10000);
+        AdaptiveBatchSize adaptiveBatchSize = AdaptiveBatchSize.isAuto(batchSizeConfig) ? AdaptiveBatchSize.fromConfig(config) : null;
+        long batchSize = adaptiveBatchSize == null ? Util.toLong(batchSizeConfig) : adaptiveBatchSize.next();
         if (batchSize < 1) {
             throw new IllegalArgumentException("batchSize parameter must be > 0");
         }
@@ -252,12 +315,38 @@ public class Periodic {
         }
         boolean parallel = Util.toBoolean(config.getOrDefault("parallel", false));
         long retries = Util.toLong(config.getOrDefault("retries", 0)); // todo sleep/delay or push to end of batch to try again or immediate ?
-        int failedParams = Util.toInteger(config.getOrDefault("failedParams", -1));
+        boolean pipelined = Util.toBoolean(config.getOrDefault("pipelined", false));
+        String partitionBy = (String) config.get("partitionBy");
+        String poolName = (String) config.get("pool");
+        pools.getExecutorService(poolName); // fail early on unknown pools
+        PeriodicCheckpoint checkpoint = PeriodicCheckpoint.fromConfig(db, config, log);
+        if (pipelined && partitionBy != null && parallel) {
+            throw new IllegalArgumentException("pipelined parameter is not supported together with partitionBy, whose lanes already bound the batches held in memory");
+        }
+        if (checkpoint != null && partitionBy != null && parallel) {
+            throw new IllegalArgumentException("checkpoint parameter is not supported together with partitionBy");
+        }
+        if (checkpoint != null && Util.toBoolean(config.getOrDefault("resume", false))) {
+            checkpoint.resume();
+        }
 
         BatchMode batchMode = BatchMode.fromConfig(config);
         Map<String,Object> params = (Map<String, Object>) config.getOrDefault("params", Collections.emptyMap());
+        Map<String,Object> iterateParams = checkpoint == null ? params : merge(params, Collections.singletonMap("_checkpoint", checkpoint.getPosition()));
 
-        try (Result result = tx.execute(slottedRuntime(cypherIterate),params)) {
+        try (Result result = tx.execute(slottedRuntime(cypherIterate),iterateParams)) {
+            if (partitionBy != null && !result.columns().contains(partitionBy)) {
+                throw new IllegalArgumentException("partitionBy parameter must be one of the columns returned by the iterate statement: " + result.columns());
+            }
+            if (checkpoint != null && checkpoint.getKeyColumn() != null && !result.columns().contains(checkpoint.getKeyColumn())) {
+                throw new IllegalArgumentException("checkpointKey parameter must be one of the columns returned by the iterate statement: " + result.columns());
+            }
+            if (checkpoint != null && checkpoint.getKeyColumn() == null) {
+                // without a key the iterate statement is replayed and the rows committed by the previous run are skipped
+                for (long skip = checkpoint.getOffset(); skip > 0 && result.hasNext(); skip--) {
+                    result.next();
+                }
+            }
             Pair<String,Boolean> prepared = PeriodicUtils.prepareInnerStatement(cypherAction, batchMode, result.columns(), "_batch");
             String innerStatement = prepared.first();
             boolean iterateList = prepared.other();
@@ -270,7 +359,7 @@ public class Periodic {
                         Iterators.count(r); // XXX: consume all results
                         return r.getQueryStatistics();
                     },
-                    concurrency, failedParams);
+                    concurrency, collector, pipelined, adaptiveBatchSize, partitionBy, checkpoint, poolName);
         }
     }
 
@@ -373,6 +462,7 @@ public class Periodic {
         public long rate;
         public boolean done;
         public boolean cancelled;
+        public Map<String,Object> progress;
 
         public JobInfo(String name) {
             this.name = name;
@@ -387,6 +477,9 @@ public class Periodic {
         public JobInfo update(Future future) {
             this.done = future.isDone();
             this.cancelled = future.isCancelled();
+            if (future instanceof IterateJob) {
+                this.progress = ((IterateJob) future).collector.getProgress();
+            }
             return this;
         }
 
@@ -401,6 +494,24 @@ public class Periodic {
         }
     }
 
+    /**
+     * apoc.periodic.iterate running in the background in its own transaction, the statistics collected so far are
+     * exposed by the job list. Cancelling the job terminates the iteration like a terminated transaction would.
+     */
+    private static class IterateJob extends FutureTask<Void> {
+        private final BatchAndTotalCollector collector;
+
+        IterateJob(Runnable task, BatchAndTotalCollector collector) {
+            super(task, null);
+            this.collector = collector;
+        }
+
+        @Override
+        protected void done() {
+            collector.completed();
+        }
+    }
+
     private class Countdown implements Runnable {
         private final String name;
         private final String statement;
@@ -0,0 +1,210 @@
+package apoc.periodic;
+
+import apoc.SystemLabels;
+import apoc.SystemPropertyKeys;
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.helpers.collection.Iterators;
+import org.neo4j.logging.Log;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static apoc.ApocConfig.apocConfig;
+
+/**
+ * Durable progress of a named <code>apoc.periodic.iterate</code> job, stored in the system database.
+ *
+ * Each batch is registered in iteration order; as batches complete (possibly out of order when parallel), the
+ * checkpoint advances over the contiguous prefix of committed batches and records the number of rows consumed
+ * from the iterate statement (<code>offset</code>) and, if a key column is given, the key of the last row
+ * (<code>position</code>). A failed batch stops the checkpoint from advancing, so a resumed job retries it.
+ */
+public class PeriodicCheckpoint {
+
+    static final long PERSIST_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final GraphDatabaseService systemDb;
+    private final String databaseName;
+    private final String name;
+    private final String keyColumn;
+    private final Log log;
+
+    private long offset;
+    private Object position;
+    private long registeredOffset;
+    private long nextSeq;
+    private long committedSeq = -1;
+    private boolean blocked;
+    private boolean dirty;
+    private long lastPersisted = System.nanoTime();
+    private final TreeMap<Long, Batch> completed = new TreeMap<>();
+
+    /** held while writing to the system database, so that the writes happen in the order of the offsets */
+    private final Object persistLock = new Object();
+    /** guarded by persistLock */
+    private long persistedOffset = -1;
+
+    PeriodicCheckpoint(GraphDatabaseService systemDb, String databaseName, String name, String keyColumn, Log log) {
+        this.systemDb = systemDb;
+        this.databaseName = databaseName;
+        this.name = name;
+        this.keyColumn = keyColumn;
+        this.log = log;
+    }
+
+    public static PeriodicCheckpoint fromConfig(GraphDatabaseService db, Map<String, Object> config, Log log) {
+        Object name = config.get("checkpoint");
+        if (name == null) return null;
+        Object keyColumn = config.get("checkpointKey");
+        return new PeriodicCheckpoint(apocConfig().getSystemDb(), db.databaseName(), String.valueOf(name),
+                keyColumn == null ? null : String.valueOf(keyColumn), log);
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    /**
+     * loads the position recorded by a previous run, if any
+     */
+    public void resume() {
+        try (Transaction tx = systemDb.beginTx()) {
+            Node node = find(tx);
+            if (node != null) {
+                offset = (long) node.getProperty(SystemPropertyKeys.offset.name(), 0L);
+                position = node.getProperty(SystemPropertyKeys.position.name(), null);
+            }
+            tx.commit();
+        }
+        registeredOffset = offset;
+        synchronized (persistLock) {
+            persistedOffset = offset;
+        }
+    }
+
+    /**
+     * @return the number of rows already committed by a previous run
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the key of the last row committed by a previous run, or null
+     */
+    public Object getPosition() {
+        return position;
+    }
+
+    /**
+     * Registers the next batch in iteration order, called from the thread consuming the iterate statement
+     */
+    public synchronized Batch register(List<Map<String, Object>> batch) {
+        registeredOffset += batch.size();
+        Object key = keyColumn == null || batch.isEmpty() ? null : toPosition(batch.get(batch.size() - 1).get(keyColumn));
+        return new Batch(nextSeq++, registeredOffset, key);
+    }
+
+    public void completed(Batch batch, boolean failed) {
+        boolean persist;
+        synchronized (this) {
+            if (blocked) return;
+            batch.failed = failed;
+            completed.put(batch.seq, batch);
+            Batch next;
+            while ((next = completed.get(committedSeq + 1)) != null) {
+                if (next.failed) {
+                    blocked = true;
+                    break;
+                }
+                completed.remove(committedSeq + 1);
+                committedSeq++;
+                offset = next.offset;
+                if (next.position != null) position = next.position;
+                dirty = true;
+            }
+            persist = dirty && System.nanoTime() - lastPersisted > PERSIST_INTERVAL;
+        }
+        if (persist) persist();
+    }
+
+    /**
+     * Records the final position, or removes the checkpoint if every batch has been committed
+     */
+    public void finish(boolean allCommitted) {
+        if (allCommitted) {
+            synchronized (persistLock) {
+                try (Transaction tx = systemDb.beginTx()) {
+                    Node node = find(tx);
+                    if (node != null) node.delete();
+                    tx.commit();
+                }
+            }
+        } else {
+            persist();
+        }
+    }
+
+    private void persist() {
+        synchronized (persistLock) {
+            long currentOffset;
+            Object currentPosition;
+            synchronized (this) {
+                if (!dirty) return;
+                currentOffset = offset;
+                currentPosition = position;
+                dirty = false;
+                lastPersisted = System.nanoTime();
+            }
+            // a concurrent call may have written a later offset already
+            if (currentOffset <= persistedOffset) return;
+            write(currentOffset, currentPosition);
+        }
+    }
+
+    private void write(long currentOffset, Object currentPosition) {
+        try (Transaction tx = systemDb.beginTx()) {
+            Node node = find(tx);
+            if (node == null) {
+                node = tx.createNode(SystemLabels.ApocPeriodicCheckpoint);
+                node.setProperty(SystemPropertyKeys.database.name(), databaseName);
+                node.setProperty(SystemPropertyKeys.name.name(), name);
+            }
+            node.setProperty(SystemPropertyKeys.offset.name(), currentOffset);
+            if (currentPosition != null) node.setProperty(SystemPropertyKeys.position.name(), currentPosition);
+            node.setProperty(SystemPropertyKeys.lastUpdated.name(), System.currentTimeMillis());
+            tx.commit();
+            persistedOffset = currentOffset;
+        } catch (Exception e) {
+            log.warn("Cannot persist checkpoint " + name + " at offset " + currentOffset, e);
+        }
+    }
+
+    private Node find(Transaction tx) {
+        return Iterators.singleOrNull(tx.findNodes(SystemLabels.ApocPeriodicCheckpoint,
+                SystemPropertyKeys.database.name(), databaseName,
+                SystemPropertyKeys.name.name(), name));
+    }
+
+    private static Object toPosition(Object key) {
+        return key instanceof Entity ? ((Entity) key).getId() : key;
+    }
+
+    public static class Batch {
+        private final long seq;
+        private final long offset;
+        private final Object position;
+        private boolean failed;
+
+        Batch(long seq, long offset, Object position) {
+            this.seq = seq;
+            this.offset = offset;
+            this.position = position;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package apoc.periodic;
 
 import apoc.Pools;
 import apoc.util.Util;
+import org.neo4j.graphdb.Entity;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.QueryStatistics;
 import org.neo4j.graphdb.Transaction;
@@ -9,16 +10,29 @@ import org.neo4j.internal.helpers.collection.Pair;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.TerminationGuard;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.LockSupport;
-import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.ToLongFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -60,10 +74,60 @@ public class PeriodicUtils {
             int batchsize, boolean parallel, boolean iterateList, long retries,
             Iterator<Map<String, Object>> iterator, BiFunction<Transaction, Map<String, Object>, QueryStatistics> consumer,
             int concurrency, int failedParams) {
+        return iterateAndExecuteBatchedInSeparateThread(db, terminationGuard, log, pools, batchsize, parallel, iterateList, retries,
+                iterator, consumer, concurrency, new BatchAndTotalCollector(terminationGuard, failedParams), false, null, null, null, null);
+    }
+
+    /**
+     * @param collector collects the statistics of the execution, it can be read while the batches are running
+     * @param pipelined if true at most <code>concurrency</code> batches are materialized or running at any time, see {@link #iterateAndExecuteBatchedPipelined}
+     * @param adaptiveBatchSize if not null it provides the size of each batch instead of <code>batchsize</code>
+     * @param partitionBy if not null and parallel, the column whose value assigns each row to a worker lane, see {@link #iterateAndExecuteBatchedPartitioned}
+     * @param checkpoint if not null the committed position is recorded there, not supported together with <code>partitionBy</code>
+     * @param poolName if not null the batches are executed in this pool of {@link Pools#getExecutorService(String)},
+     *                 one at a time if not parallel, and at most <code>concurrency</code> at a time if the pool is
+     *                 unbounded
+     */
+    public static Stream<BatchAndTotalResult> iterateAndExecuteBatchedInSeparateThread(
+            GraphDatabaseService db, TerminationGuard terminationGuard, Log log, Pools pools,
+            int batchsize, boolean parallel, boolean iterateList, long retries,
+            Iterator<Map<String, Object>> iterator, BiFunction<Transaction, Map<String, Object>, QueryStatistics> consumer,
+            int concurrency, BatchAndTotalCollector collector, boolean pipelined, AdaptiveBatchSize adaptiveBatchSize, String partitionBy,
+            PeriodicCheckpoint checkpoint, String poolName) {
+
+        ExecutorService pool = poolName != null ? pools.getExecutorService(poolName) :
+                parallel ? pools.getDefaultExecutorService() : pools.getSingleExecutorService();
+        if (parallel && partitionBy != null) {
+            iterateAndExecuteBatchedPartitioned(db, terminationGuard, log, pool, batchsize, iterateList, retries,
+                    iterator, consumer, concurrency, collector, adaptiveBatchSize, partitionBy);
+        } else if (pipelined || (poolName != null && (!parallel || pools.isUnbounded(poolName)))) {
+            // a named pool can run several batches at once, the pipeline keeps non-parallel batches sequential,
+            // and caps the transactions opened at once on a pool starting a thread per batch, like the io one
+            iterateAndExecuteBatchedPipelined(db, terminationGuard, log, pool, batchsize, parallel, iterateList, retries,
+                    iterator, consumer, concurrency, collector, adaptiveBatchSize, checkpoint);
+        } else {
+            iterateAndExecuteBatched(db, terminationGuard, log, pool, batchsize, parallel, iterateList, retries,
+                    iterator, consumer, concurrency, collector, adaptiveBatchSize, checkpoint);
+        }
+        if (checkpoint != null) {
+            checkpoint.finish(!Util.transactionIsTerminated(terminationGuard) && collector.getFailedBatches().get() == 0);
+        }
+        if (adaptiveBatchSize != null) {
+            collector.setBatchSizes(adaptiveBatchSize.getTrajectory());
+        }
+
+        Util.logErrors("Error during iterate.commit:", collector.getBatchErrors(), log);
+        Util.logErrors("Error during iterate.execute:", collector.getOperationErrors(), log);
+        return Stream.of(collector.getResult());
+    }
+
+    private static void iterateAndExecuteBatched(
+            GraphDatabaseService db, TerminationGuard terminationGuard, Log log, ExecutorService pool,
+            int batchsize, boolean parallel, boolean iterateList, long retries,
+            Iterator<Map<String, Object>> iterator, BiFunction<Transaction, Map<String, Object>, QueryStatistics> consumer,
+            int concurrency, BatchAndTotalCollector collector, AdaptiveBatchSize adaptiveBatchSize, PeriodicCheckpoint checkpoint) {
 
-        ExecutorService pool = parallel ? pools.getDefaultExecutorService() : pools.getSingleExecutorService();
         List<Future<Long>> futures = new ArrayList<>(concurrency);
-        BatchAndTotalCollector collector = new BatchAndTotalCollector(terminationGuard, failedParams);
         AtomicInteger activeFutures = new AtomicInteger(0);
 
         do {
@@ -73,25 +137,26 @@ public class PeriodicUtils {
                 // we have capacity, add a new Future to the list
                 activeFutures.incrementAndGet();
 
-                if (log.isDebugEnabled()) log.debug("execute in batch no %d batch size ", batchsize);
-                List<Map<String,Object>> batch = Util.take(iterator, batchsize);
+                int size = adaptiveBatchSize == null ? batchsize : adaptiveBatchSize.next();
+                if (log.isDebugEnabled()) log.debug("execute in batch no %d batch size ", size);
+                List<Map<String,Object>> batch = Util.take(iterator, size);
                 final long currentBatchSize = batch.size();
                 Periodic.ExecuteBatch executeBatch =
                         iterateList ?
                                 new Periodic.ListExecuteBatch(terminationGuard, collector, batch, consumer) :
                                 new Periodic.OneByOneExecuteBatch(terminationGuard, collector, batch, consumer);
 
-                futures.add(Util.inTxFuture(log,
-                        pool,
-                        db,
-                        executeBatch,
-                        retries,
-                        retryCount -> collector.incrementRetried(),
-                        onComplete -> {
-                            collector.incrementBatches();
-                            executeBatch.release();
-                            activeFutures.decrementAndGet();
-                        }));
+                PeriodicCheckpoint.Batch checkpointBatch = checkpoint == null ? null : checkpoint.register(batch);
+
+                try {
+                    futures.add(pool.submit(batchTask(log, db, executeBatch, currentBatchSize, retries, collector, adaptiveBatchSize,
+                            failed -> {
+                                activeFutures.decrementAndGet();
+                                if (checkpoint != null) checkpoint.completed(checkpointBatch, failed);
+                            })));
+                } catch (Exception e) {
+                    throw new RuntimeException("Error executing in separate transaction", e);
+                }
                 collector.incrementCount(currentBatchSize);
             } else {
                 // we can't block until the counter decrease as we might miss a cancellation, so
@@ -106,10 +171,265 @@ public class PeriodicUtils {
                 f -> Util.getFutureOrCancel(f, collector.getBatchErrors(), collector.getFailedBatches(), 0L) :
                 f -> Util.getFuture(f, collector.getBatchErrors(), collector.getFailedBatches(), 0L);
         collector.incrementSuccesses(futures.stream().mapToLong(toLongFunction).sum());
+    }
 
-        Util.logErrors("Error during iterate.commit:", collector.getBatchErrors(), log);
-        Util.logErrors("Error during iterate.execute:", collector.getOperationErrors(), log);
-        return Stream.of(collector.getResult());
+    /**
+     * Pipelined variant of {@link #iterateAndExecuteBatched}: at most <code>concurrency</code> batches
+     * (one if not parallel) are materialized or running at any time. The caller thread blocks on a semaphore instead of
+     * spinning, and results are aggregated as soon as each batch completes, so only the in-flight futures are retained.
+     */
+    private static void iterateAndExecuteBatchedPipelined(
+            GraphDatabaseService db, TerminationGuard terminationGuard, Log log, ExecutorService pool,
+            int batchsize, boolean parallel, boolean iterateList, long retries,
+            Iterator<Map<String, Object>> iterator, BiFunction<Transaction, Map<String, Object>, QueryStatistics> consumer,
+            int concurrency, BatchAndTotalCollector collector, AdaptiveBatchSize adaptiveBatchSize, PeriodicCheckpoint checkpoint) {
+
+        int maxInFlight = parallel ? concurrency : 1;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        // completed batches are handed back through this queue, it can never hold more than maxInFlight entries
+        BlockingQueue<Future<Long>> completed = new ArrayBlockingQueue<>(maxInFlight);
+        Set<Future<Long>> running = ConcurrentHashMap.newKeySet(maxInFlight);
+
+        try {
+            while (iterator.hasNext() && !Util.transactionIsTerminated(terminationGuard)) {
+                if (!acquireInFlight(inFlight, completed, collector, terminationGuard)) break;
+
+                int size = adaptiveBatchSize == null ? batchsize : adaptiveBatchSize.next();
+                if (log.isDebugEnabled()) log.debug("execute in batch no %d batch size ", size);
+                List<Map<String,Object>> batch = Util.take(iterator, size);
+                final long currentBatchSize = batch.size();
+                Periodic.ExecuteBatch executeBatch =
+                        iterateList ?
+                                new Periodic.ListExecuteBatch(terminationGuard, collector, batch, consumer) :
+                                new Periodic.OneByOneExecuteBatch(terminationGuard, collector, batch, consumer);
+
+                PeriodicCheckpoint.Batch checkpointBatch = checkpoint == null ? null : checkpoint.register(batch);
+
+                FutureTask<Long> task = new FutureTask<>(batchTask(log, db, executeBatch, currentBatchSize, retries, collector, adaptiveBatchSize,
+                        failed -> {
+                            if (checkpoint != null) checkpoint.completed(checkpointBatch, failed);
+                        })) {
+                    @Override
+                    protected void done() {
+                        running.remove(this);
+                        completed.offer(this);
+                    }
+                };
+                running.add(task);
+                try {
+                    pool.execute(task);
+                } catch (Exception e) {
+                    running.remove(task);
+                    inFlight.release();
+                    throw new RuntimeException("Error executing in separate transaction", e);
+                }
+                collector.incrementCount(currentBatchSize);
+            }
+
+            boolean wasTerminated = Util.transactionIsTerminated(terminationGuard);
+            if (wasTerminated) {
+                running.forEach(f -> f.cancel(false));
+            }
+            // wait for the remaining in-flight batches
+            while (inFlight.availablePermits() < maxInFlight) {
+                Future<Long> f = completed.poll(100, TimeUnit.MILLISECONDS);
+                if (f != null) {
+                    aggregate(f, collector, inFlight, wasTerminated);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running.forEach(f -> f.cancel(false));
+        }
+    }
+
+    /** batches of a lane that can wait for its running batch to complete */
+    static final int LANE_QUEUE_CAPACITY = 2;
+
+    private static class Lane {
+        final ArrayDeque<List<Map<String, Object>>> pending = new ArrayDeque<>(LANE_QUEUE_CAPACITY);
+        final ArrayDeque<Map<String, Object>> buffer = new ArrayDeque<>();
+        Future<Long> running;
+    }
+
+    /**
+     * Partitioned variant for parallel execution: every row is assigned to one of <code>concurrency</code> lanes by the
+     * value of its <code>partitionBy</code> column, and each lane runs at most one batch at a time. Rows sharing the
+     * same partition key are therefore never processed by concurrent transactions, which avoids lock contention
+     * (and deadlocks) between batches when the key is the entity the action statement locks.
+     *
+     * Each lane queues up to {@link #LANE_QUEUE_CAPACITY} batches behind its running one, and keeps buffering its rows
+     * once its queue is full, so that a slow lane doesn't hold up the others. The iteration only waits when the rows
+     * buffered by all the lanes reach <code>concurrency * (LANE_QUEUE_CAPACITY + 1) * batchsize</code>. The buffered
+     * rows are queued in batches of at most the current batch size, however many rows a lane holds.
+     */
+    private static void iterateAndExecuteBatchedPartitioned(
+            GraphDatabaseService db, TerminationGuard terminationGuard, Log log, ExecutorService pool,
+            int batchsize, boolean iterateList, long retries,
+            Iterator<Map<String, Object>> iterator, BiFunction<Transaction, Map<String, Object>, QueryStatistics> consumer,
+            int concurrency, BatchAndTotalCollector collector, AdaptiveBatchSize adaptiveBatchSize, String partitionBy) {
+
+        Lane[] lanes = new Lane[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            lanes[i] = new Lane();
+        }
+        BlockingQueue<Boolean> completions = new LinkedBlockingQueue<>();
+        long maxBuffered = (long) concurrency * (LANE_QUEUE_CAPACITY + 1) * batchsize;
+        long buffered = 0;
+        int size = batchsize;
+
+        try {
+            iterate:
+            while (iterator.hasNext() && !Util.transactionIsTerminated(terminationGuard)) {
+                Map<String, Object> row = iterator.next();
+                lanes[lane(row.get(partitionBy), concurrency)].buffer.add(row);
+                buffered++;
+                size = adaptiveBatchSize == null ? batchsize : adaptiveBatchSize.next();
+                buffered -= startBatches(db, terminationGuard, log, pool, iterateList, retries, consumer, collector, adaptiveBatchSize, lanes, size, false, completions);
+                while (buffered >= maxBuffered) {
+                    if (Util.transactionIsTerminated(terminationGuard)) break iterate;
+                    completions.poll(100, TimeUnit.MILLISECONDS);
+                    buffered -= startBatches(db, terminationGuard, log, pool, iterateList, retries, consumer, collector, adaptiveBatchSize, lanes, size, false, completions);
+                }
+            }
+
+            // the remaining rows of each lane make its last batch
+            boolean busy = true;
+            while (busy && !Util.transactionIsTerminated(terminationGuard)) {
+                size = adaptiveBatchSize == null ? batchsize : adaptiveBatchSize.next();
+                startBatches(db, terminationGuard, log, pool, iterateList, retries, consumer, collector, adaptiveBatchSize, lanes, size, true, completions);
+                busy = Arrays.stream(lanes).anyMatch(lane -> lane.running != null || !lane.pending.isEmpty() || !lane.buffer.isEmpty());
+                if (busy) completions.poll(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        boolean wasTerminated = Util.transactionIsTerminated(terminationGuard) || Thread.currentThread().isInterrupted();
+        ToLongFunction<Future<Long>> toLongFunction = wasTerminated ?
+                f -> Util.getFutureOrCancel(f, collector.getBatchErrors(), collector.getFailedBatches(), 0L) :
+                f -> Util.getFuture(f, collector.getBatchErrors(), collector.getFailedBatches(), 0L);
+        collector.incrementSuccesses(Arrays.stream(lanes).map(lane -> lane.running).filter(Objects::nonNull).mapToLong(toLongFunction).sum());
+    }
+
+    static int lane(Object partitionKey, int lanes) {
+        long key;
+        if (partitionKey instanceof Entity) {
+            key = ((Entity) partitionKey).getId();
+        } else if (partitionKey instanceof Number) {
+            key = ((Number) partitionKey).longValue();
+        } else {
+            key = Objects.hashCode(partitionKey);
+        }
+        // spread sequential ids evenly over the lanes
+        key = key * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(key ^ (key >>> 32), (long) lanes);
+    }
+
+    /**
+     * Collects the batches completed, queues batches of <code>size</code> rows from the buffers of the lanes with room
+     * in their queue, and submits the next batch of the idle lanes.
+     *
+     * @param flush if true the last rows of a buffer are queued even if they are fewer than <code>size</code>
+     * @return the number of rows submitted
+     */
+    private static long startBatches(GraphDatabaseService db, TerminationGuard terminationGuard, Log log, ExecutorService pool,
+                                     boolean iterateList, long retries, BiFunction<Transaction, Map<String, Object>, QueryStatistics> consumer,
+                                     BatchAndTotalCollector collector, AdaptiveBatchSize adaptiveBatchSize,
+                                     Lane[] lanes, int size, boolean flush, BlockingQueue<Boolean> completions) {
+        long submitted = 0;
+        for (int i = 0; i < lanes.length; i++) {
+            Lane lane = lanes[i];
+            if (lane.running != null && lane.running.isDone()) {
+                collector.incrementSuccesses(Util.getFuture(lane.running, collector.getBatchErrors(), collector.getFailedBatches(), 0L));
+                lane.running = null;
+            }
+            while (lane.pending.size() < LANE_QUEUE_CAPACITY && (lane.buffer.size() >= size || flush && !lane.buffer.isEmpty())) {
+                List<Map<String, Object>> batch = new ArrayList<>(Math.min(size, lane.buffer.size()));
+                while (batch.size() < size && !lane.buffer.isEmpty()) {
+                    batch.add(lane.buffer.poll());
+                }
+                lane.pending.add(batch);
+            }
+            if (lane.running != null || lane.pending.isEmpty()) continue;
+
+            List<Map<String, Object>> batch = lane.pending.poll();
+            if (log.isDebugEnabled()) log.debug("execute in lane %d batch size %d", i, batch.size());
+            final long currentBatchSize = batch.size();
+            Periodic.ExecuteBatch executeBatch =
+                    iterateList ?
+                            new Periodic.ListExecuteBatch(terminationGuard, collector, batch, consumer) :
+                            new Periodic.OneByOneExecuteBatch(terminationGuard, collector, batch, consumer);
+            try {
+                lane.running = pool.submit(batchTask(log, db, executeBatch, currentBatchSize, retries, collector, adaptiveBatchSize, failed -> completions.offer(failed)));
+            } catch (Exception e) {
+                throw new RuntimeException("Error executing in separate transaction", e);
+            }
+            collector.incrementCount(currentBatchSize);
+            submitted += currentBatchSize;
+        }
+        return submitted;
+    }
+
+    /**
+     * Executes and commits a batch (with retries), reporting to the collector and, if present, to the adaptive batch size.
+     * <code>onComplete</code> is called with true if the batch failed
+     */
+    private static Callable<Long> batchTask(Log log, GraphDatabaseService db, Periodic.ExecuteBatch executeBatch, long batchSize, long retries,
+                                            BatchAndTotalCollector collector, AdaptiveBatchSize adaptiveBatchSize, Consumer<Boolean> onComplete) {
+        return () -> {
+            long start = System.nanoTime();
+            AtomicLong batchRetries = new AtomicLong();
+            boolean failed = true;
+            collector.batchStarted();
+            try {
+                Long result = Util.retryInTx(log, db, executeBatch, 0, retries, retryCount -> {
+                    collector.incrementRetried();
+                    batchRetries.incrementAndGet();
+                });
+                failed = false;
+                return result;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                collector.batchCompleted(elapsed);
+                if (adaptiveBatchSize != null) {
+                    adaptiveBatchSize.onBatchCompleted(batchSize, elapsed, batchRetries.get(), failed);
+                }
+                collector.incrementBatches();
+                executeBatch.release();
+                onComplete.accept(failed);
+            }
+        };
+    }
+
+    /**
+     * Blocks until a new batch may be started, aggregating the results of batches completed in the meantime.
+     * Wakes up periodically to check for termination, returns false if the transaction got terminated.
+     */
+    private static boolean acquireInFlight(Semaphore inFlight, BlockingQueue<Future<Long>> completed,
+                                           BatchAndTotalCollector collector, TerminationGuard terminationGuard) throws InterruptedException {
+        Future<Long> f;
+        while ((f = completed.poll()) != null) {
+            aggregate(f, collector, inFlight, false);
+        }
+        while (!inFlight.tryAcquire()) {
+            if (Util.transactionIsTerminated(terminationGuard)) return false;
+            f = completed.poll(100, TimeUnit.MILLISECONDS);
+            if (f != null) {
+                aggregate(f, collector, inFlight, false);
+            }
+        }
+        return true;
+    }
+
+    private static void aggregate(Future<Long> f, BatchAndTotalCollector collector, Semaphore inFlight, boolean wasTerminated) {
+        try {
+            collector.incrementSuccesses(wasTerminated ?
+                    Util.getFutureOrCancel(f, collector.getBatchErrors(), collector.getFailedBatches(), 0L) :
+                    Util.getFuture(f, collector.getBatchErrors(), collector.getFailedBatches(), 0L));
+        } finally {
+            inFlight.release();
+        }
     }
 }
 
@@ -0,0 +1,176 @@
+package apoc.trigger;
+
+import apoc.Pools;
+import apoc.util.MapUtil;
+import org.neo4j.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces the metadata of the transactions committed while <code>afterAsync</code> triggers are installed, so that
+ * the triggers run once per batch of transactions rather than once per transaction.
+ *
+ * A batch is run when <code>batchSize</code> transactions are waiting, or every <code>window</code> ms otherwise.
+ * Batches run one at a time, in commit order. At most <code>queueSize</code> transactions wait to be run: beyond
+ * that, committing threads block until the triggers catch up.
+ */
+class AsyncTriggerBatcher {
+
+    /** set while a batch runs, when its own commit enqueues the changes made by the trigger statements */
+    private static final ThreadLocal<Boolean> RUNNING = ThreadLocal.withInitial(() -> false);
+
+    private final Pools pools;
+    private final Log log;
+    private final int batchSize;
+    private final long window;
+    private final int queueSize;
+    private final Consumer<TriggerMetadata> executor;
+
+    private final BlockingQueue<Pending> queue;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong transactions = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong overflow = new AtomicLong();
+    private volatile long lastBatchSize;
+    private volatile long lastLag;
+    private volatile long maxLag;
+    private ScheduledFuture<?> job;
+
+    private static class Pending {
+        final TriggerMetadata metadata;
+        final long enqueued;
+
+        Pending(TriggerMetadata metadata, long enqueued) {
+            this.metadata = metadata;
+            this.enqueued = enqueued;
+        }
+    }
+
+    AsyncTriggerBatcher(Pools pools, Log log, int batchSize, long window, int queueSize, Consumer<TriggerMetadata> executor) {
+        this.pools = pools;
+        this.log = log;
+        this.batchSize = batchSize;
+        this.window = window;
+        this.queueSize = queueSize;
+        this.executor = executor;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    void start() {
+        // the scheduled pool is shared, so the batches run on the default pool
+        job = pools.getScheduledExecutorService().scheduleWithFixedDelay(this::submitBatches, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    private void submitBatches() {
+        if (!queue.isEmpty() && !running.get()) {
+            pools.getDefaultExecutorService().submit(this::runBatches);
+        }
+    }
+
+    /**
+     * Runs the transactions that are waiting before returning, but not the ones their triggers commit in turn
+     */
+    void stop() {
+        if (job != null) {
+            job.cancel(false);
+        }
+        for (int waiting = queue.size(); waiting > 0 && runBatch(); waiting -= batchSize) {
+            // drains the queue one batch at a time
+        }
+    }
+
+    void add(TriggerMetadata metadata) {
+        Pending pending = new Pending(metadata, System.currentTimeMillis());
+        if (!queue.offer(pending)) {
+            if (RUNNING.get()) {
+                // waiting here would wait for ourselves
+                overflow.incrementAndGet();
+                run(List.of(pending));
+                return;
+            }
+            blocked.incrementAndGet();
+            try {
+                queue.put(pending);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the afterAsync triggers to catch up", e);
+            }
+        }
+        if (queue.size() >= batchSize && !running.get()) {
+            pools.getDefaultExecutorService().submit(this::runBatches);
+        }
+    }
+
+    private void runBatches() {
+        boolean full = true;
+        while (full && runBatch()) {
+            full = queue.size() >= batchSize;
+        }
+    }
+
+    /**
+     * @return false if another batch is already running
+     */
+    private boolean runBatch() {
+        if (!running.compareAndSet(false, true)) return false;
+        try {
+            List<Pending> batch = new ArrayList<>(Math.min(batchSize, queueSize));
+            queue.drainTo(batch, batchSize);
+            if (!batch.isEmpty()) {
+                run(batch);
+            }
+            return true;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void run(List<Pending> batch) {
+        long lag = System.currentTimeMillis() - batch.get(0).enqueued;
+        lastLag = lag;
+        maxLag = Math.max(maxLag, lag);
+        List<TriggerMetadata> metadata = new ArrayList<>(batch.size());
+        batch.forEach(pending -> metadata.add(pending.metadata));
+        boolean nested = RUNNING.get();
+        RUNNING.set(true);
+        try {
+            executor.accept(TriggerMetadata.merge(metadata));
+        } catch (Exception e) {
+            failedBatches.incrementAndGet();
+            log.warn("Error executing afterAsync triggers for a batch of " + batch.size() + " transactions", e);
+        } finally {
+            RUNNING.set(nested);
+        }
+        transactions.addAndGet(batch.size());
+        batches.incrementAndGet();
+        lastBatchSize = batch.size();
+    }
+
+    Map<String, Object> stats() {
+        Pending oldest = queue.peek();
+        return MapUtil.map("batchSize", (long) batchSize,
+                "window", window,
+                "queueSize", (long) queueSize,
+                "queued", (long) queue.size(),
+                "lag", oldest == null ? 0L : System.currentTimeMillis() - oldest.enqueued,
+                "lastLag", lastLag,
+                "maxLag", maxLag,
+                "transactions", transactions.get(),
+                "batches", batches.get(),
+                "failedBatches", failedBatches.get(),
+                "lastBatchSize", lastBatchSize,
+                "blocked", blocked.get(),
+                "overflow", overflow.get());
+    }
+}
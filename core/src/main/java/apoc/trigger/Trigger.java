@@ -1,6 +1,7 @@
 package apoc.trigger;
 
 import apoc.coll.SetBackedList;
+import apoc.result.MapResult;
 import apoc.util.Util;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
@@ -129,4 +130,10 @@ public class Trigger {
                 (Map<String,Object>) resume.get("params"),true, false));
     }
 
+    @Procedure
+    @Description("CALL apoc.trigger.asyncStats() | returns the queue depth, lag in ms and batch counts of the afterAsync triggers run in batches")
+    public Stream<MapResult> asyncStats() {
+        return Stream.of(new MapResult(triggerHandler.asyncStats()));
+    }
+
 }
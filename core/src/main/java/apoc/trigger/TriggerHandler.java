@@ -23,12 +23,20 @@ import org.neo4j.kernel.lifecycle.LifecycleAdapter;
 import org.neo4j.logging.Log;
 
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
+import static apoc.ApocConfig.APOC_TRIGGER_ASYNC_BATCH_SIZE;
+import static apoc.ApocConfig.APOC_TRIGGER_ASYNC_QUEUE_SIZE;
+import static apoc.ApocConfig.APOC_TRIGGER_ASYNC_WINDOW;
 import static apoc.ApocConfig.APOC_TRIGGER_ENABLED;
 
 public class TriggerHandler extends LifecycleAdapter implements TransactionEventListener<Void> {
@@ -36,6 +44,12 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
     private enum Phase {before, after, rollback, afterAsync}
 
     private final ConcurrentHashMap<String, Map<String,Object>> activeTriggers = new ConcurrentHashMap();
+    /**
+     * the metadata parameters used by the statements of the triggers that are not paused, for each phase having any
+     */
+    private volatile Map<Phase, Set<String>> phaseParameters = Collections.emptyMap();
+    /** empty when afterAsync triggers run once per transaction, null until the first afterAsync trigger runs */
+    private volatile Optional<AsyncTriggerBatcher> asyncBatcher;
     private final Log log;
     private final GraphDatabaseService db;
     private final DatabaseManagementService databaseManagementService;
@@ -86,10 +100,23 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
             );
             tx.commit();
         }
+        updatePhaseParameters();
 
         reconcileKernelRegistration();
     }
 
+    private void updatePhaseParameters() {
+        Map<Phase, Set<String>> parameters = new EnumMap<>(Phase.class);
+        activeTriggers.values().stream()
+                .filter(data -> !(boolean) data.get("paused"))
+                .forEach(data -> {
+                    Phase phase = phase((Map<String, Object>) data.get("selector"));
+                    parameters.computeIfAbsent(phase, k -> new HashSet<>())
+                            .addAll(TriggerMetadata.usedParameters((String) data.get("statement")));
+                });
+        phaseParameters = parameters;
+    }
+
     /**
      * There is substantial memory overhead to the kernel event system, so if a user has enabled apoc triggers in
      * config, but there are no triggers set up, unregister to let the kernel bypass the event handling system.
@@ -202,7 +229,12 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
 
     private void afterAsync(TransactionData txData) {
         if (hasPhase(Phase.afterAsync)) {
-            TriggerMetadata triggerMetadata = TriggerMetadata.from(txData, true);
+            TriggerMetadata triggerMetadata = TriggerMetadata.from(txData, true, phaseParameters.get(Phase.afterAsync));
+            Optional<AsyncTriggerBatcher> batcher = asyncBatcher();
+            if (batcher.isPresent()) {
+                batcher.get().add(triggerMetadata);
+                return;
+            }
             Util.inTxFuture(pools.getDefaultExecutorService(), db, (inner) -> {
                 executeTriggers(inner, triggerMetadata.rebind(inner), Phase.afterAsync);
                 return null;
@@ -210,6 +242,44 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
         }
     }
 
+    /**
+     * The batcher is configured when it's first needed, with <code>apoc.trigger.async.batch_size</code> greater
+     * than 1 the afterAsync triggers run once per batch of transactions
+     */
+    private Optional<AsyncTriggerBatcher> asyncBatcher() {
+        Optional<AsyncTriggerBatcher> batcher = asyncBatcher;
+        if (batcher != null) return batcher;
+        synchronized (this) {
+            if (asyncBatcher == null) {
+                int batchSize = apocConfig.getInt(APOC_TRIGGER_ASYNC_BATCH_SIZE, 0);
+                if (batchSize > 1) {
+                    AsyncTriggerBatcher created = new AsyncTriggerBatcher(pools, log, batchSize,
+                            apocConfig.getInt(APOC_TRIGGER_ASYNC_WINDOW, 1000),
+                            Math.max(batchSize, apocConfig.getInt(APOC_TRIGGER_ASYNC_QUEUE_SIZE, 10000)),
+                            this::executeAsyncBatch);
+                    created.start();
+                    asyncBatcher = Optional.of(created);
+                } else {
+                    asyncBatcher = Optional.empty();
+                }
+            }
+            return asyncBatcher;
+        }
+    }
+
+    private void executeAsyncBatch(TriggerMetadata triggerMetadata) {
+        try (Transaction tx = db.beginTx()) {
+            executeTriggers(tx, triggerMetadata.rebind(tx), Phase.afterAsync);
+            tx.commit();
+        }
+    }
+
+    public Map<String, Object> asyncStats() {
+        checkEnabled();
+        Optional<AsyncTriggerBatcher> batcher = asyncBatcher;
+        return batcher != null && batcher.isPresent() ? batcher.get().stats() : MapUtil.map("batchSize", 0L);
+    }
+
     @Override
     public void afterRollback(TransactionData txData, Void state, GraphDatabaseService databaseService) {
         if (hasPhase(Phase.rollback)) {
@@ -220,25 +290,33 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
         }
     }
 
+    /**
+     * @return false if no trigger would run in the phase, in which case the transaction data isn't even looked at
+     */
     private boolean hasPhase(Phase phase) {
-        return activeTriggers.values().stream()
-                .map(data -> (Map<String, Object>) data.get("selector"))
-                .anyMatch(selector -> when(selector, phase));
+        return phaseParameters.containsKey(phase);
     }
 
+    /**
+     * Only the parameters used by the statements of the phase are taken from the transaction data, the other
+     * ones are passed empty
+     */
     private void executeTriggers(Transaction tx, TransactionData txData, Phase phase) {
-        executeTriggers(tx, TriggerMetadata.from(txData, false), phase);
+        Set<String> parameters = phaseParameters.get(phase);
+        if (parameters == null) return;
+        executeTriggers(tx, TriggerMetadata.from(txData, false, parameters), phase);
     }
 
     private void executeTriggers(Transaction tx, TriggerMetadata triggerMetadata, Phase phase) {
         Map<String,String> exceptions = new LinkedHashMap<>();
+        Map<String, Object> metadata = triggerMetadata.toMap();
         activeTriggers.forEach((name, data) -> {
-            Map<String, Object> params = triggerMetadata.toMap();
-            if (data.get("params") != null) {
-                params.putAll((Map<String, Object>) data.get("params"));
-            }
             Map<String, Object> selector = (Map<String, Object>) data.get("selector");
             if ((!(boolean)data.get("paused")) && when(selector, phase)) {
+                Map<String, Object> params = new HashMap<>(metadata);
+                if (data.get("params") != null) {
+                    params.putAll((Map<String, Object>) data.get("params"));
+                }
                 try {
                     params.put("trigger", name);
                     Result result = tx.execute((String) data.get("statement"), params);
@@ -256,8 +334,12 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
     }
 
     private boolean when(Map<String, Object> selector, Phase phase) {
-        if (selector == null) return phase == Phase.before;
-        return Phase.valueOf(selector.getOrDefault("phase", "before").toString()) == phase;
+        return phase(selector) == phase;
+    }
+
+    private Phase phase(Map<String, Object> selector) {
+        if (selector == null) return Phase.before;
+        return Phase.valueOf(selector.getOrDefault("phase", "before").toString());
     }
 
     @Override
@@ -267,6 +349,10 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
 
     @Override
     public void stop() {
+        Optional<AsyncTriggerBatcher> batcher = asyncBatcher;
+        if (batcher != null) {
+            batcher.ifPresent(AsyncTriggerBatcher::stop);
+        }
         if(registeredWithKernel.compareAndSet(true, false)) {
             databaseManagementService.unregisterTransactionEventListener(db.databaseName(), this);
         }
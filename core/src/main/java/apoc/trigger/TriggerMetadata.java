@@ -7,6 +7,7 @@ import apoc.util.Util;
 import org.neo4j.graphdb.Entity;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.event.LabelEntry;
@@ -15,15 +16,31 @@ import org.neo4j.graphdb.event.TransactionData;
 import org.neo4j.internal.helpers.collection.Iterables;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static apoc.util.Util.map;
 
 public class TriggerMetadata {
+    /**
+     * the parameters passed to the trigger statements
+     */
+    public static final List<String> PARAMETERS = List.of("transactionId", "commitTime",
+            "createdNodes", "createdRelationships", "deletedNodes", "deletedRelationships",
+            "removedLabels", "removedNodeProperties", "removedRelationshipProperties",
+            "assignedLabels", "assignedNodeProperties", "assignedRelationshipProperties", "metaData");
+
+    private static final Pattern PARAMETER = Pattern.compile("\\$\\s*(?:`([^`]+)`|(\\w+))");
+
     private final long transactionId;
     private final long commitTime;
     private final List<Node> createdNodes;
@@ -63,7 +80,28 @@ public class TriggerMetadata {
         this.metaData = metaData;
     }
 
+    /**
+     * @return the parameters of {@link #PARAMETERS} referenced by the statement. It may contain parameters that
+     * are only mentioned in string literals or comments, which are harmless
+     */
+    public static Set<String> usedParameters(String statement) {
+        Set<String> used = new HashSet<>();
+        Matcher matcher = PARAMETER.matcher(statement);
+        while (matcher.find()) {
+            String name = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            if (PARAMETERS.contains(name)) used.add(name);
+        }
+        return used;
+    }
+
     public static TriggerMetadata from(TransactionData txData, boolean rebindDeleted) {
+        return from(txData, rebindDeleted, PARAMETERS);
+    }
+
+    /**
+     * @param parameters the parameters to materialize, the other ones are left empty
+     */
+    public static TriggerMetadata from(TransactionData txData, boolean rebindDeleted, Collection<String> parameters) {
         long txId, commitTime;
         try {
             txId = txData.getTransactionId();
@@ -75,19 +113,26 @@ public class TriggerMetadata {
         } catch (Exception ignored) {
             commitTime = -1L;
         }
-        List<Node> createdNodes = Convert.convertToList(txData.createdNodes());
-        List<Relationship> createdRelationships = Convert.convertToList(txData.createdRelationships());
-        List<Node> deletedNodes = rebindDeleted ? rebindDeleted(Convert.convertToList(txData.deletedNodes())) : Convert.convertToList(txData.deletedNodes());
-        List<Relationship> deletedRelationships = rebindDeleted ? rebindDeleted(Convert.convertToList(txData.deletedRelationships())) : Convert.convertToList(txData.deletedRelationships());
-        Map<String, List<Node>> removedLabels = aggregateLabels(txData.removedLabels());
-        Map<String, List<Node>> assignedLabels = aggregateLabels(txData.assignedLabels());
-        final Map<String, List<PropertyEntryContainer<Node>>> removedNodeProperties = aggregatePropertyKeys(txData.removedNodeProperties(), true);
-        final Map<String, List<PropertyEntryContainer<Relationship>>> removedRelationshipProperties = aggregatePropertyKeys(txData.removedRelationshipProperties(), true);
-        final Map<String, List<PropertyEntryContainer<Node>>> assignedNodeProperties = aggregatePropertyKeys(txData.assignedNodeProperties(), false);
-        final Map<String, List<PropertyEntryContainer<Relationship>>> assignedRelationshipProperties = aggregatePropertyKeys(txData.assignedRelationshipProperties(), false);
+        List<Node> createdNodes = parameters.contains("createdNodes") ? Convert.convertToList(txData.createdNodes()) : Collections.emptyList();
+        List<Relationship> createdRelationships = parameters.contains("createdRelationships") ? Convert.convertToList(txData.createdRelationships()) : Collections.emptyList();
+        List<Node> deletedNodes = !parameters.contains("deletedNodes") ? Collections.emptyList() :
+                rebindDeleted ? rebindDeleted(Convert.convertToList(txData.deletedNodes())) : Convert.convertToList(txData.deletedNodes());
+        List<Relationship> deletedRelationships = !parameters.contains("deletedRelationships") ? Collections.emptyList() :
+                rebindDeleted ? rebindDeleted(Convert.convertToList(txData.deletedRelationships())) : Convert.convertToList(txData.deletedRelationships());
+        Map<String, List<Node>> removedLabels = parameters.contains("removedLabels") ? aggregateLabels(txData.removedLabels()) : Collections.emptyMap();
+        Map<String, List<Node>> assignedLabels = parameters.contains("assignedLabels") ? aggregateLabels(txData.assignedLabels()) : Collections.emptyMap();
+        final Map<String, List<PropertyEntryContainer<Node>>> removedNodeProperties = parameters.contains("removedNodeProperties") ?
+                aggregatePropertyKeys(txData.removedNodeProperties(), true) : Collections.emptyMap();
+        final Map<String, List<PropertyEntryContainer<Relationship>>> removedRelationshipProperties = parameters.contains("removedRelationshipProperties") ?
+                aggregatePropertyKeys(txData.removedRelationshipProperties(), true) : Collections.emptyMap();
+        final Map<String, List<PropertyEntryContainer<Node>>> assignedNodeProperties = parameters.contains("assignedNodeProperties") ?
+                aggregatePropertyKeys(txData.assignedNodeProperties(), false) : Collections.emptyMap();
+        final Map<String, List<PropertyEntryContainer<Relationship>>> assignedRelationshipProperties = parameters.contains("assignedRelationshipProperties") ?
+                aggregatePropertyKeys(txData.assignedRelationshipProperties(), false) : Collections.emptyMap();
+        final Map<String, Object> metaData = parameters.contains("metaData") ? txData.metaData() : Collections.emptyMap();
         return new TriggerMetadata(txId, commitTime, createdNodes, createdRelationships, deletedNodes, deletedRelationships,
                 removedLabels,removedNodeProperties, removedRelationshipProperties, assignedLabels, assignedNodeProperties,
-                assignedRelationshipProperties, txData.metaData());
+                assignedRelationshipProperties, metaData);
     }
 
     private static <T extends Entity> List<T> rebindDeleted(List<T> entities) {
@@ -105,9 +150,52 @@ public class TriggerMetadata {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Merges the metadata of several transactions, in commit order, into the metadata of a single batch: the lists
+     * of entities are concatenated, the transaction id and commit time are the ones of the last transaction
+     */
+    public static TriggerMetadata merge(List<TriggerMetadata> batch) {
+        if (batch.size() == 1) return batch.get(0);
+        List<Node> createdNodes = new ArrayList<>();
+        List<Relationship> createdRelationships = new ArrayList<>();
+        List<Node> deletedNodes = new ArrayList<>();
+        List<Relationship> deletedRelationships = new ArrayList<>();
+        Map<String, List<Node>> removedLabels = new HashMap<>();
+        Map<String, List<PropertyEntryContainer<Node>>> removedNodeProperties = new HashMap<>();
+        Map<String, List<PropertyEntryContainer<Relationship>>> removedRelationshipProperties = new HashMap<>();
+        Map<String, List<Node>> assignedLabels = new HashMap<>();
+        Map<String, List<PropertyEntryContainer<Node>>> assignedNodeProperties = new HashMap<>();
+        Map<String, List<PropertyEntryContainer<Relationship>>> assignedRelationshipProperties = new HashMap<>();
+        Map<String, Object> metaData = new HashMap<>();
+        for (TriggerMetadata metadata : batch) {
+            createdNodes.addAll(metadata.createdNodes);
+            createdRelationships.addAll(metadata.createdRelationships);
+            deletedNodes.addAll(metadata.deletedNodes);
+            deletedRelationships.addAll(metadata.deletedRelationships);
+            mergeInto(removedLabels, metadata.removedLabels);
+            mergeInto(removedNodeProperties, metadata.removedNodeProperties);
+            mergeInto(removedRelationshipProperties, metadata.removedRelationshipProperties);
+            mergeInto(assignedLabels, metadata.assignedLabels);
+            mergeInto(assignedNodeProperties, metadata.assignedNodeProperties);
+            mergeInto(assignedRelationshipProperties, metadata.assignedRelationshipProperties);
+            metaData.putAll(metadata.metaData);
+        }
+        TriggerMetadata last = batch.get(batch.size() - 1);
+        return new TriggerMetadata(last.transactionId, last.commitTime, createdNodes, createdRelationships, deletedNodes, deletedRelationships,
+                removedLabels, removedNodeProperties, removedRelationshipProperties, assignedLabels, assignedNodeProperties,
+                assignedRelationshipProperties, metaData);
+    }
+
+    private static <T> void mergeInto(Map<String, List<T>> target, Map<String, List<T>> source) {
+        source.forEach((key, values) -> target.computeIfAbsent(key, k -> new ArrayList<>()).addAll(values));
+    }
+
+    /**
+     * Entities deleted since the metadata was taken, e.g. by a later transaction of the same batch, are left out
+     */
     public TriggerMetadata rebind(Transaction tx) {
-        final List<Node> createdNodes = Util.rebind(this.createdNodes, tx);
-        final List<Relationship> createdRelationships = Util.rebind(this.createdRelationships, tx);
+        final List<Node> createdNodes = rebindExisting(this.createdNodes, tx);
+        final List<Relationship> createdRelationships = rebindExisting(this.createdRelationships, tx);
 //        final List<Node> deletedNodes = Util.rebind(this.deletedNodes, tx);
 //        final List<Relationship> deletedRelationships = Util.rebind(this.deletedRelationships, tx);
         final Map<String, List<Node>> removedLabels = rebindMap(this.removedLabels, tx);
@@ -121,16 +209,28 @@ public class TriggerMetadata {
                 assignedRelationshipProperties, metaData);
     }
 
+    private static <T extends Entity> List<T> rebindExisting(List<T> entities, Transaction tx) {
+        List<T> result = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            try {
+                result.add(Util.rebind(tx, entity));
+            } catch (NotFoundException e) {
+                // deleted in the meantime
+            }
+        }
+        return result;
+    }
+
     private <T extends Entity> Map<String, List<PropertyEntryContainer<T>>> rebindPropertyEntryContainer(Map<String, List<PropertyEntryContainer<T>>> map, Transaction tx) {
         return map.entrySet()
                 .stream()
-                .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue().stream().map(p -> p.rebind(tx)).collect(Collectors.toList())));
+                .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue().stream().map(p -> p.rebind(tx)).filter(Objects::nonNull).collect(Collectors.toList())));
     }
 
     private <T extends Entity> Map<String, List<T>> rebindMap(Map<String, List<T>> map, Transaction tx) {
         return map.entrySet()
                 .stream()
-                .collect(Collectors.toMap(e -> e.getKey(), e -> Util.rebind(e.getValue(), tx)));
+                .collect(Collectors.toMap(e -> e.getKey(), e -> rebindExisting(e.getValue(), tx)));
     }
 
     private <T extends Entity> Map<String, List<Map<String, Object>>> convertMapOfPropertyEntryContainers(Map<String, List<PropertyEntryContainer<T>>> map) {
@@ -185,8 +285,15 @@ public class TriggerMetadata {
             this.newVal = newVal;
         }
 
+        /**
+         * @return null if the entity has been deleted in the meantime
+         */
         PropertyEntryContainer<T> rebind(Transaction tx) {
-            return new PropertyEntryContainer<T>(key, Util.rebind(tx, entity), oldVal, newVal);
+            try {
+                return new PropertyEntryContainer<T>(key, Util.rebind(tx, entity), oldVal, newVal);
+            } catch (NotFoundException e) {
+                return null;
+            }
         }
 
         Map<String, Object> toMap() {
@@ -1,11 +1,20 @@
 package apoc.warmup;
 
+import apoc.Pools;
 import apoc.util.Util;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.schema.IndexDescriptor;
 import org.neo4j.io.pagecache.PageCache;
 import org.neo4j.io.pagecache.PageCursor;
 import org.neo4j.io.pagecache.PagedFile;
-import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.io.pagecache.tracing.cursor.PageCursorTracer;
 import org.neo4j.kernel.impl.coreapi.InternalTransaction;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
@@ -13,8 +22,20 @@ import org.neo4j.procedure.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -24,6 +45,9 @@ import java.util.stream.Stream;
  */
 public class Warmup {
 
+    private static final long DEFAULT_RANGE_SIZE = 4096;
+    private static final int CHUNK_SIZE = 1000;
+
     @Context
     public Transaction tx;
     @Context
@@ -32,6 +56,8 @@ public class Warmup {
     public TerminationGuard guard;
     @Context
     public Log log;
+    @Context
+    public Pools pools;
 
     static class PageResult {
         public final String file;
@@ -41,17 +67,54 @@ public class Warmup {
         public final String error;
         public final long time;
 
-        public PageResult(String file, boolean index, long fileSize, long pages, String error, long start) {
+        public PageResult(String file, boolean index, long fileSize, long pages, String error, long time) {
             this.file = file;
             this.index = index;
             this.fileSize = fileSize;
             this.pages = pages;
             this.error = error;
+            this.time = time;
+        }
+    }
+
+    public static class ResidencyResult {
+        public final String file;
+        public final boolean index;
+        public final long fileSize;
+        public final long pages;
+        public final long residentPages;
+        public final double residency;
+        public final String error;
+
+        ResidencyResult(FileStats stats) {
+            PageResult result = stats.toResult();
+            this.file = result.file;
+            this.index = result.index;
+            this.fileSize = result.fileSize;
+            this.pages = result.pages;
+            this.residentPages = stats.resident.get();
+            this.residency = pages == 0 ? 1.0 : (double) residentPages / pages;
+            this.error = result.error;
+        }
+    }
+
+    public static class SelectiveResult {
+        public final String target;
+        public final String name;
+        public final long entities;
+        public final long pages;
+        public final long time;
+
+        public SelectiveResult(String target, String name, long entities, long pages, long start) {
+            this.target = target;
+            this.name = name;
+            this.entities = entities;
+            this.pages = pages;
             this.time = System.currentTimeMillis() - start;
         }
     }
 
-    private String subPath(File file, String fromParent) {
+    private static String subPath(File file, String fromParent) {
         StringBuilder sb = new StringBuilder(file.getAbsolutePath().length());
         while (true) {
             sb.insert(0,file.getName());
@@ -63,14 +126,12 @@ public class Warmup {
     }
 
     @Procedure
-    @Description("apoc.warmup.run(loadProperties=false,loadDynamicProperties=false,loadIndexes=false) - quickly loads all nodes and rels into memory by skipping one page at a time")
-    public Stream<WarmupResult> run(@Name(value = "loadProperties", defaultValue = "false") boolean loadProperties, @Name(value = "loadDynamicProperties", defaultValue = "false") boolean loadDynamicProperties, @Name(value = "loadIndexes", defaultValue = "false") boolean loadIndexes) throws IOException {
+    @Description("apoc.warmup.run(loadProperties=false,loadDynamicProperties=false,loadIndexes=false,{concurrency,rangeSize}) - quickly loads all nodes and rels into memory by skipping one page at a time, reading ranges of rangeSize pages of the store files in parallel")
+    public Stream<WarmupResult> run(@Name(value = "loadProperties", defaultValue = "false") boolean loadProperties, @Name(value = "loadDynamicProperties", defaultValue = "false") boolean loadDynamicProperties, @Name(value = "loadIndexes", defaultValue = "false") boolean loadIndexes,
+                                    @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws IOException {
         PageCache pageCache = db.getDependencyResolver().resolveDependency(PageCache.class);
-        KernelTransaction ktx = ((InternalTransaction)tx).kernelTransaction();
 
-        List<PagedFile> pagedFiles = pageCache.listExistingMappings();
-
-        Map<String, PageResult> records = pagedFiles.parallelStream()
+        List<PagedFile> pagedFiles = pageCache.listExistingMappings().stream()
                 .filter(pF -> {
                     String name = pF.file().getName();
                     if (isSchema(pF.file()) && !loadIndexes) return false;
@@ -78,29 +139,12 @@ public class Warmup {
                     if ((name.startsWith("propertystore.db")) && !loadProperties) return false;
                     return true;
                 })
-                .map((pagedFile -> {
-                    File file = pagedFile.file();
-                    boolean index = isSchema(file);
-                    String fileName = index ? subPath(file, "schema") : file.getName();
-                    long pages = 0;
-                    long start = System.currentTimeMillis();
-                    try {
-                        if (pagedFile.fileSize() > 0) {
-                            PageCursor cursor = pagedFile.io(0L, PagedFile.PF_READ_AHEAD | PagedFile.PF_SHARED_READ_LOCK,  ktx.pageCursorTracer());
-                            while (cursor.next()) {
-                                cursor.getByte();
-                                pages++;
-                                if (pages % 1000 == 0 && Util.transactionIsTerminated(guard)) {
-                                    break;
-                                }
-                            }
-                        }
-                        return new PageResult(fileName, index, pagedFile.fileSize(), pages, null, start);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return new PageResult(fileName, index, -1L, pages, e.getMessage(), start);
-                    } 
-                })).collect(Collectors.toMap(r -> r.file, r -> r));
+                .collect(Collectors.toList());
+
+        long start = System.currentTimeMillis();
+        Map<String, PageResult> records = scanPages(pagedFiles, true, config).stream()
+                .map(FileStats::toResult)
+                .collect(Collectors.toMap(r -> r.file, r -> r));
 
         WarmupResult result = new WarmupResult(
                 pageCache.pageSize(),
@@ -111,7 +155,7 @@ public class Warmup {
                 records.get("neostore.relationshipgroupstore.db"),
                 loadProperties,
                 records.get("neostore.propertystore.db"),
-                records.values().stream().mapToLong((r)->r.time).sum(),
+                System.currentTimeMillis() - start,
                 Util.transactionIsTerminated(guard),
                 loadDynamicProperties,
                 records.get("neostore.propertystore.db.strings"),
@@ -122,7 +166,295 @@ public class Warmup {
         return Stream.of(result);
     }
 
-    public boolean isSchema(File file) {
+    @Procedure
+    @Description("apoc.warmup.residency({concurrency,rangeSize}) - returns for each mapped store and index file the number and fraction of its pages that are already in the page cache, without loading any")
+    public Stream<ResidencyResult> residency(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        PageCache pageCache = db.getDependencyResolver().resolveDependency(PageCache.class);
+        return scanPages(pageCache.listExistingMappings(), false, config).stream()
+                .map(ResidencyResult::new)
+                .sorted(Comparator.comparing(r -> r.file));
+    }
+
+    @Procedure
+    @Description("apoc.warmup.selective({labels:[],types:[],indexes:[],properties:false,concurrency}) - loads only the pages backing the nodes with the given labels, the relationships of the given types and the given indexes")
+    public Stream<SelectiveResult> selective(@Name("config") Map<String, Object> config) {
+        List<String> labels = (List<String>) config.getOrDefault("labels", Collections.emptyList());
+        List<String> types = (List<String>) config.getOrDefault("types", Collections.emptyList());
+        List<String> indexes = (List<String>) config.getOrDefault("indexes", Collections.emptyList());
+        boolean properties = Util.toBoolean(config.get("properties"));
+
+        List<SelectiveResult> results = new ArrayList<>();
+        for (String index : indexes) {
+            results.add(warmIndex(index, config));
+        }
+        if (!labels.isEmpty() || !types.isEmpty()) {
+            results.addAll(warmEntities(labels, types, properties, config));
+        }
+        return results.stream();
+    }
+
+    private SelectiveResult warmIndex(String name, Map<String, Object> config) {
+        IndexDescriptor descriptor = ((InternalTransaction) tx).kernelTransaction().schemaRead().indexGetForName(name);
+        if (descriptor == IndexDescriptor.NO_INDEX) {
+            throw new IllegalArgumentException("Index `" + name + "` does not exist");
+        }
+        String directory = File.separator + descriptor.getId() + File.separator;
+        PageCache pageCache = db.getDependencyResolver().resolveDependency(PageCache.class);
+        List<PagedFile> pagedFiles = pageCache.listExistingMappings().stream()
+                .filter(pF -> isSchema(pF.file()) && (File.separator + subPath(pF.file(), "schema")).contains(directory))
+                .collect(Collectors.toList());
+        long start = System.currentTimeMillis();
+        long pages = scanPages(pagedFiles, true, config).stream().mapToLong(f -> f.pages.get()).sum();
+        return new SelectiveResult("index", name, pages, pages, start);
+    }
+
+    /**
+     * Reads the nodes with the given labels, or all nodes if there are none, and walks their relationships of the
+     * given types. The ids are read by the calling thread and handed in chunks to <code>concurrency</code> workers,
+     * each one reading the records in its own transaction.
+     */
+    private List<SelectiveResult> warmEntities(List<String> labels, List<String> types, boolean properties, Map<String, Object> config) {
+        int concurrency = concurrency(config);
+        Map<String, AtomicLong> labelCounts = new LinkedHashMap<>();
+        labels.forEach(label -> labelCounts.put(label, new AtomicLong()));
+        Map<String, AtomicLong> typeCounts = new LinkedHashMap<>();
+        types.forEach(type -> typeCounts.put(type, new AtomicLong()));
+        RelationshipType[] relTypes = types.stream().map(RelationshipType::withName).toArray(RelationshipType[]::new);
+        // walking the relationships of every node in both directions would visit each of them twice
+        Direction direction = labels.isEmpty() ? Direction.OUTGOING : Direction.BOTH;
+
+        long start = System.currentTimeMillis();
+        BlockingQueue<NodeChunk> chunks = new ArrayBlockingQueue<>(concurrency * 2);
+        List<Future<Void>> workers = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(Util.inTxFuture(pools.getDefaultExecutorService(), db, workerTx -> {
+                NodeChunk chunk;
+                while ((chunk = take(chunks)) != NodeChunk.END) {
+                    AtomicLong labelCount = chunk.label == null ? null : labelCounts.get(chunk.label);
+                    for (int j = 0; j < chunk.size; j++) {
+                        try {
+                            Node node = workerTx.getNodeById(chunk.ids[j]);
+                            node.getLabels();
+                            if (properties) node.getAllProperties();
+                            if (labelCount != null) labelCount.incrementAndGet();
+                            if (relTypes.length == 0) continue;
+                            for (Relationship rel : node.getRelationships(direction, relTypes)) {
+                                if (properties) rel.getAllProperties();
+                                typeCounts.get(rel.getType().name()).incrementAndGet();
+                            }
+                        } catch (NotFoundException e) {
+                            // deleted since its id was read
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        try {
+            if (labels.isEmpty()) {
+                produce(null, tx.getAllNodes().iterator(), chunks, workers);
+            } else {
+                for (String label : labels) {
+                    produce(label, tx.findNodes(Label.label(label)), chunks, workers);
+                }
+            }
+        } finally {
+            for (int i = 0; i < concurrency; i++) {
+                put(chunks, NodeChunk.END, workers);
+            }
+        }
+        for (Future<Void> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while warming up", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Error warming up: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        List<SelectiveResult> results = new ArrayList<>();
+        labelCounts.forEach((label, count) -> results.add(new SelectiveResult("label", label, count.get(), -1, start)));
+        typeCounts.forEach((type, count) -> results.add(new SelectiveResult("type", type, count.get(), -1, start)));
+        return results;
+    }
+
+    private static class NodeChunk {
+        static final NodeChunk END = new NodeChunk(null, new long[0], 0);
+
+        final String label;
+        final long[] ids;
+        final int size;
+
+        NodeChunk(String label, long[] ids, int size) {
+            this.label = label;
+            this.ids = ids;
+            this.size = size;
+        }
+    }
+
+    private void produce(String label, ResourceIterator<Node> nodes, BlockingQueue<NodeChunk> chunks, List<Future<Void>> workers) {
+        try (ResourceIterator<Node> it = nodes) {
+            long[] ids = new long[CHUNK_SIZE];
+            int size = 0;
+            while (it.hasNext()) {
+                ids[size++] = it.next().getId();
+                if (size == CHUNK_SIZE) {
+                    if (Util.transactionIsTerminated(guard)) return;
+                    put(chunks, new NodeChunk(label, ids, size), workers);
+                    ids = new long[CHUNK_SIZE];
+                    size = 0;
+                }
+            }
+            if (size > 0) {
+                put(chunks, new NodeChunk(label, ids, size), workers);
+            }
+        }
+    }
+
+    private static <T> void put(BlockingQueue<T> queue, T item, List<? extends Future<?>> workers) {
+        try {
+            while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if (workers.stream().allMatch(Future::isDone)) {
+                    // the workers failed, their error is reported when waiting for them
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while warming up", e);
+        }
+    }
+
+    private static <T> T take(BlockingQueue<T> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while warming up", e);
+        }
+    }
+
+    private static int concurrency(Map<String, Object> config) {
+        int concurrency = Util.toInteger(config.getOrDefault("concurrency", Runtime.getRuntime().availableProcessors()));
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive, got " + concurrency);
+        }
+        return concurrency;
+    }
+
+    private static class FileStats {
+        final PagedFile pagedFile;
+        final AtomicLong pages = new AtomicLong();
+        final AtomicLong resident = new AtomicLong();
+        final AtomicLong start = new AtomicLong(Long.MAX_VALUE);
+        final AtomicLong end = new AtomicLong();
+        volatile String error;
+
+        FileStats(PagedFile pagedFile) {
+            this.pagedFile = pagedFile;
+        }
+
+        long fileSize() {
+            try {
+                return pagedFile.fileSize();
+            } catch (IOException e) {
+                return -1L;
+            }
+        }
+
+        PageResult toResult() {
+            File file = pagedFile.file();
+            boolean index = isSchema(file);
+            long time = start.get() == Long.MAX_VALUE ? 0 : end.get() - start.get();
+            return new PageResult(index ? subPath(file, "schema") : file.getName(), index, error == null ? fileSize() : -1L, pages.get(), error, time);
+        }
+    }
+
+    private static class PageRange {
+        final FileStats file;
+        final long from;
+        final long to;
+
+        PageRange(FileStats file, long from, long to) {
+            this.file = file;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Splits the files in ranges of <code>rangeSize</code> pages, scanned by <code>concurrency</code> workers, so
+     * that a single large store is read by several threads.
+     *
+     * @param fault true to load the pages, false to only count the ones already in the page cache
+     */
+    private List<FileStats> scanPages(List<PagedFile> pagedFiles, boolean fault, Map<String, Object> config) {
+        int concurrency = concurrency(config);
+        long rangeSize = Util.toLong(config.getOrDefault("rangeSize", DEFAULT_RANGE_SIZE));
+        if (rangeSize < 1) {
+            throw new IllegalArgumentException("rangeSize must be positive, got " + rangeSize);
+        }
+        List<FileStats> files = new ArrayList<>(pagedFiles.size());
+        Queue<PageRange> ranges = new ConcurrentLinkedQueue<>();
+        for (PagedFile pagedFile : pagedFiles) {
+            FileStats file = new FileStats(pagedFile);
+            files.add(file);
+            try {
+                long pages = pagedFile.fileSize() > 0 ? pagedFile.getLastPageId() + 1 : 0;
+                for (long from = 0; from < pages; from += rangeSize) {
+                    ranges.add(new PageRange(file, from, Math.min(pages, from + rangeSize)));
+                }
+            } catch (IOException e) {
+                log.warn("Error reading the size of " + pagedFile.file(), e);
+                file.error = e.getMessage();
+            }
+        }
+
+        List<Future<?>> workers = new ArrayList<>(concurrency);
+        for (int i = 0; i < Math.min(concurrency, ranges.size()); i++) {
+            workers.add(pools.getDefaultExecutorService().submit(() -> {
+                PageRange range;
+                while ((range = ranges.poll()) != null && !Util.transactionIsTerminated(guard)) {
+                    scanRange(range, fault);
+                }
+            }));
+        }
+        Util.waitForFutures((List) workers);
+        return files;
+    }
+
+    private void scanRange(PageRange range, boolean fault) {
+        FileStats file = range.file;
+        file.start.accumulateAndGet(System.currentTimeMillis(), Math::min);
+        int flags = PagedFile.PF_SHARED_READ_LOCK | (fault ? PagedFile.PF_READ_AHEAD : PagedFile.PF_NO_FAULT);
+        long pages = 0, resident = 0;
+        try (PageCursor cursor = file.pagedFile.io(range.from, flags, PageCursorTracer.NULL)) {
+            for (long pageId = range.from; pageId < range.to && cursor.next(pageId); pageId++) {
+                pages++;
+                if (fault) {
+                    cursor.getByte();
+                } else if (cursor.getCurrentPageId() != PageCursor.UNBOUND_PAGE_ID) {
+                    // without faulting, the cursor is only bound to the pages that are in the page cache
+                    resident++;
+                }
+                if (pages % 1000 == 0 && Util.transactionIsTerminated(guard)) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Error reading " + file.pagedFile.file(), e);
+            file.error = e.getMessage();
+        } finally {
+            file.pages.addAndGet(pages);
+            file.resident.addAndGet(resident);
+            file.end.accumulateAndGet(System.currentTimeMillis(), Math::max);
+        }
+    }
+
+    public static boolean isSchema(File file) {
         return file.getAbsolutePath().contains(File.separator+"schema"+File.separator);
     }
 
@@ -0,0 +1,102 @@
+package apoc.agg;
+
+import apoc.util.TestUtil;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.test.rule.DbmsRule;
+import org.neo4j.test.rule.ImpermanentDbmsRule;
+
+import java.util.List;
+import java.util.Map;
+
+import static apoc.util.TestUtil.testCall;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SketchesTest {
+
+    @ClassRule
+    public static DbmsRule db = new ImpermanentDbmsRule();
+
+    @BeforeClass public static void setUp() throws Exception {
+        TestUtil.registerProcedure(db, Sketches.class);
+    }
+
+    @Test
+    public void testApproxMedian() throws Exception {
+        testCall(db, "UNWIND [] as value RETURN apoc.agg.approxMedian(value) as p",
+                (row) -> assertNull(row.get("p")));
+        testCall(db, "UNWIND [0,1,2,3] as value RETURN apoc.agg.approxMedian(value) as p",
+                (row) -> assertEquals(1.5D, row.get("p")));
+        testCall(db, "UNWIND [0,1,null,'a',2,3,4] as value RETURN apoc.agg.approxMedian(value) as p",
+                (row) -> assertEquals(2D, row.get("p")));
+        testCall(db, "UNWIND range(1, 100000) as value RETURN apoc.agg.approxMedian(value) as p",
+                (row) -> assertEquals(50000D, (double) row.get("p"), 500D));
+    }
+
+    @Test
+    public void testApproxPercentiles() throws Exception {
+        testCall(db, "UNWIND range(0, 100000) as value RETURN apoc.agg.approxPercentiles(value, [0, 0.1, 0.99, 0.999, 1]) as p",
+                (row) -> {
+                    List<Double> p = (List<Double>) row.get("p");
+                    assertEquals(0D, p.get(0), 0D);
+                    assertEquals(10000D, p.get(1), 500D);
+                    assertEquals(99000D, p.get(2), 50D);
+                    assertEquals(99900D, p.get(3), 10D);
+                    assertEquals(100000D, p.get(4), 0D);
+                });
+        testCall(db, "UNWIND [] as value RETURN apoc.agg.approxPercentiles(value, [0.5]) as p",
+                (row) -> assertEquals(asList((Double) null), row.get("p")));
+    }
+
+    @Test
+    public void testApproxCountDistinct() throws Exception {
+        testCall(db, "UNWIND [] as value RETURN apoc.agg.approxCountDistinct(value) as c",
+                (row) -> assertEquals(0L, row.get("c")));
+        testCall(db, "UNWIND [1, 1.0, 2, 'a', 'a', null, [1,2], [1,2]] as value RETURN apoc.agg.approxCountDistinct(value) as c",
+                (row) -> assertEquals(4L, row.get("c")));
+        testCall(db, "UNWIND range(1, 200000) as value RETURN apoc.agg.approxCountDistinct(value % 50000) as c",
+                (row) -> assertEquals(50000D, (long) row.get("c"), 50000 * 0.03));
+    }
+
+    @Test
+    public void testApproxTopK() throws Exception {
+        testCall(db, "UNWIND range(1, 100000) as value " +
+                        "WITH CASE WHEN value % 10 = 0 THEN 'a' WHEN value % 10 = 1 THEN 'b' ELSE toString(value) END as item " +
+                        "RETURN apoc.agg.approxTopK(item, 2) as top",
+                (row) -> {
+                    List<Map<String, Object>> top = (List<Map<String, Object>>) row.get("top");
+                    assertEquals(2, top.size());
+                    assertEquals("a", top.get(0).get("item"));
+                    assertEquals("b", top.get(1).get("item"));
+                    assertTrue((long) top.get(0).get("count") >= 10000L);
+                    assertTrue((long) top.get(1).get("count") >= 10000L);
+                });
+    }
+
+    @Test
+    public void testMerge() {
+        TDigest left = new TDigest(100), right = new TDigest(100);
+        HyperLogLog leftHll = new HyperLogLog(14), rightHll = new HyperLogLog(14);
+        CountMinSketch leftCms = new CountMinSketch(2048, 5), rightCms = new CountMinSketch(2048, 5);
+        for (int i = 0; i < 50000; i++) {
+            left.add(i);
+            right.add(50000 + i);
+            leftHll.add(i);
+            rightHll.add(25000 + i);
+            leftCms.add(i % 100);
+            rightCms.add(i % 100);
+        }
+        left.merge(right);
+        leftHll.merge(rightHll);
+        leftCms.merge(rightCms);
+        assertEquals(100000L, left.size());
+        assertEquals(50000D, left.quantile(0.5), 500D);
+        assertEquals(75000D, leftHll.estimate(), 75000 * 0.03);
+        assertEquals(100000L, leftCms.total());
+        assertTrue(leftCms.estimate(42) >= 1000L);
+    }
+}
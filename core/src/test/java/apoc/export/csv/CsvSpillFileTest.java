@@ -0,0 +1,45 @@
+package apoc.export.csv;
+
+import apoc.result.VirtualNode;
+import org.junit.Test;
+import org.neo4j.graphdb.Label;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class CsvSpillFileTest {
+
+    @Test
+    public void testReadBackWithFewerOpenWritersThanFiles() {
+        CsvSpillFile.OpenWriters writers = new CsvSpillFile.OpenWriters(2);
+        List<CsvSpillFile> files = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            files.add(new CsvSpillFile(1, i, writers));
+        }
+        int rows = CsvSpillFile.MEMORY_ROWS * 2 + 5;
+        try {
+            for (int row = 0; row < rows; row++) {
+                for (CsvSpillFile file : files) {
+                    file.add(new VirtualNode(row, new Label[0], Map.of("row", row, "text", "a \"quoted\", text")), String.valueOf(row));
+                }
+            }
+            for (CsvSpillFile file : files) {
+                List<String> ids = new ArrayList<>();
+                file.forEach((fixed, props) -> {
+                    assertEquals(fixed[0], props.get("row"));
+                    assertEquals("a \"quoted\", text", props.get("text"));
+                    ids.add(fixed[0]);
+                });
+                assertEquals(rows, ids.size());
+                for (int row = 0; row < rows; row++) {
+                    assertEquals(String.valueOf(row), ids.get(row));
+                }
+            }
+        } finally {
+            files.forEach(CsvSpillFile::close);
+        }
+    }
+}
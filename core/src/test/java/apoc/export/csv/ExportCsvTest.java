@@ -122,6 +122,14 @@ public class ExportCsvTest {
         assertEquals(EXPECTED, readFile(fileName));
     }
 
+    @Test
+    public void testExportAllCsvSinglePass() throws Exception {
+        String fileName = "all.csv";
+        TestUtil.testCall(db, "CALL apoc.export.csv.all($file,{singlePass: true})", map("file", fileName),
+                (r) -> assertResults(fileName, r, "database"));
+        assertEquals(EXPECTED, readFile(fileName));
+    }
+
     @Test
     public void testExportAllCsvWithQuotes() throws Exception {
         String fileName = "all.csv";
@@ -454,4 +454,83 @@ public class ImportCsvTest {
         Assert.assertEquals(1L, id);
     }
 
+    @Test
+    public void testSpilledIdMapping() throws IOException {
+        StringBuilder persons = new StringBuilder(":ID(Person)|name:STRING\n");
+        StringBuilder knows = new StringBuilder(":START_ID(Person)|:END_ID(Person)\n");
+        for (int i = 0; i < 5000; i++) {
+            persons.append("p-").append(i).append("|name").append(i).append("\n");
+            knows.append("p-").append(i).append("|p-").append((i + 1) % 5000).append("\n");
+        }
+        CsvTestUtil.saveCsvFile("many-persons", persons.toString());
+        CsvTestUtil.saveCsvFile("many-knows", knows.toString());
+
+        TestUtil.testCall(
+                db,
+                "CALL apoc.import.csv([{fileName: $nodeFile, labels: ['Person']}], [{fileName: $relFile, type: 'KNOWS'}], $config)",
+                map(
+                        "nodeFile", "file:/many-persons.csv",
+                        "relFile", "file:/many-knows.csv",
+                        "config", map("delimiter", '|', "spillIdMapping", true)
+                ),
+                (r) -> {
+                    assertEquals(5000L, r.get("nodes"));
+                    assertEquals(5000L, r.get("relationships"));
+                }
+        );
+        Assert.assertEquals("name1", TestUtil.singleResultFirstColumn(db, "MATCH (:Person {name: 'name0'})-[:KNOWS]->(p:Person) RETURN p.name AS name"));
+        Assert.assertEquals("name0", TestUtil.singleResultFirstColumn(db, "MATCH (:Person {name: 'name4999'})-[:KNOWS]->(p:Person) RETURN p.name AS name"));
+    }
+
+    @Test
+    public void testParallelRelationships() throws IOException {
+        StringBuilder persons = new StringBuilder(":ID(Person)|name:STRING\n");
+        StringBuilder knows = new StringBuilder(":START_ID(Person)|:END_ID(Person)|since:INT\n");
+        StringBuilder likes = new StringBuilder(":START_ID(Person)|:END_ID(Person)\n");
+        for (int i = 0; i < 1000; i++) {
+            persons.append(i).append("|name").append(i).append("\n");
+            knows.append(i).append("|").append((i + 1) % 1000).append("|2016\n");
+            likes.append(i).append("|").append((i * 7) % 1000).append("\n");
+        }
+        CsvTestUtil.saveCsvFile("parallel-persons", persons.toString());
+        CsvTestUtil.saveCsvFile("parallel-knows", knows.toString());
+        CsvTestUtil.saveCsvFile("parallel-likes", likes.toString());
+
+        TestUtil.testResult(
+                db,
+                "CALL apoc.import.csv([{fileName: $nodeFile, labels: ['Person']}], " +
+                        "[{fileName: $knowsFile, type: 'KNOWS'}, {fileName: $likesFile, type: 'LIKES'}], $config)",
+                map(
+                        "nodeFile", "file:/parallel-persons.csv",
+                        "knowsFile", "file:/parallel-knows.csv",
+                        "likesFile", "file:/parallel-likes.csv",
+                        "config", map("delimiter", '|', "parallel", true, "concurrency", 2, "batchSize", 100)
+                ),
+                (r) -> {
+                    Map<String, Object> total = r.next();
+                    assertEquals(1000L, total.get("nodes"));
+                    assertEquals(2000L, total.get("relationships"));
+                    assertEquals(2000L, total.get("properties"));
+
+                    Map<String, Object> nodeFile = r.next();
+                    assertEquals("file:/parallel-persons.csv", nodeFile.get("file"));
+                    assertEquals(1000L, nodeFile.get("nodes"));
+
+                    Map<String, Object> knowsFile = r.next();
+                    assertEquals("file:/parallel-knows.csv", knowsFile.get("file"));
+                    assertEquals(1000L, knowsFile.get("relationships"));
+                    assertEquals(1000L, knowsFile.get("properties"));
+
+                    Map<String, Object> likesFile = r.next();
+                    assertEquals("file:/parallel-likes.csv", likesFile.get("file"));
+                    assertEquals(1000L, likesFile.get("relationships"));
+                    assertEquals(0L, likesFile.get("properties"));
+                    Assert.assertFalse(r.hasNext());
+                }
+        );
+        Assert.assertEquals("name1", TestUtil.singleResultFirstColumn(db, "MATCH (:Person {name: 'name0'})-[:KNOWS]->(p:Person) RETURN p.name AS name"));
+        Assert.assertEquals("name7", TestUtil.singleResultFirstColumn(db, "MATCH (:Person {name: 'name1'})-[:LIKES]->(p:Person) RETURN p.name AS name"));
+        Assert.assertEquals(1000L, (long) TestUtil.singleResultFirstColumn(db, "MATCH ()-[r:KNOWS {since: 2016}]->() RETURN count(r) AS count"));
+    }
+
 }
@@ -142,6 +142,46 @@ public class ImportJsonTest {
         );
     }
 
+    @Test
+    public void shouldImportAllJsonInParallel() throws Exception {
+        // given
+        String filename = "all.json";
+
+        // when
+        TestUtil.testCall(db, "CALL apoc.import.json($file, $config)",
+                map("file", filename, "config",
+                        map("nodePropertyMappings", map("User", map("place", "Point", "born", "LocalDateTime")),
+                                "relPropertyMappings", map("KNOWS", map("bffSince", "Duration")),
+                                "unwindBatchSize", 2, "txBatchSize", 2, "parallel", true, "concurrency", 2)),
+                (r) -> {
+                    // then
+                    Assert.assertEquals(3L, r.get("nodes"));
+                    Assert.assertEquals(1L, r.get("relationships"));
+                    Assert.assertEquals(15L, r.get("properties"));
+                    Assert.assertEquals(true, r.get("done"));
+
+                    try(Transaction tx = db.beginTx()) {
+                        final long countNodes = tx.execute("MATCH (n:User) RETURN count(n) AS count")
+                                .<Long>columnAs("count")
+                                .next();
+                        Assert.assertEquals(3L, countNodes);
+
+                        final Map<String, Object> props = tx.execute("MATCH (n:User {name: 'Adam'}) RETURN n")
+                                .<Node>columnAs("n")
+                                .next()
+                                .getAllProperties();
+                        Assert.assertTrue(props.get("place") instanceof PointValue);
+                        Assert.assertTrue(props.get("born") instanceof LocalDateTime);
+
+                        Relationship rel = tx.execute("MATCH (:User)-[r:KNOWS]->(:User) RETURN r")
+                                .<Relationship>columnAs("r")
+                                .next();
+                        Assert.assertEquals("P5M1DT12H", rel.getProperty("bffSince").toString());
+                    }
+                }
+        );
+    }
+
     @Test
     public void shouldImportNodesWithoutLabels() throws Exception {
         // given
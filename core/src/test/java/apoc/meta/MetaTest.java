@@ -42,6 +42,8 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+import static apoc.ApocConfig.APOC_META_CACHE_ENABLED;
+import static apoc.ApocConfig.apocConfig;
 import static apoc.util.MapUtil.map;
 import static apoc.util.TestUtil.testCall;
 import static java.util.Arrays.asList;
@@ -872,6 +874,76 @@ public class MetaTest {
         });
     }
 
+    @Test
+    public void testNodeTypePropertiesParallel() throws Exception {
+        db.executeTransactionally("UNWIND range(1, 500) AS id CREATE (:Person {id: id, name: 'p' + id})-[:KNOWS {since: id}]->(:Person {id: id})");
+
+        TestUtil.testResult(db, "CALL apoc.meta.nodeTypeProperties({ sample: -1, parallel: true }) YIELD nodeType, propertyName, propertyTypes, propertyObservations, totalObservations " +
+                "RETURN nodeType, propertyName, propertyTypes, propertyObservations, totalObservations ORDER BY propertyName", r -> {
+            List<Map<String,Object>> records = gatherRecords(r);
+            assertEquals(2, records.size());
+            assertEquals(map("nodeType", ":`Person`", "propertyName", "id", "propertyTypes", asList("Long"), "propertyObservations", 1000L, "totalObservations", 1000L), records.get(0));
+            assertEquals(map("nodeType", ":`Person`", "propertyName", "name", "propertyTypes", asList("String"), "propertyObservations", 500L, "totalObservations", 1000L), records.get(1));
+        });
+
+        TestUtil.testCall(db, "CALL apoc.meta.relTypeProperties({ sample: -1, parallel: true })", row -> {
+            assertEquals(":`KNOWS`", row.get("relType"));
+            assertEquals("since", row.get("propertyName"));
+            assertEquals(asList("Long"), row.get("propertyTypes"));
+        });
+    }
+
+    @Test
+    public void testMetaProfileCache() throws Exception {
+        apocConfig().setProperty(APOC_META_CACHE_ENABLED, true);
+        try {
+            db.executeTransactionally("CREATE (:Foo {name: 'a', age: 1})-[:REL {since: 2020}]->(:Bar {flag: true})");
+            testCall(db, "CALL apoc.meta.cache.rebuild()", row -> {
+                Map<String, Object> status = (Map<String, Object>) row.get("value");
+                assertEquals(true, status.get("built"));
+                assertEquals(0L, status.get("staleness"));
+            });
+
+            // maintained from the transaction data from now on
+            db.executeTransactionally("CREATE (:Foo {name: 'b', age: 'two'})");
+            db.executeTransactionally("MATCH (b:Bar) SET b:Baz, b.id = 1 REMOVE b.flag");
+
+            TestUtil.testResult(db, "CALL apoc.meta.nodeTypeProperties({ cached: true }) YIELD nodeType, propertyName, propertyTypes, propertyObservations, totalObservations " +
+                    "RETURN nodeType, propertyName, propertyTypes, propertyObservations, totalObservations ORDER BY nodeType, propertyName", r -> {
+                List<Map<String,Object>> records = gatherRecords(r);
+                assertEquals(3, records.size());
+                assertEquals(map("nodeType", ":`Bar`:`Baz`", "propertyName", "id", "propertyTypes", asList("Long"), "propertyObservations", 1L, "totalObservations", 1L), records.get(0));
+                assertEquals(map("nodeType", ":`Foo`", "propertyName", "age", "propertyTypes", asList("Long", "String"), "propertyObservations", 2L, "totalObservations", 2L), records.get(1));
+                assertEquals(map("nodeType", ":`Foo`", "propertyName", "name", "propertyTypes", asList("String"), "propertyObservations", 2L, "totalObservations", 2L), records.get(2));
+            });
+
+            testCall(db, "CALL apoc.meta.relTypeProperties({ cached: true })", row -> {
+                assertEquals(":`REL`", row.get("relType"));
+                assertEquals(asList("Foo"), row.get("sourceNodeLabels"));
+                assertEquals(asList("Bar", "Baz"), row.get("targetNodeLabels"));
+                assertEquals(asList("Long"), row.get("propertyTypes"));
+            });
+
+            testCall(db, "CALL apoc.meta.schema({ cached: true })", row -> {
+                Map<String, Object> value = (Map<String, Object>) row.get("value");
+                assertEquals(2L, ((Map<String, Object>) value.get("Foo")).get("count"));
+            });
+            db.executeTransactionally("CREATE (:Foo {name: 'c', age: 3})");
+            testCall(db, "CALL apoc.meta.schema({ cached: true })", row -> {
+                Map<String, Object> value = (Map<String, Object>) row.get("value");
+                assertEquals(3L, ((Map<String, Object>) value.get("Foo")).get("count"));
+            });
+
+            String relCount = "CALL apoc.meta.data({ cached: true }) YIELD label, property, count WHERE label = 'Foo' AND property = 'REL' RETURN count";
+            testCall(db, relCount, row -> assertEquals(1L, row.get("count")));
+            // same shape, only the counts change
+            db.executeTransactionally("MATCH (f:Foo {name: 'c'}), (b:Bar) CREATE (f)-[:REL {since: 2021}]->(b)");
+            testCall(db, relCount, row -> assertEquals(2L, row.get("count")));
+        } finally {
+            apocConfig().setProperty(APOC_META_CACHE_ENABLED, false);
+        }
+    }
+
     @Test
     public void testNodeTypePropertiesRelExcludes() throws Exception {
         db.executeTransactionally("CREATE (:A)-[:RELA { x: 1 }]->(:C)");
@@ -214,4 +214,32 @@ public class GroupingTest {
                 });
 
     }
+
+    @Test
+    public void testGroupNodesWithSeveralLabels() throws Exception {
+        db.executeTransactionally("CREATE (:Person:Employee {gender:'male'})-[:KNOWS]->(:Person {gender:'female'})");
+        TestUtil.testResult(db, "CALL apoc.nodes.group(['Person','Employee'],['gender']) yield relationship " +
+                        "WHERE relationship IS NOT NULL " +
+                        "RETURN labels(startNode(relationship))[0] + '-' + labels(endNode(relationship))[0] AS pair, relationship.`count_*` AS count ORDER BY pair",
+                result -> {
+                    assertEquals(map("pair", "Employee-Person", "count", 1L), result.next());
+                    assertEquals(map("pair", "Person-Person", "count", 1L), result.next());
+                    assertFalse(result.hasNext());
+                });
+    }
+
+    @Test
+    public void testGroupIndex() {
+        Grouping.GroupIndex index = new Grouping.GroupIndex();
+        index.set(0, 0);
+        index.set(5000, 1);
+        index.set(1_000_000, 2);
+        index.freeze();
+        assertEquals(0, index.get(0));
+        assertEquals(1, index.get(5000));
+        assertEquals(2, index.get(1_000_000));
+        assertEquals(-1, index.get(1));
+        assertEquals(-1, index.get(100_000));
+        assertEquals(-1, index.get(10_000_000));
+    }
 }
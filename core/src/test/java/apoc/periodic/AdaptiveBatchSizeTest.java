@@ -0,0 +1,46 @@
+package apoc.periodic;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveBatchSizeTest {
+
+    @Test
+    public void growsTowardsTargetLatency() {
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize(1000, 100, 100_000);
+        assertEquals(1000, batchSize.next());
+        // 1000 rows committed in 100ms, at most doubles per batch
+        batchSize.onBatchCompleted(1000, TimeUnit.MILLISECONDS.toNanos(100), 0, false);
+        assertEquals(2000, batchSize.next());
+        // 2000 rows in 400ms: 5000 rows fit in the target, capped at 4000
+        batchSize.onBatchCompleted(2000, TimeUnit.MILLISECONDS.toNanos(400), 0, false);
+        assertEquals(4000, batchSize.next());
+        // 4000 rows in 1000ms: on target
+        batchSize.onBatchCompleted(4000, TimeUnit.MILLISECONDS.toNanos(1000), 0, false);
+        assertEquals(4000, batchSize.next());
+        assertEquals(List.of(1000L, 2000L, 4000L), batchSize.getTrajectory());
+    }
+
+    @Test
+    public void shrinksOnSlowCommitsFailuresAndRetries() {
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize(1000, 100, 100_000);
+        // 1000 rows in 1500ms
+        batchSize.onBatchCompleted(1000, TimeUnit.MILLISECONDS.toNanos(1500), 0, false);
+        assertEquals(666, batchSize.next());
+        batchSize.onBatchCompleted(666, TimeUnit.MILLISECONDS.toNanos(10), 1, false);
+        assertEquals(333, batchSize.next());
+        batchSize.onBatchCompleted(333, TimeUnit.MILLISECONDS.toNanos(10), 0, true);
+        assertEquals(166, batchSize.next());
+        batchSize.onBatchCompleted(166, TimeUnit.MILLISECONDS.toNanos(10), 0, true);
+        assertEquals(100, batchSize.next());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBounds() {
+        new AdaptiveBatchSize(1000, 1000, 10);
+    }
+}
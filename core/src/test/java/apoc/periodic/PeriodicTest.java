@@ -25,10 +25,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import static apoc.util.TestUtil.testCall;
+import static org.neo4j.test.assertion.Assert.assertEventually;
 import static apoc.util.TestUtil.testResult;
 import static apoc.util.Util.map;
 import static java.util.stream.Collectors.toList;
@@ -236,6 +238,205 @@ public class PeriodicTest {
         );
     }
 
+    @Test
+    public void testIteratePipelined() throws Exception {
+        db.executeTransactionally("UNWIND range(1,100) AS x CREATE (:Person{name:'Person_'+x})");
+
+        testResult(db, "CALL apoc.periodic.iterate('match (p:Person) return p', 'SET p.lastname =p.name REMOVE p.name', {batchSize:10,parallel:true,concurrency:3,pipelined:true})", result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(10L, row.get("batches"));
+            assertEquals(100L, row.get("total"));
+            assertEquals(100L, row.get("committedOperations"));
+        });
+
+        testCall(db,
+                "MATCH (p:Person) where p.lastname is not null return count(p) as count",
+                row -> assertEquals(100L, row.get("count"))
+        );
+    }
+
+    @Test
+    public void testIteratePipelinedWithReportingFailed() throws Exception {
+        testResult(db, "CALL apoc.periodic.iterate('UNWIND range(-5, 5) AS x RETURN x', 'return sum(1000/x)', {batchSize:3, pipelined:true})", result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(4L, row.get("batches"));
+            assertEquals(1L, row.get("failedBatches"));
+            assertEquals(11L, row.get("total"));
+        });
+    }
+
+    @Test
+    public void testIterateAutoBatchSize() throws Exception {
+        db.executeTransactionally("UNWIND range(1,1000) AS x CREATE (:Person{name:'Person_'+x})");
+
+        testResult(db, "CALL apoc.periodic.iterate('match (p:Person) return p', 'SET p.lastname =p.name', {batchSize:'auto', minBatchSize:10, maxBatchSize:200, targetLatency:10000})", result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(1000L, row.get("total"));
+            assertEquals(1000L, row.get("committedOperations"));
+            List<Long> batchSizes = (List<Long>) row.get("batchSizes");
+            assertEquals(200L, (long) batchSizes.get(0));
+            assertTrue(batchSizes.stream().allMatch(size -> size >= 10 && size <= 200));
+        });
+
+        testCall(db,
+                "MATCH (p:Person) where p.lastname is not null return count(p) as count",
+                row -> assertEquals(1000L, row.get("count"))
+        );
+    }
+
+    @Test
+    public void testIteratePartitionBy() throws Exception {
+        db.executeTransactionally("UNWIND range(1,5) AS x CREATE (:Hub{id:x})");
+        db.executeTransactionally("UNWIND range(1,500) AS x CREATE (:Person{id:x})");
+
+        testResult(db, "CALL apoc.periodic.iterate('match (p:Person) match (h:Hub {id: p.id % 5 + 1}) return p, h', " +
+                "'CREATE (p)-[:MEMBER_OF]->(h) SET h.members = coalesce(h.members, 0) + 1', {batchSize:10, parallel:true, concurrency:4, partitionBy:'h'})", result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(500L, row.get("total"));
+            assertEquals(500L, row.get("committedOperations"));
+            assertEquals(0L, row.get("failedBatches"));
+            assertEquals(0L, row.get("retries"));
+        });
+
+        testCall(db,
+                "MATCH (h:Hub) return sum(h.members) as members, min(h.members) as minMembers",
+                row -> {
+                    assertEquals(500L, row.get("members"));
+                    assertEquals(100L, row.get("minMembers"));
+                }
+        );
+    }
+
+    @Test
+    public void testIteratePartitionByHotKeyKeepsTheBatchSize() throws Exception {
+        testResult(db, "CALL apoc.periodic.iterate('UNWIND range(1,5000) AS x RETURN x, 1 AS key', " +
+                "'CREATE (:Batch {size: size($_batch)})', {batchSize:10, parallel:true, concurrency:4, partitionBy:'key', batchMode:'BATCH_SINGLE'})", result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(5000L, row.get("total"));
+            assertEquals(0L, row.get("failedBatches"));
+        });
+
+        testCall(db,
+                "MATCH (b:Batch) RETURN sum(b.size) AS rows, max(b.size) AS maxSize",
+                row -> {
+                    assertEquals(5000L, row.get("rows"));
+                    assertEquals(10L, row.get("maxSize"));
+                }
+        );
+    }
+
+    @Test(expected = QueryExecutionException.class)
+    public void testIteratePartitionByPipelined() {
+        testCall(db, "CALL apoc.periodic.iterate('UNWIND range(1,10) AS x RETURN x', 'RETURN x', {parallel:true, partitionBy:'x', pipelined:true})", row -> {});
+    }
+
+    @Test(expected = QueryExecutionException.class)
+    public void testIteratePartitionByUnknownColumn() {
+        testCall(db, "CALL apoc.periodic.iterate('UNWIND range(1,10) AS x RETURN x', 'RETURN x', {parallel:true, partitionBy:'y'})", row -> {});
+    }
+
+    @Test
+    public void testIterateCheckpointResume() throws Exception {
+        String iterate = "CALL apoc.periodic.iterate('UNWIND range(1,10) AS x RETURN x', $action, {batchSize:2, checkpoint:'job', resume:true})";
+        testResult(db, iterate, map("action", "MERGE (n:Node {x: x}) SET n.y = 10 / (x - 6)"), result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(10L, row.get("total"));
+            assertEquals(1L, row.get("failedBatches"));
+        });
+        testResult(db, iterate, map("action", "MERGE (:Node {x: x})"), result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(6L, row.get("total"));
+            assertEquals(0L, row.get("failedBatches"));
+        });
+        testCall(db, "MATCH (n:Node) RETURN count(*) AS count, count(distinct n.x) AS distinct",
+                row -> {
+                    assertEquals(10L, row.get("count"));
+                    assertEquals(10L, row.get("distinct"));
+                });
+
+        // the checkpoint is removed once the job has completed
+        testResult(db, iterate, map("action", "RETURN x"), result -> assertEquals(10L, Iterators.single(result).get("total")));
+    }
+
+    @Test
+    public void testIterateCheckpointKeyResume() throws Exception {
+        String iterate = "CALL apoc.periodic.iterate('UNWIND range(1,10) AS x WITH x WHERE $_checkpoint IS NULL OR x > $_checkpoint RETURN x ORDER BY x', $action, " +
+                "{batchSize:3, parallel:true, checkpoint:'job', checkpointKey:'x', resume:true})";
+        testResult(db, iterate, map("action", "MERGE (n:Node {x: x}) SET n.y = 10 / (x - 8)"), result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(10L, row.get("total"));
+            assertEquals(1L, row.get("failedBatches"));
+        });
+        testResult(db, iterate, map("action", "MERGE (:Node {x: x})"), result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(4L, row.get("total"));
+            assertEquals(0L, row.get("failedBatches"));
+        });
+        testCall(db, "MATCH (n:Node) RETURN count(*) AS count, count(distinct n.x) AS distinct",
+                row -> {
+                    assertEquals(10L, row.get("count"));
+                    assertEquals(10L, row.get("distinct"));
+                });
+    }
+
+    @Test
+    public void testSubmitIterate() throws Exception {
+        db.executeTransactionally("UNWIND range(1,100) AS x CREATE (:Person{name:'Person_'+x})");
+
+        testCall(db, "CALL apoc.periodic.submitIterate('iterate', 'match (p:Person) return p', 'SET p.lastname = p.name', {batchSize:10, expectedTotal:100})",
+                row -> assertEquals("iterate", row.get("name")));
+
+        assertEventually(() -> db.executeTransactionally("CALL apoc.periodic.list() YIELD name, progress WHERE name = 'iterate' RETURN progress",
+                Collections.emptyMap(), result -> (Map<String, Object>) Iterators.single(result).get("progress")),
+                progress -> progress.get("batches").equals(10L), 10, TimeUnit.SECONDS);
+
+        testCall(db, "CALL apoc.periodic.list() YIELD name, progress WHERE name = 'iterate' RETURN progress", row -> {
+            Map<String, Object> progress = (Map<String, Object>) row.get("progress");
+            assertEquals(100L, progress.get("total"));
+            assertEquals(100L, progress.get("estimatedTotal"));
+            assertEquals(0L, progress.get("batchesInFlight"));
+            assertTrue(progress.containsKey("rowsPerSecond"));
+            assertTrue(progress.containsKey("batchLatencyP99"));
+        });
+        testCall(db,
+                "MATCH (p:Person) where p.lastname is not null return count(p) as count",
+                row -> assertEquals(100L, row.get("count"))
+        );
+    }
+
+    @Test
+    public void testIteratePool() throws Exception {
+        db.executeTransactionally("UNWIND range(1,100) AS x CREATE (:Person{name:'Person_'+x})");
+
+        testResult(db, "CALL apoc.periodic.iterate('match (p:Person) return p', 'SET p.lastname =p.name', {batchSize:10, pool:'default'})", result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(10L, row.get("batches"));
+            assertEquals(100L, row.get("committedOperations"));
+        });
+
+        testResult(db, "CALL apoc.periodic.pools() YIELD name, threads, rejectedTasks, saturation RETURN name", result ->
+                assertEquals(List.of("single", "default", "scheduled", "io"), Iterators.asList(result.columnAs("name"))));
+    }
+
+    @Test
+    public void testIterateIoPool() throws Exception {
+        db.executeTransactionally("UNWIND range(1,100) AS x CREATE (:Person{name:'Person_'+x})");
+
+        testResult(db, "CALL apoc.periodic.iterate('match (p:Person) return p', 'SET p.lastname =p.name', {batchSize:1, parallel:true, concurrency:10, pool:'io'})", result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(100L, row.get("batches"));
+            assertEquals(100L, row.get("committedOperations"));
+            assertEquals(0L, row.get("failedBatches"));
+        });
+        testCall(db, "CALL apoc.periodic.pools() YIELD name, type WHERE name = 'io' RETURN type",
+                row -> assertTrue(List.of("VIRTUAL", "FORK_JOIN").contains(row.get("type"))));
+    }
+
+    @Test(expected = QueryExecutionException.class)
+    public void testIterateUnknownPool() {
+        testCall(db, "CALL apoc.periodic.iterate('UNWIND range(1,10) AS x RETURN x', 'RETURN x', {pool:'unknown'})", row -> {});
+    }
+
     @Test
     public void testIterateUpdateStats() {
         testResult(db, "CALL apoc.periodic.iterate(" +
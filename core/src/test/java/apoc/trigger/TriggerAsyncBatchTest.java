@@ -0,0 +1,55 @@
+package apoc.trigger;
+
+import apoc.util.TestUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.test.rule.DbmsRule;
+import org.neo4j.test.rule.ImpermanentDbmsRule;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static apoc.ApocConfig.APOC_TRIGGER_ASYNC_BATCH_SIZE;
+import static apoc.ApocConfig.APOC_TRIGGER_ASYNC_WINDOW;
+import static apoc.ApocConfig.apocConfig;
+import static apoc.ApocSettings.apoc_trigger_enabled;
+import static org.junit.Assert.assertTrue;
+
+public class TriggerAsyncBatchTest {
+
+    @Rule
+    public DbmsRule db = new ImpermanentDbmsRule()
+            .withSetting(apoc_trigger_enabled, true);
+
+    @Before
+    public void setUp() throws Exception {
+        TestUtil.registerProcedure(db, Trigger.class);
+        // read when the first afterAsync trigger runs
+        apocConfig().setProperty(APOC_TRIGGER_ASYNC_BATCH_SIZE, 100);
+        apocConfig().setProperty(APOC_TRIGGER_ASYNC_WINDOW, 1000);
+    }
+
+    @Test
+    public void testAfterAsyncInBatches() throws Exception {
+        db.executeTransactionally("CREATE (:Counter {batches: 0, created: 0})");
+        db.executeTransactionally("CALL apoc.trigger.add('count-created', " +
+                "'UNWIND [n IN $createdNodes WHERE n:Foo] AS n WITH count(n) AS created WHERE created > 0 " +
+                "MATCH (c:Counter) SET c.batches = c.batches + 1, c.created = c.created + created', {phase: 'afterAsync'})");
+        for (int i = 0; i < 50; i++) {
+            db.executeTransactionally("CREATE (:Foo {id: $id})", Map.of("id", i));
+        }
+
+        org.neo4j.test.assertion.Assert.assertEventually(() ->
+                        db.executeTransactionally("MATCH (c:Counter) RETURN c.created AS created", Map.of(),
+                                result -> result.<Long>columnAs("created").next())
+                , (value) -> value == 50L, 30L, TimeUnit.SECONDS);
+        TestUtil.testCall(db, "MATCH (c:Counter) RETURN c.batches AS batches", (row) ->
+                assertTrue("batches: " + row.get("batches"), (long) row.get("batches") < 50L));
+        TestUtil.testCall(db, "CALL apoc.trigger.asyncStats()", (row) -> {
+            Map<String, Object> stats = (Map<String, Object>) row.get("value");
+            assertTrue((long) stats.get("transactions") >= 50L);
+            assertTrue((long) stats.get("batches") < (long) stats.get("transactions"));
+        });
+    }
+}
@@ -15,6 +15,7 @@ import org.neo4j.test.rule.ImpermanentDbmsRule;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static apoc.ApocSettings.apoc_trigger_enabled;
@@ -279,5 +280,29 @@ public class TriggerTest {
                 , (value) -> value, 30L, TimeUnit.SECONDS);
     }
 
+    @Test
+    public void testUsedParameters() throws Exception {
+        assertEquals(Set.of("createdNodes", "assignedLabels"),
+                TriggerMetadata.usedParameters("UNWIND $createdNodes AS n SET n.labels = size($`assignedLabels`) + $foo"));
+        assertEquals(Collections.emptySet(), TriggerMetadata.usedParameters("MATCH (n:Counter) SET n.count = n.count + 1"));
+    }
 
+    @Test
+    public void testTriggersUsingDifferentParameters() throws Exception {
+        db.executeTransactionally("CREATE (:Counter {created:0, labeled:0})");
+        db.executeTransactionally("CALL apoc.trigger.add('count-created','MATCH (c:Counter) SET c.created = c.created + size($createdNodes)',{})");
+        db.executeTransactionally("CALL apoc.trigger.add('count-labeled','MATCH (c:Counter) SET c.labeled = c.labeled + size($assignedLabels[\"Foo\"])',{})");
+        db.executeTransactionally("CREATE (:Foo), (:Bar)");
+        TestUtil.testCall(db, "MATCH (c:Counter) RETURN c.created as created, c.labeled as labeled", (row) -> {
+            assertEquals(2L, row.get("created"));
+            assertEquals(1L, row.get("labeled"));
+        });
+        db.executeTransactionally("CALL apoc.trigger.pause('count-created')");
+        db.executeTransactionally("CALL apoc.trigger.pause('count-labeled')");
+        db.executeTransactionally("CREATE (:Foo)");
+        TestUtil.testCall(db, "MATCH (c:Counter) RETURN c.created as created, c.labeled as labeled", (row) -> {
+            assertEquals(2L, row.get("created"));
+            assertEquals(1L, row.get("labeled"));
+        });
+    }
 }
@@ -7,7 +7,11 @@ import org.junit.Test;
 import org.neo4j.test.rule.DbmsRule;
 import org.neo4j.test.rule.ImpermanentDbmsRule;
 
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Sascha Peukert
@@ -67,4 +71,50 @@ public class WarmupTest {
             assertEquals(6L, r.get("indexPages"));
         });
     }
+
+    @Test
+    public void testWarmupRanges() throws Exception {
+        TestUtil.testCall(db, "CALL apoc.warmup.run(true, true, true, {rangeSize: 1, concurrency: 4})", r -> {
+            assertEquals(2L, r.get("nodePages"));
+            assertEquals(2L, r.get("relPages"));
+            assertEquals(5L, r.get("propPages"));
+            assertEquals(6L, r.get("indexPages"));
+        });
+    }
+
+    @Test
+    public void testResidency() throws Exception {
+        db.executeTransactionally("CALL apoc.warmup.run()");
+        TestUtil.testCall(db, "CALL apoc.warmup.residency() YIELD file, pages, residentPages, residency " +
+                "WHERE file = 'neostore.nodestore.db' RETURN *", r -> {
+            assertEquals(2L, r.get("pages"));
+            assertEquals(2L, r.get("residentPages"));
+            assertEquals(1.0D, r.get("residency"));
+        });
+    }
+
+    @Test
+    public void testSelective() throws Exception {
+        TestUtil.testResult(db, "CALL apoc.warmup.selective({labels: ['Foo'], types: ['KNOWS'], properties: true})", result -> {
+            Map<String, Object> row = result.next();
+            assertEquals("label", row.get("target"));
+            assertEquals("Foo", row.get("name"));
+            assertEquals(2L, row.get("entities"));
+            row = result.next();
+            assertEquals("type", row.get("target"));
+            assertEquals("KNOWS", row.get("name"));
+            assertEquals(2L, row.get("entities"));
+            assertFalse(result.hasNext());
+        });
+        TestUtil.testCall(db, "CALL apoc.warmup.selective({types: ['KNOWS']})", r -> assertEquals(2L, r.get("entities")));
+    }
+
+    @Test
+    public void testSelectiveIndex() throws Exception {
+        TestUtil.testCall(db, "CALL db.indexes() YIELD name WITH name LIMIT 1 " +
+                "CALL apoc.warmup.selective({indexes: [name]}) YIELD target, pages RETURN *", r -> {
+            assertEquals("index", r.get("target"));
+            assertTrue((long) r.get("pages") > 0);
+        });
+    }
 }
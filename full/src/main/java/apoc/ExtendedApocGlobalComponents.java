@@ -31,6 +31,7 @@ public class ExtendedApocGlobalComponents implements ApocGlobalComponents {
 
         CypherProceduresHandler cypherProcedureHandler = new CypherProceduresHandler(
                 db,
+                dependencies.databaseManagementService(),
                 dependencies.scheduler(),
                 dependencies.apocConfig(),
                 dependencies.log().getUserLog(CypherProcedures.class),
@@ -40,7 +41,7 @@ public class ExtendedApocGlobalComponents implements ApocGlobalComponents {
 
         return MapUtil.genericMap(
 
-                "ttl", new TTLLifeCycle(dependencies.scheduler(), db, dependencies.apocConfig(), dependencies.ttlConfig(), dependencies.log().getUserLog(TTLLifeCycle.class)),
+                "ttl", new TTLLifeCycle(dependencies.scheduler(), db, dependencies.apocConfig(), dependencies.ttlConfig(), dependencies.log().getUserLog(TTLLifeCycle.class), dependencies.pools()),
 
                 "uuid", new UuidHandler(db,
                 dependencies.databaseManagementService(),
@@ -58,7 +59,7 @@ public class ExtendedApocGlobalComponents implements ApocGlobalComponents {
 
     @Override
     public Collection<Class> getContextClasses() {
-        return List.of(CypherProceduresHandler.class, UuidHandler.class, LoadDirectoryHandler.class);
+        return List.of(CypherProceduresHandler.class, UuidHandler.class, LoadDirectoryHandler.class, TTLLifeCycle.class);
     }
 
     @Override
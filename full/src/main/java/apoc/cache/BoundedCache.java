@@ -0,0 +1,295 @@
+package apoc.cache;
+
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.Path;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache bounded by number of entries and by estimated weight in bytes, with a time to live per entry.
+ *
+ * Keys are spread over segments, each one a map in access order guarded by its own lock, so that concurrent callers
+ * only contend on the same segment. When a segment is over its share of the limits, its expired entries are removed
+ * first, then its least recently used ones or, with the <code>lfu</code> policy, the least frequently used among
+ * the least recently used ones.
+ */
+public class BoundedCache {
+
+    public enum Policy {lru, lfu}
+
+    private static final int SEGMENTS = 16;
+    /** number of least recently used entries among which the lfu policy picks the one to evict */
+    private static final int LFU_SAMPLE = 8;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long maxEntries;
+    private final long maxWeight;
+    private final long defaultTtl;
+    private final Policy policy;
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    private static class Entry {
+        final Object value;
+        final long weight;
+        /** expiry time in ms, Long.MAX_VALUE if it never expires */
+        final long expires;
+        int frequency;
+
+        Entry(Object value, long weight, long expires) {
+            this.value = value;
+            this.weight = weight;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return expires <= now;
+        }
+    }
+
+    private class Segment {
+        final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        long weight;
+
+        Entry remove(String key) {
+            Entry entry = entries.remove(key);
+            if (entry != null) weight -= entry.weight;
+            return entry;
+        }
+
+        void evict(long now) {
+            long maxSegmentEntries = Math.max(1, maxEntries / SEGMENTS);
+            long maxSegmentWeight = maxWeight <= 0 ? Long.MAX_VALUE : Math.max(1, maxWeight / SEGMENTS);
+            if (entries.size() <= maxSegmentEntries && weight <= maxSegmentWeight) return;
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.isExpired(now)) {
+                    it.remove();
+                    weight -= entry.weight;
+                    expirations.increment();
+                }
+            }
+            while (entries.size() > maxSegmentEntries || (weight > maxSegmentWeight && !entries.isEmpty())) {
+                remove(victim());
+                evictions.increment();
+            }
+        }
+
+        private String victim() {
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            Map.Entry<String, Entry> victim = it.next();
+            if (policy == Policy.lfu) {
+                for (int i = 1; i < LFU_SAMPLE && it.hasNext(); i++) {
+                    Map.Entry<String, Entry> candidate = it.next();
+                    if (candidate.getValue().frequency < victim.getValue().frequency) {
+                        victim = candidate;
+                    }
+                }
+            }
+            return victim.getKey();
+        }
+    }
+
+    /**
+     * @param maxEntries maximum number of entries
+     * @param maxWeight maximum estimated size in bytes of the values, 0 for no limit
+     * @param defaultTtl time to live in ms of the entries stored without one, 0 for no expiry
+     */
+    public BoundedCache(long maxEntries, long maxWeight, long defaultTtl, Policy policy) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maximum number of entries of the cache must be positive, got " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.defaultTtl = defaultTtl;
+        this.policy = policy;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private Segment segment(String key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private long expires(long ttl) {
+        if (ttl < 0) ttl = defaultTtl;
+        return ttl == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + ttl;
+    }
+
+    /**
+     * @return the value stored under the key, null if there is none or it has expired
+     */
+    public Object get(String key) {
+        Segment segment = segment(key);
+        synchronized (segment) {
+            Entry entry = segment.entries.get(key);
+            if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+                segment.remove(key);
+                expirations.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            entry.frequency++;
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    /**
+     * @param ttl time to live in ms, 0 for no expiry, negative for the default one
+     * @return the value previously stored under the key, null if there was none
+     */
+    public Object put(String key, Object value, long ttl) {
+        if (value == null) return remove(key);
+        Entry entry = new Entry(value, weigh(key) + weigh(value), expires(ttl));
+        Segment segment = segment(key);
+        synchronized (segment) {
+            Entry previous = segment.remove(key);
+            segment.entries.put(key, entry);
+            segment.weight += entry.weight;
+            segment.evict(System.currentTimeMillis());
+            return previous == null || previous.isExpired(System.currentTimeMillis()) ? null : previous.value;
+        }
+    }
+
+    public Object remove(String key) {
+        Segment segment = segment(key);
+        synchronized (segment) {
+            Entry previous = segment.remove(key);
+            return previous == null || previous.isExpired(System.currentTimeMillis()) ? null : previous.value;
+        }
+    }
+
+    /**
+     * Returns the value stored under the key or, if there is none, the one computed by the loader and stored for
+     * <code>ttl</code> ms. Concurrent callers asking for the same missing key wait for a single computation, which
+     * runs outside of the segment lock.
+     */
+    public Object computeIfAbsent(String key, long ttl, Supplier<Object> loader) {
+        Object value = get(key);
+        if (value != null) return value;
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            try {
+                return running.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the cache entry " + key, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+            }
+        }
+        try {
+            value = loader.get();
+            loads.increment();
+            put(key, value, ttl);
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // errors too, the callers waiting for the future would wait forever otherwise
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * @return the keys starting with the prefix whose entries haven't expired
+     */
+    public List<String> keys(String prefix) {
+        List<String> keys = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.forEach((key, entry) -> {
+                    if (key.startsWith(prefix) && !entry.isExpired(now)) keys.add(key);
+                });
+            }
+        }
+        return keys;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long size = 0, weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+                weight += segment.weight;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size);
+        stats.put("weight", weight);
+        stats.put("maxEntries", maxEntries);
+        stats.put("maxWeight", maxWeight);
+        stats.put("defaultTtl", defaultTtl);
+        stats.put("policy", policy.name());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("loads", loads.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        return stats;
+    }
+
+    /**
+     * Rough estimate of the heap used by a value, entities count as a reference
+     */
+    static long weigh(Object value) {
+        if (value == null) return 8;
+        if (value instanceof String) return 40 + 2L * ((String) value).length();
+        if (value instanceof Number || value instanceof Boolean) return 16;
+        if (value instanceof Entity || value instanceof Path) return 64;
+        if (value instanceof Map) {
+            long weight = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                weight += 32 + weigh(entry.getKey()) + weigh(entry.getValue());
+            }
+            return weight;
+        }
+        if (value instanceof Collection) {
+            long weight = 40;
+            for (Object item : (Collection<?>) value) {
+                weight += 8 + weigh(item);
+            }
+            return weight;
+        }
+        if (value instanceof byte[]) return 16 + ((byte[]) value).length;
+        if (value.getClass().isArray()) return 16 + 8L * Array.getLength(value);
+        return 32;
+    }
+}
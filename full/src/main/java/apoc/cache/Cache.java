@@ -0,0 +1,136 @@
+package apoc.cache;
+
+import apoc.ApocConfig;
+import apoc.Extended;
+import apoc.result.KeyValueResult;
+import apoc.result.MapResult;
+import apoc.result.ObjectResult;
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.QueryExecutionType;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+import org.neo4j.procedure.UserFunction;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static apoc.ApocConfig.APOC_CACHE_MAX_ENTRIES;
+import static apoc.ApocConfig.APOC_CACHE_MAX_WEIGHT;
+import static apoc.ApocConfig.APOC_CACHE_POLICY;
+import static apoc.ApocConfig.APOC_CACHE_TTL;
+
+/**
+ * Bounded in-process cache, one per database, configured via <code>apoc.cache.*</code>
+ */
+@Extended
+public class Cache {
+
+    private static final Map<String, BoundedCache> caches = new ConcurrentHashMap<>();
+
+    @Context
+    public GraphDatabaseAPI db;
+
+    @Context
+    public Transaction tx;
+
+    @Context
+    public ApocConfig apocConfig;
+
+    private BoundedCache cache() {
+        return caches.computeIfAbsent(db.databaseName(), name -> {
+            String policy = apocConfig.getString(APOC_CACHE_POLICY, BoundedCache.Policy.lru.name());
+            try {
+                return new BoundedCache(apocConfig.getInt(APOC_CACHE_MAX_ENTRIES, 10000),
+                        apocConfig.getInt(APOC_CACHE_MAX_WEIGHT, 64 * 1024 * 1024),
+                        apocConfig.getInt(APOC_CACHE_TTL, 0),
+                        BoundedCache.Policy.valueOf(policy.toLowerCase()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cache configuration, " + APOC_CACHE_POLICY + " must be one of lru, lfu and "
+                        + APOC_CACHE_MAX_ENTRIES + " positive: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    @UserFunction("apoc.cache.get")
+    @Description("apoc.cache.get(key) - returns the value cached under the key, null if there is none or it has expired")
+    public Object get(@Name("key") String key) {
+        return cache().get(key);
+    }
+
+    @Procedure("apoc.cache.set")
+    @Description("apoc.cache.set(key, value, ttl) - caches the value under the key for ttl ms (0 for no expiry, by default apoc.cache.ttl), returns the previously cached value")
+    public Stream<ObjectResult> set(@Name("key") String key, @Name("value") Object value, @Name(value = "ttl", defaultValue = "-1") long ttl) {
+        return Stream.of(new ObjectResult(cache().put(key, value, ttl)));
+    }
+
+    @Procedure("apoc.cache.remove")
+    @Description("apoc.cache.remove(key) - removes the value cached under the key, returns it")
+    public Stream<ObjectResult> remove(@Name("key") String key) {
+        return Stream.of(new ObjectResult(cache().remove(key)));
+    }
+
+    @Procedure("apoc.cache.computeIfAbsent")
+    @Description("apoc.cache.computeIfAbsent(key, cypher, params, ttl) - returns the rows cached under the key or, if there are none, runs the read-only statement and caches its rows for ttl ms")
+    public Stream<MapResult> computeIfAbsent(@Name("key") String key, @Name("cypher") String statement,
+                                             @Name(value = "params", defaultValue = "{}") Map<String, Object> params,
+                                             @Name(value = "ttl", defaultValue = "-1") long ttl) {
+        Object rows = cache().computeIfAbsent(key, ttl, () -> {
+            try (Result result = tx.execute(statement, params == null ? Collections.emptyMap() : params)) {
+                if (result.getQueryExecutionType().queryType() != QueryExecutionType.QueryType.READ_ONLY) {
+                    throw new IllegalArgumentException("apoc.cache.computeIfAbsent only caches the rows of read-only statements, " + statement + " is of type " + result.getQueryExecutionType().queryType());
+                }
+                return result.stream().peek(row -> row.forEach((column, value) -> checkCacheable(column, value))).collect(Collectors.toList());
+            }
+        });
+        if (!(rows instanceof List)) {
+            throw new IllegalArgumentException("The value cached under " + key + " is not a list of rows");
+        }
+        return ((List<Map<String, Object>>) rows).stream().map(MapResult::new);
+    }
+
+    /**
+     * Nodes, relationships and paths are bound to the transaction that read them and can't outlive it in the cache,
+     * the statement has to return their ids or properties instead.
+     */
+    private static void checkCacheable(String column, Object value) {
+        if (value instanceof Entity || value instanceof Path) {
+            throw new IllegalArgumentException("apoc.cache.computeIfAbsent can't cache nodes, relationships or paths, return their ids or properties instead of column " + column);
+        }
+        if (value instanceof Iterable) {
+            ((Iterable<?>) value).forEach(item -> checkCacheable(column, item));
+        } else if (value instanceof Map) {
+            ((Map<?, ?>) value).values().forEach(item -> checkCacheable(column, item));
+        }
+    }
+
+    @Procedure("apoc.cache.list")
+    @Description("apoc.cache.list(prefix) - returns the cached keys and values whose key starts with the prefix")
+    public Stream<KeyValueResult> list(@Name(value = "prefix", defaultValue = "") String prefix) {
+        BoundedCache cache = cache();
+        return cache.keys(prefix).stream()
+                .map(key -> new KeyValueResult(key, cache.get(key)))
+                .filter(result -> result.value != null);
+    }
+
+    @Procedure("apoc.cache.clear")
+    @Description("apoc.cache.clear() - removes all the cached values")
+    public void clear() {
+        cache().clear();
+    }
+
+    @Procedure("apoc.cache.stats")
+    @Description("apoc.cache.stats() - returns the size of the cache, its limits and the number of hits, misses, loads, evictions and expirations")
+    public Stream<MapResult> stats() {
+        return Stream.of(new MapResult(cache().stats()));
+    }
+}
@@ -11,6 +11,7 @@ import org.neo4j.procedure.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 /**
@@ -26,7 +27,7 @@ public class Static {
     @Context
     public ApocConfig apocConfig;
 
-    private static Map<String,Object> storage = new HashMap<>();
+    private static Map<String,Object> storage = new ConcurrentHashMap<>();
 
     @Procedure("apoc.static.get")
     @Deprecated
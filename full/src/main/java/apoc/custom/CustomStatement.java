@@ -0,0 +1,125 @@
+package apoc.custom;
+
+import org.neo4j.internal.kernel.api.procs.FieldSignature;
+import org.neo4j.values.AnyValue;
+import org.neo4j.values.ValueMapper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static apoc.custom.CypherProceduresHandler.DEFAULT_INPUTS;
+
+/**
+ * The execution state of a registered custom procedure or function, computed once at registration instead of on
+ * every call: the statement, the names of its parameters, and the invocation counts and latencies.
+ */
+class CustomStatement {
+
+    /** upper bounds of the latency buckets, in microseconds, the last bucket is unbounded */
+    private static final long[] BUCKETS = {100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+    private static final String[] BUCKET_NAMES = {"<100us", "<1ms", "<10ms", "<100ms", "<1s", "<10s", ">=10s"};
+
+    private final String key;
+    private final String statement;
+    /** null when the statement takes the default map of parameters */
+    private final String[] inputNames;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] latencies = new LongAdder[BUCKET_NAMES.length];
+    private volatile String error;
+
+    CustomStatement(String key, String statement, List<FieldSignature> inputs) {
+        this.key = key;
+        this.statement = statement;
+        this.inputNames = inputs == null || inputs.isEmpty() || inputs.equals(DEFAULT_INPUTS) ? null :
+                inputs.stream().map(FieldSignature::name).toArray(String[]::new);
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param key identifies the signature and the options of the registration
+     * @return true if this was registered with the same signature, options and statement
+     */
+    boolean matches(String key, String statement) {
+        return this.key.equals(key) && this.statement.equals(statement);
+    }
+
+    String getStatement() {
+        return statement;
+    }
+
+    Map<String, Object> params(AnyValue[] input, ValueMapper valueMapper) {
+        if (input == null || input.length == 0) return Collections.emptyMap();
+        if (inputNames == null) return (Map<String, Object>) input[0].map(valueMapper);
+        Map<String, Object> params = new HashMap<>(input.length * 4 / 3 + 1);
+        for (int i = 0; i < input.length; i++) {
+            params.put(inputNames[i], input[i].map(valueMapper));
+        }
+        return params;
+    }
+
+    void record(long start, boolean failed) {
+        long nanos = System.nanoTime() - start;
+        calls.increment();
+        if (failed) errors.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = 0;
+        while (bucket < BUCKETS.length && micros >= BUCKETS[bucket]) {
+            bucket++;
+        }
+        latencies[bucket].increment();
+    }
+
+    /**
+     * @param error the reason why the statement could not be planned, null if it was
+     */
+    void setError(String error) {
+        this.error = error;
+    }
+
+    String getError() {
+        return error;
+    }
+
+    long getCalls() {
+        return calls.sum();
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+
+    long getTotalTime() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos.sum());
+    }
+
+    double getMeanTime() {
+        long calls = this.calls.sum();
+        return calls == 0 ? 0 : totalNanos.sum() / (calls * 1_000_000D);
+    }
+
+    double getMaxTime() {
+        return maxNanos.get() / 1_000_000D;
+    }
+
+    Map<String, Object> getLatencies() {
+        Map<String, Object> result = new LinkedHashMap<>(BUCKET_NAMES.length * 2);
+        for (int i = 0; i < BUCKET_NAMES.length; i++) {
+            result.put(BUCKET_NAMES[i], latencies[i].sum());
+        }
+        return result;
+    }
+}
@@ -7,6 +7,7 @@ import org.neo4j.internal.kernel.api.procs.ProcedureSignature;
 import org.neo4j.internal.kernel.api.procs.UserFunctionSignature;
 import org.neo4j.internal.kernel.api.procs.FieldSignature;
 import org.neo4j.internal.kernel.api.procs.Neo4jTypes;
+import org.neo4j.internal.kernel.api.procs.QualifiedName;
 import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
@@ -19,6 +20,7 @@ import org.neo4j.procedure.Mode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Stream;
 
@@ -133,6 +135,14 @@ public class CypherProcedures {
         });
     }
 
+    @Procedure(value = "apoc.custom.stats", mode = Mode.READ)
+    @Description("apoc.custom.stats() - provide the number of calls, the latencies and the planning errors of the custom procedures/functions registered")
+    public Stream<CustomProcedureStats> stats() {
+        return Stream.concat(
+                cypherProceduresHandler.getProcedureStatements().entrySet().stream().map(e -> new CustomProcedureStats(PROCEDURE, e.getKey(), e.getValue())),
+                cypherProceduresHandler.getFunctionStatements().entrySet().stream().map(e -> new CustomProcedureStats(FUNCTION, e.getKey(), e.getValue())));
+    }
+
     @Procedure(value = "apoc.custom.removeProcedure", mode = Mode.WRITE)
     @Description("apoc.custom.removeProcedure(name) - remove the targeted custom procedure")
     public void removeProcedure(@Name("name") String name) {
@@ -190,4 +200,28 @@ public class CypherProcedures {
         }
     }
 
+    public static class CustomProcedureStats {
+        public String type;
+        public String name;
+        public long calls;
+        public long errors;
+        public long totalTime;
+        public double meanTime;
+        public double maxTime;
+        public Map<String, Object> latencies;
+        public String error;
+
+        CustomProcedureStats(String type, QualifiedName name, CustomStatement statement) {
+            this.type = type;
+            this.name = name.toString().substring(PREFIX.length() + 1);
+            this.calls = statement.getCalls();
+            this.errors = statement.getErrors();
+            this.totalTime = statement.getTotalTime();
+            this.meanTime = statement.getMeanTime();
+            this.maxTime = statement.getMaxTime();
+            this.latencies = statement.getLatencies();
+            this.error = statement.getError();
+        }
+    }
+
 }
@@ -6,6 +6,7 @@ import apoc.SystemPropertyKeys;
 import apoc.util.JsonUtil;
 import apoc.util.Util;
 import org.neo4j.collection.RawIterator;
+import org.neo4j.dbms.api.DatabaseManagementService;
 import org.neo4j.function.ThrowingFunction;
 import org.neo4j.graphdb.Entity;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -14,6 +15,10 @@ import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.QueryExecutionException;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
 import org.neo4j.internal.helpers.collection.Iterators;
 import org.neo4j.internal.helpers.collection.Pair;
 import org.neo4j.internal.kernel.api.exceptions.ProcedureException;
@@ -52,7 +57,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -60,6 +67,7 @@ import java.util.stream.Stream;
 import static apoc.ApocConfig.apocConfig;
 import static java.util.Collections.emptySet;
 import static java.util.Collections.singletonList;
+import static org.neo4j.configuration.GraphDatabaseSettings.SYSTEM_DATABASE_NAME;
 import static org.neo4j.internal.helpers.collection.MapUtil.map;
 import static org.neo4j.internal.kernel.api.procs.Neo4jTypes.AnyType;
 import static org.neo4j.internal.kernel.api.procs.Neo4jTypes.NTAny;
@@ -92,6 +100,7 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
     public static final List<FieldSignature> DEFAULT_MAP_OUTPUT = singletonList(FieldSignature.inputField("row", NTMap));
 
     private final GraphDatabaseAPI api;
+    private final DatabaseManagementService databaseManagementService;
     private final Log log;
     private final GraphDatabaseService systemDb;
     private final GlobalProcedures globalProceduresRegistry;
@@ -100,12 +109,17 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
     private final ThrowingFunction<Context, Transaction, ProcedureException> transactionComponentFunction;
     private final Set<ProcedureSignature> registeredProcedureSignatures = Collections.synchronizedSet(new HashSet<>());
     private final Set<UserFunctionSignature> registeredUserFunctionSignatures = Collections.synchronizedSet(new HashSet<>());
+    private final Map<QualifiedName, CustomStatement> procedureStatements = new ConcurrentHashMap<>();
+    private final Map<QualifiedName, CustomStatement> functionStatements = new ConcurrentHashMap<>();
     private static Group REFRESH_GROUP = Group.STORAGE_MAINTENANCE;
     private JobHandle restoreProceduresHandle;
+    private final SystemDbListener systemDbListener = new SystemDbListener();
+    private final AtomicBoolean restorePending = new AtomicBoolean();
 
 
-    public CypherProceduresHandler(GraphDatabaseAPI db, JobScheduler jobScheduler, ApocConfig apocConfig, Log userLog, GlobalProcedures globalProceduresRegistry) {
+    public CypherProceduresHandler(GraphDatabaseAPI db, DatabaseManagementService databaseManagementService, JobScheduler jobScheduler, ApocConfig apocConfig, Log userLog, GlobalProcedures globalProceduresRegistry) {
         this.api = db;
+        this.databaseManagementService = databaseManagementService;
         this.log = userLog;
         this.jobScheduler = jobScheduler;
         this.systemDb = apocConfig.getSystemDb();
@@ -117,6 +131,8 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
     @Override
     public void available() {
         restoreProceduresAndFunctions();
+        databaseManagementService.registerTransactionEventListener(SYSTEM_DATABASE_NAME, systemDbListener);
+        // the listener only sees the changes committed on this instance, polling picks up the ones replicated in a cluster
         long refreshInterval = apocConfig().getInt(CUSTOM_PROCEDURES_REFRESH, 60000);
         restoreProceduresHandle = jobScheduler.scheduleRecurring(REFRESH_GROUP, () -> {
             if (getLastUpdate() > lastUpdate) {
@@ -130,6 +146,72 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         if (restoreProceduresHandle != null) {
             restoreProceduresHandle.cancel();
         }
+        try {
+            databaseManagementService.unregisterTransactionEventListener(SYSTEM_DATABASE_NAME, systemDbListener);
+        } catch (Exception e) {
+            // not registered or the system database is already shut down
+        }
+    }
+
+    /**
+     * Restores the procedures and functions on a scheduler thread, once for all the changes notified meanwhile
+     */
+    private void scheduleRestore() {
+        if (restorePending.compareAndSet(false, true)) {
+            jobScheduler.schedule(REFRESH_GROUP, () -> {
+                restorePending.set(false);
+                try {
+                    restoreProceduresAndFunctions();
+                } catch (Exception e) {
+                    log.warn("Could not restore the custom procedures and functions: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Notifies the changes of the custom procedures and functions of this database stored in the system database,
+     * ignoring the other nodes of the system database, like the ones of the checkpoints, updated far more often
+     */
+    private class SystemDbListener implements TransactionEventListener<Boolean> {
+        @Override
+        public Boolean beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+            for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+                Node node = entry.entity();
+                if (entry.key().equals(SystemPropertyKeys.lastUpdated.name())
+                        && (node.hasLabel(SystemLabels.ApocCypherProceduresMeta) || node.hasLabel(SystemLabels.ApocCypherProcedures))
+                        && api.databaseName().equals(node.getProperty(SystemPropertyKeys.database.name(), null))) {
+                    return true;
+                }
+            }
+            for (LabelEntry entry : data.removedLabels()) {
+                if (entry.label().equals(SystemLabels.ApocCypherProcedures) && isOfThisDatabase(data, entry.node())) return true;
+            }
+            return false;
+        }
+
+        private boolean isOfThisDatabase(TransactionData data, Node node) {
+            if (data.isDeleted(node)) {
+                for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+                    if (entry.entity().getId() == node.getId() && entry.key().equals(SystemPropertyKeys.database.name())) {
+                        return api.databaseName().equals(entry.previouslyCommittedValue());
+                    }
+                }
+                return false;
+            }
+            return api.databaseName().equals(node.getProperty(SystemPropertyKeys.database.name(), null));
+        }
+
+        @Override
+        public void afterCommit(TransactionData data, Boolean changed, GraphDatabaseService databaseService) {
+            if (Boolean.TRUE.equals(changed)) {
+                scheduleRestore();
+            }
+        }
+
+        @Override
+        public void afterRollback(TransactionData data, Boolean changed, GraphDatabaseService databaseService) {
+        }
     }
 
     public Mode mode(String s) {
@@ -203,13 +285,21 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         ), statement, forceSingle);
     }
 
-    public void restoreProceduresAndFunctions() {
+    /**
+     * Registers the procedures and functions that changed in the system database since the last restore, and
+     * de-registers the removed ones
+     */
+    public synchronized void restoreProceduresAndFunctions() {
         lastUpdate = System.currentTimeMillis();
         Set<ProcedureSignature> currentProceduresToRemove = new HashSet<>(registeredProcedureSignatures);
         Set<UserFunctionSignature> currentUserFunctionsToRemove = new HashSet<>(registeredUserFunctionSignatures);
+        List<ProcedureOrFunctionDescriptor> changed = new ArrayList<>();
 
         readSignatures().forEach(descriptor -> {
-            descriptor.register();
+            if (!descriptor.isRegistered()) {
+                descriptor.register();
+                changed.add(descriptor);
+            }
             if (descriptor instanceof ProcedureDescriptor) {
                 ProcedureSignature signature = ((ProcedureDescriptor) descriptor).getSignature();
                 currentProceduresToRemove.remove(signature);
@@ -223,7 +313,12 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         currentProceduresToRemove.forEach(signature -> registerProcedure(signature, null));
         currentUserFunctionsToRemove.forEach(signature -> registerFunction(signature, null, false));
 
+        if (changed.isEmpty() && currentProceduresToRemove.isEmpty() && currentUserFunctionsToRemove.isEmpty()) {
+            return;
+        }
+        // the cached plans of the queries calling them refer to the previous registrations
         api.executeTransactionally("call db.clearQueryCaches()");
+        changed.forEach(ProcedureOrFunctionDescriptor::plan);
     }
 
     private <T> T withSystemDb(Function<Transaction, T> action) {
@@ -251,6 +346,7 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
             registerFunction(signature, statement, forceSingle);
             return null;
         });
+        plan(functionStatements.get(signature.name()), signature.name(), signature.inputSignature());
     }
 
     public void storeProcedure(ProcedureSignature signature, String statement) {
@@ -269,6 +365,58 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
             registerProcedure(signature, statement);
             return null;
         });
+        plan(procedureStatements.get(signature.name()), signature.name(), signature.inputSignature());
+    }
+
+    /**
+     * Checks that the statement can be planned and caches its plan, by explaining it with parameters of the types of
+     * the inputs, as the plans are cached by parameter types. A statement that can't be planned is still registered,
+     * as it may depend on something not available yet, and its error is reported by <code>apoc.custom.stats</code>.
+     */
+    private void plan(CustomStatement custom, QualifiedName name, List<FieldSignature> inputs) {
+        if (custom == null) return;
+        try (Transaction tx = api.beginTx()) {
+            tx.execute("EXPLAIN " + custom.getStatement(), sampleParams(inputs)).close();
+            custom.setError(null);
+        } catch (Exception e) {
+            custom.setError(e.getMessage());
+            log.warn("Could not plan the statement of " + name + ": " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> sampleParams(List<FieldSignature> inputs) {
+        if (inputs == null || inputs.isEmpty() || inputs.equals(DEFAULT_INPUTS)) return Collections.emptyMap();
+        Map<String, Object> params = new HashMap<>();
+        for (FieldSignature input : inputs) {
+            params.put(input.name(), input.defaultValue().map(DefaultParameterValue::value).orElseGet(() -> sampleValue(input.neo4jType())));
+        }
+        return params;
+    }
+
+    private Object sampleValue(AnyType type) {
+        if (type.equals(NTInteger)) return 0L;
+        if (type.equals(NTFloat)) return 0D;
+        if (type.equals(NTString)) return "";
+        if (type.equals(NTBoolean)) return false;
+        if (type.getClass().equals(Neo4jTypes.MapType.class)) return Collections.emptyMap();
+        if (type instanceof Neo4jTypes.ListType) return Collections.emptyList();
+        return null;
+    }
+
+    Map<QualifiedName, CustomStatement> getProcedureStatements() {
+        return Collections.unmodifiableMap(procedureStatements);
+    }
+
+    Map<QualifiedName, CustomStatement> getFunctionStatements() {
+        return Collections.unmodifiableMap(functionStatements);
+    }
+
+    private static String key(ProcedureSignature signature) {
+        return signature + " " + signature.mode() + " " + signature.description().orElse("");
+    }
+
+    private static String key(UserFunctionSignature signature, boolean forceSingle) {
+        return signature + " " + forceSingle + " " + signature.description().orElse("");
     }
 
     private String serializeSignatures(List<FieldSignature> signatures) {
@@ -335,6 +483,15 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
     public boolean registerProcedure(ProcedureSignature signature, String statement) {
         try {
             final boolean isStatementNull = statement == null;
+            final String key = key(signature);
+            CustomStatement registered = procedureStatements.get(signature.name());
+            if (!isStatementNull && registered != null && registered.matches(key, statement)) {
+                return true;
+            }
+            final CustomStatement custom = isStatementNull ? null : new CustomStatement(key, statement, signature.inputSignature());
+            List<FieldSignature> outputs = signature.outputSignature();
+            final String[] names = outputs == null ? null : outputs.stream().map(FieldSignature::name).toArray(String[]::new);
+            final boolean defaultOutputs = outputs == null || outputs.equals(DEFAULT_MAP_OUTPUT);
             globalProceduresRegistry.register(new CallableProcedure.BasicProcedure(signature) {
                 @Override
                 public RawIterator<AnyValue[], ProcedureException> apply(org.neo4j.kernel.api.procedure.Context ctx, AnyValue[] input, ResourceTracker resourceTracker) throws ProcedureException {
@@ -343,24 +500,56 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
                                 "Please ensure you've spelled the procedure name correctly and that the procedure is properly deployed.", signature.name());
                         throw new QueryExecutionException(error, null, "Neo.ClientError.Statement.SyntaxError");
                     } else {
-                        Map<String, Object> params = params(input, signature.inputSignature(), ctx.valueMapper());
-                        Transaction tx = transactionComponentFunction.apply(ctx);
-                        Result result = tx.execute(statement, params);
-                        resourceTracker.registerCloseableResource(result);
-
-                        List<FieldSignature> outputs = signature.outputSignature();
-                        String[] names = outputs == null ? null : outputs.stream().map(FieldSignature::name).toArray(String[]::new);
-                        boolean defaultOutputs = outputs == null || outputs.equals(DEFAULT_MAP_OUTPUT);
-
-                        Stream<AnyValue[]> stream = result.stream().map(row -> toResult(row, names, defaultOutputs));
-                        return Iterators.asRawIterator(stream);
+                        long start = System.nanoTime();
+                        try {
+                            Transaction tx = transactionComponentFunction.apply(ctx);
+                            Result result = tx.execute(statement, custom.params(input, ctx.valueMapper()));
+                            resourceTracker.registerCloseableResource(result);
+                            return new RawIterator<AnyValue[], ProcedureException>() {
+                                private boolean done;
+
+                                @Override
+                                public boolean hasNext() {
+                                    try {
+                                        boolean hasNext = result.hasNext();
+                                        if (!hasNext) done(false);
+                                        return hasNext;
+                                    } catch (RuntimeException e) {
+                                        done(true);
+                                        throw e;
+                                    }
+                                }
+
+                                @Override
+                                public AnyValue[] next() {
+                                    try {
+                                        return toResult(result.next(), names, defaultOutputs);
+                                    } catch (RuntimeException e) {
+                                        done(true);
+                                        throw e;
+                                    }
+                                }
+
+                                private void done(boolean failed) {
+                                    if (!done) {
+                                        done = true;
+                                        custom.record(start, failed);
+                                    }
+                                }
+                            };
+                        } catch (RuntimeException | ProcedureException e) {
+                            custom.record(start, true);
+                            throw e;
+                        }
                     }
                 }
             }, true);
             if (isStatementNull) {
                 registeredProcedureSignatures.remove(signature);
+                procedureStatements.remove(signature.name());
             } else {
                 registeredProcedureSignatures.add(signature);
+                procedureStatements.put(signature.name(), custom);
             }
             return true;
         } catch (Exception e) {
@@ -369,9 +558,32 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         }
     }
 
+    /**
+     * How the rows of the statement of a function are turned into its result
+     */
+    private enum FunctionOutput {
+        ANY, LIST_OF_MAP, LIST, MAP, SINGLE;
+
+        static FunctionOutput of(AnyType outType, boolean forceSingle) {
+            if (outType.equals(NTAny)) return ANY;
+            // We wrap the result only if we have a "true" map, and not NodeType or RelationshipType that extends MapType
+            if (!forceSingle && outType instanceof Neo4jTypes.ListType) {
+                return ((Neo4jTypes.ListType) outType).innerType().getClass().equals(Neo4jTypes.MapType.class) ? LIST_OF_MAP : LIST;
+            }
+            return outType.getClass().equals(Neo4jTypes.MapType.class) ? MAP : SINGLE;
+        }
+    }
+
     public boolean registerFunction(UserFunctionSignature signature, String statement, boolean forceSingle) {
         try {
             final boolean isStatementNull = statement == null;
+            final String key = key(signature, forceSingle);
+            CustomStatement registered = functionStatements.get(signature.name());
+            if (!isStatementNull && registered != null && registered.matches(key, statement)) {
+                return true;
+            }
+            final CustomStatement custom = isStatementNull ? null : new CustomStatement(key, statement, signature.inputSignature());
+            final FunctionOutput output = FunctionOutput.of(signature.outputType(), forceSingle);
             globalProceduresRegistry.register(new CallableUserFunction.BasicUserFunction(signature) {
                 @Override
                 public AnyValue apply(org.neo4j.kernel.api.procedure.Context ctx, AnyValue[] input) throws ProcedureException {
@@ -379,33 +591,18 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
                         final String error = String.format("Unknown function '%s'", signature.name());
                         throw new QueryExecutionException(error, null, "Neo.ClientError.Statement.SyntaxError");
                     } else {
-                        Map<String, Object> params = params(input, signature.inputSignature(), ctx.valueMapper());
-                        AnyType outType = signature.outputType();
-
-                        Transaction tx = transactionComponentFunction.apply(ctx);
-                        try (Result result = tx.execute(statement, params)) {
+                        long start = System.nanoTime();
+                        boolean failed = true;
+                        try {
+                            Transaction tx = transactionComponentFunction.apply(ctx);
+                            try (Result result = tx.execute(statement, custom.params(input, ctx.valueMapper()))) {
 //                resourceTracker.registerCloseableResource(result); // TODO
-                            if (!result.hasNext()) return null;
-                            if (outType.equals(NTAny)) {
-                                return ValueUtils.of(result.stream().collect(Collectors.toList()));
-                            }
-                            List<String> cols = result.columns();
-                            if (cols.isEmpty()) return null;
-                            if (!forceSingle && outType instanceof Neo4jTypes.ListType) {
-                                Neo4jTypes.ListType listType = (Neo4jTypes.ListType) outType;
-                                Neo4jTypes.AnyType innerType = listType.innerType();
-                                // We wrap the result only if we have a "true" map, and not NodeType or RelationshipType that extends MapType
-                                if (innerType.getClass().equals(Neo4jTypes.MapType.class))
-                                    return ValueUtils.of(result.stream().collect(Collectors.toList()));
-                                if (cols.size() == 1)
-                                    return ValueUtils.of(result.stream().map(row -> row.get(cols.get(0))).collect(Collectors.toList()));
-                            } else {
-                                Map<String, Object> row = result.next();
-                                // We wrap the result only if we have a "true" map, and not NodeType or RelationshipType that extends MapType
-                                if (outType.getClass().equals(Neo4jTypes.MapType.class)) return ValueUtils.of(row);
-                                if (cols.size() == 1) return ValueUtils.of(row.get(cols.get(0)));
+                                AnyValue value = toResult(result, output, signature.outputType());
+                                failed = false;
+                                return value;
                             }
-                            throw new IllegalStateException("Result mismatch " + cols + " output type is " + outType);
+                        } finally {
+                            custom.record(start, failed);
                         }
                     }
 
@@ -413,8 +610,10 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
             }, true);
             if (isStatementNull) {
                 registeredUserFunctionSignatures.remove(signature);
+                functionStatements.remove(signature.name());
             } else {
                 registeredUserFunctionSignatures.add(signature);
+                functionStatements.put(signature.name(), custom);
             }
             return true;
         } catch (Exception e) {
@@ -423,6 +622,28 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         }
     }
 
+    private AnyValue toResult(Result result, FunctionOutput output, AnyType outType) {
+        if (!result.hasNext()) return null;
+        if (output == FunctionOutput.ANY) {
+            return ValueUtils.of(result.stream().collect(Collectors.toList()));
+        }
+        List<String> cols = result.columns();
+        if (cols.isEmpty()) return null;
+        switch (output) {
+            case LIST_OF_MAP:
+                return ValueUtils.of(result.stream().collect(Collectors.toList()));
+            case LIST:
+                if (cols.size() == 1)
+                    return ValueUtils.of(result.stream().map(row -> row.get(cols.get(0))).collect(Collectors.toList()));
+                break;
+            case MAP:
+                return ValueUtils.of(result.next());
+            default:
+                if (cols.size() == 1) return ValueUtils.of(result.next().get(cols.get(0)));
+        }
+        throw new IllegalStateException("Result mismatch " + cols + " output type is " + outType);
+    }
+
     public static QualifiedName qualifiedName(@Name("name") String name) {
         String[] names = name.split("\\.");
         List<String> namespace = new ArrayList<>(names.length);
@@ -655,6 +876,13 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         }
 
         abstract public void register();
+
+        /**
+         * @return true if it's registered with the same signature and statement
+         */
+        abstract public boolean isRegistered();
+
+        abstract void plan();
     }
 
     public class ProcedureDescriptor extends ProcedureOrFunctionDescriptor {
@@ -673,6 +901,17 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         public void register() {
             registerProcedure(getSignature(), getStatement());
         }
+
+        @Override
+        public boolean isRegistered() {
+            CustomStatement registered = procedureStatements.get(signature.name());
+            return registered != null && registered.matches(key(signature), getStatement());
+        }
+
+        @Override
+        void plan() {
+            CypherProceduresHandler.this.plan(procedureStatements.get(signature.name()), signature.name(), signature.inputSignature());
+        }
     }
 
     public class UserFunctionDescriptor extends ProcedureOrFunctionDescriptor {
@@ -697,5 +936,16 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         public void register() {
             registerFunction(getSignature(), getStatement(), isForceSingle());
         }
+
+        @Override
+        public boolean isRegistered() {
+            CustomStatement registered = functionStatements.get(signature.name());
+            return registered != null && registered.matches(key(signature, forceSingle), getStatement());
+        }
+
+        @Override
+        void plan() {
+            CypherProceduresHandler.this.plan(functionStatements.get(signature.name()), signature.name(), signature.inputSignature());
+        }
     }
 }
@@ -80,7 +80,7 @@ public class CypherExtended {
     }
 
     @Procedure(mode = WRITE)
-    @Description("apoc.cypher.runFiles([files or urls],[{statistics:true,timeout:10,parameters:{}}])) - runs each statement in the files, all semicolon separated")
+    @Description("apoc.cypher.runFiles([files or urls],[{statistics:true,timeout:10,parameters:{},parallel:false,batchSize:1000,concurrency,retries:0}])) - runs each statement in the files, all semicolon separated, with parallel:true runs batches of independent statements concurrently")
     public Stream<RowResult> runFiles(@Name("file") List<String> fileNames, @Name(value = "config",defaultValue = "{}") Map<String,Object> config) {
         @SuppressWarnings( "unchecked" )
         final Map<String,Object> parameters = (Map<String,Object>) config.getOrDefault("parameters",Collections.emptyMap());
@@ -92,11 +92,12 @@ public class CypherExtended {
         boolean addStatistics = Util.toBoolean(config.getOrDefault("statistics",true));
         int timeout = Util.toInteger(config.getOrDefault("timeout",10));
         int queueCapacity = Util.toInteger(config.getOrDefault("queueCapacity",100));
+        ParallelConfig parallel = !schemaOperation && Util.toBoolean(config.get("parallel")) ? new ParallelConfig(config) : null;
         List<Stream<RowResult>> result = new ArrayList<>();
         for (final String fileName : fileNames) {
             final Reader reader = readerForFile(fileName);
             final Scanner scanner = createScannerFor(reader);
-            final Stream<RowResult> stream = runManyStatements(scanner, parameters, schemaOperation, addStatistics, timeout, queueCapacity)
+            final Stream<RowResult> stream = runManyStatements(scanner, parameters, schemaOperation, addStatistics, timeout, queueCapacity, parallel)
                     .onClose(() -> Util.close(scanner, (e) -> log.info("Cannot close the scanner for file " + fileName + " because the following exception", e)));
             result.add(stream);
         }
@@ -117,10 +118,12 @@ public class CypherExtended {
         return runFiles(fileNames, config, parameters, schemaOperation);
     }
 
-    private Stream<RowResult> runManyStatements(Scanner scanner, Map<String, Object> params, boolean schemaOperation, boolean addStatistics, int timeout, int queueCapacity) {
+    private Stream<RowResult> runManyStatements(Scanner scanner, Map<String, Object> params, boolean schemaOperation, boolean addStatistics, int timeout, int queueCapacity, ParallelConfig parallel) {
         BlockingQueue<RowResult> queue = runInSeparateThreadAndSendTombstone(queueCapacity, internalQueue -> {
             if (schemaOperation) {
                 runSchemaStatementsInTx(scanner, internalQueue, params, addStatistics, timeout);
+            } else if (parallel != null) {
+                runDataStatementsInParallel(scanner, internalQueue, params, addStatistics, parallel);
             } else {
                 runDataStatementsInTx(scanner, internalQueue, params, addStatistics, timeout);
             }
@@ -171,6 +174,157 @@ public class CypherExtended {
         }
     }
 
+    private static class ParallelConfig {
+        final int batchSize;
+        final int concurrency;
+        final long retries;
+
+        ParallelConfig(Map<String, Object> config) {
+            this.batchSize = Util.toInteger(config.getOrDefault("batchSize", 1000));
+            this.concurrency = Util.toInteger(config.getOrDefault("concurrency", Runtime.getRuntime().availableProcessors()));
+            this.retries = Util.toLong(config.getOrDefault("retries", 0));
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize must be positive, got " + batchSize);
+            }
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("concurrency must be positive, got " + concurrency);
+            }
+        }
+    }
+
+    /**
+     * Runs consecutive data statements in batches of <code>batchSize</code> statements per transaction, up to
+     * <code>concurrency</code> batches at a time. The statements of a <code>:begin/:commit</code> block run in a
+     * single transaction. Schema and periodic commit statements, and <code>:begin/:commit</code> blocks, are
+     * barriers: the batches before them complete before they run, and the ones after them start once they are done.
+     * A statement that reads the graph (<code>MATCH</code>, <code>MERGE</code> or <code>CALL</code>) is a barrier too
+     * when a batch in flight writes, as it could depend on those writes, or duplicate them in the case of
+     * <code>MERGE</code>, and so is a statement that writes when a batch in flight reads, as that batch could
+     * otherwise see, or delete, what the statement writes.
+     * The rows of a batch are queued once it is committed, so that a retried batch doesn't return them twice.
+     */
+    private void runDataStatementsInParallel(Scanner scanner, BlockingQueue<RowResult> queue, Map<String, Object> params, boolean addStatistics, ParallelConfig config) {
+        List<Future<Void>> inFlight = new ArrayList<>(config.concurrency);
+        List<String> batch = new ArrayList<>(config.batchSize);
+        List<String> block = null;
+        boolean writesInFlight = false;
+        boolean readsInFlight = false;
+        while (scanner.hasNext()) {
+            terminationGuard.check();
+            List<String> commands = new ArrayList<>();
+            String stmt = shellControlCommands(scanner.next(), commands);
+            for (String command : commands) {
+                switch (command) {
+                    case "begin":
+                        submitBatch(batch, inFlight, queue, params, addStatistics, config);
+                        batch = new ArrayList<>(config.batchSize);
+                        waitForBatches(inFlight);
+                        writesInFlight = readsInFlight = false;
+                        block = new ArrayList<>();
+                        break;
+                    case "commit":
+                        if (block != null) {
+                            submitBatch(block, inFlight, queue, params, addStatistics, config);
+                            waitForBatches(inFlight);
+                            writesInFlight = readsInFlight = false;
+                        }
+                        block = null;
+                        break;
+                    case "rollback":
+                        block = null;
+                        break;
+                }
+            }
+            if (stmt.trim().isEmpty()) continue;
+            if (isSchemaOperation(stmt)) {
+                // skipped as in runDataStatementsInTx, but still orders the statements around it
+                submitBatch(batch, inFlight, queue, params, addStatistics, config);
+                batch = new ArrayList<>(config.batchSize);
+                waitForBatches(inFlight);
+                writesInFlight = readsInFlight = false;
+            } else if (isPeriodicOperation(stmt)) {
+                submitBatch(batch, inFlight, queue, params, addStatistics, config);
+                batch = new ArrayList<>(config.batchSize);
+                waitForBatches(inFlight);
+                writesInFlight = readsInFlight = false;
+                Util.inThread(pools, () -> db.executeTransactionally(stmt, params, result -> consumeResult(result, queue, addStatistics, 0)));
+            } else if (block != null) {
+                block.add(stmt);
+            } else {
+                if (writesInFlight && READS_GRAPH.matcher(stmt).find() || readsInFlight && WRITES_GRAPH.matcher(stmt).find()) {
+                    waitForBatches(inFlight);
+                    writesInFlight = readsInFlight = false;
+                }
+                batch.add(stmt);
+                if (batch.size() == config.batchSize) {
+                    writesInFlight |= batch.stream().anyMatch(statement -> WRITES_GRAPH.matcher(statement).find());
+                    readsInFlight |= batch.stream().anyMatch(statement -> READS_GRAPH.matcher(statement).find());
+                    submitBatch(batch, inFlight, queue, params, addStatistics, config);
+                    batch = new ArrayList<>(config.batchSize);
+                }
+            }
+        }
+        if (block != null) {
+            // an unterminated block is committed, as the statements outside of blocks are
+            batch.addAll(block);
+        }
+        submitBatch(batch, inFlight, queue, params, addStatistics, config);
+        waitForBatches(inFlight);
+    }
+
+    private void submitBatch(List<String> statements, List<Future<Void>> inFlight, BlockingQueue<RowResult> queue, Map<String, Object> params, boolean addStatistics, ParallelConfig config) {
+        if (statements.isEmpty()) return;
+        if (inFlight.size() >= config.concurrency) {
+            waitFor(inFlight.remove(0));
+        }
+        inFlight.add(pools.getDefaultExecutorService().submit(() -> {
+            List<RowResult> rows = Util.retryInTx(log, db, txInThread -> {
+                List<RowResult> batchRows = new ArrayList<>();
+                for (String stmt : statements) {
+                    try (Result result = txInThread.execute(stmt, params)) {
+                        collectResult(result, batchRows, addStatistics);
+                    }
+                }
+                return batchRows;
+            }, 0, config.retries, retry -> {});
+            for (RowResult row : rows) {
+                queue.put(row);
+            }
+            return null;
+        }));
+    }
+
+    private void waitForBatches(List<Future<Void>> inFlight) {
+        for (Future<Void> future : inFlight) {
+            waitFor(future);
+        }
+        inFlight.clear();
+    }
+
+    private void waitFor(Future<Void> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running the statements", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error running a batch of statements: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * @param commands filled with the shell commands at the beginning of the statement, in order
+     * @return the statement without them
+     */
+    private String shellControlCommands(String stmt, List<String> commands) {
+        Matcher matcher = shellControl.matcher(stmt.trim());
+        if (matcher.find()) {
+            commands.add(matcher.group(1).toLowerCase());
+            return shellControlCommands(stmt.trim().substring(matcher.end()), commands);
+        }
+        return stmt;
+    }
+
     private Scanner createScannerFor(Reader reader) {
         Scanner scanner = new Scanner(reader);
         scanner.useDelimiter(";\r?\n");
@@ -192,6 +346,8 @@ public class CypherExtended {
     }
 
     private final static Pattern shellControl = Pattern.compile("^:?\\b(begin|commit|rollback)\\b", Pattern.CASE_INSENSITIVE);
+    private final static Pattern READS_GRAPH = Pattern.compile("\\b(MATCH|MERGE|CALL)\\b", Pattern.CASE_INSENSITIVE);
+    private final static Pattern WRITES_GRAPH = Pattern.compile("\\b(CREATE|MERGE|SET|DELETE|REMOVE|CALL)\\b", Pattern.CASE_INSENSITIVE);
 
     private Object consumeResult(Result result, BlockingQueue<RowResult> queue, boolean addStatistics, long timeout) {
         try {
@@ -210,6 +366,17 @@ public class CypherExtended {
         }
     }
 
+    private void collectResult(Result result, List<RowResult> rows, boolean addStatistics) {
+        long time = System.currentTimeMillis();
+        int row = 0;
+        while (result.hasNext()) {
+            rows.add(new RowResult(row++, result.next()));
+        }
+        if (addStatistics) {
+            rows.add(new RowResult(-1, toMap(result.getQueryStatistics(), System.currentTimeMillis() - time, row)));
+        }
+    }
+
     private String removeShellControlCommands(String stmt) {
         Matcher matcher = shellControl.matcher(stmt.trim());
         if (matcher.find()) {
@@ -315,25 +482,17 @@ public class CypherExtended {
                 .map(MapResult::new);
     }
     @Procedure
-    @Description("apoc.cypher.mapParallel2(fragment, params, list-to-parallelize) yield value - executes fragment in parallel batches with the list segments being assigned to _")
-    public Stream<MapResult> mapParallel2(@Name("fragment") String fragment, @Name("params") Map<String, Object> params, @Name("list") List<Object> data, @Name("partitions") long partitions,@Name(value = "timeout",defaultValue = "10") long timeout) {
+    @Description("apoc.cypher.mapParallel2(fragment, params, list-to-parallelize, partitions, timeout = 10, {concurrency, bufferSize, ordered: false}) yield value - executes fragment in parallel batches with the list segments being assigned to _, streaming the rows")
+    public Stream<MapResult> mapParallel2(@Name("fragment") String fragment, @Name("params") Map<String, Object> params, @Name("list") List<Object> data, @Name("partitions") long partitions,@Name(value = "timeout",defaultValue = "10") long timeout,
+                                          @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         final String statement = withParamsAndIterator(fragment, params.keySet(), "_");
-        tx.execute("EXPLAIN " + statement).close();
-        BlockingQueue<RowResult> queue = new ArrayBlockingQueue<>(100000);
-        Stream<List<Object>> parallelPartitions = Util.partitionSubList(data, (int)(partitions <= 0 ? PARTITIONS : partitions), null);
-        Util.inFuture(pools, () -> {
-            long total = parallelPartitions
-                .map((List<Object> partition) -> {
-                    try {
-                        try (Result result = tx.execute(statement, parallelParams(params, "_", partition))) {
-                            return consumeResult(result, queue, false, timeout);
-                        }
-                    } catch (Exception e) {throw new RuntimeException(e);}}
-                ).count();
-            queue.put(RowResult.TOMBSTONE);
-            return total;
-        });
-        return StreamSupport.stream(new QueueBasedSpliterator<>(queue, RowResult.TOMBSTONE, terminationGuard, (int)timeout),true).map((rowResult) -> new MapResult(rowResult.result));
+        int batchSize = Math.max((int) Math.ceil((double) data.size() / (partitions <= 0 ? PARTITIONS : partitions)), 1);
+        Map<String, Object> executorConfig = new HashMap<>(config);
+        executorConfig.putIfAbsent("timeout", timeout);
+        return new ParallelCypherExecutor(db, tx, statement, ParallelCypherExecutor.batches(data.iterator(), batchSize),
+                partition -> parallelParams(params, "_", partition), executorConfig, false, terminationGuard)
+                .start(pools.getDefaultExecutorService())
+                .map(MapResult::new);
     }
 
     public Map<String, Object> parallelParams(@Name("params") Map<String, Object> params, String key, List<Object> partition) {
@@ -345,7 +504,9 @@ public class CypherExtended {
     }
 
     @Procedure
-    public Stream<MapResult> parallel2(@Name("fragment") String fragment, @Name("params") Map<String, Object> params, @Name("parallelizeOn") String key) {
+    @Description("apoc.cypher.parallel2(fragment, params, parallelizeOn, {concurrency, bufferSize, ordered: true, timeout}) yield value - executes fragment in parallel batches of the values of the parallelizeOn parameter, streaming the rows")
+    public Stream<MapResult> parallel2(@Name("fragment") String fragment, @Name("params") Map<String, Object> params, @Name("parallelizeOn") String key,
+                                       @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (params == null) return Cypher.runCypherQuery(tx, fragment, params);
         if (key == null || !params.containsKey(key))
             throw new RuntimeException("Can't parallelize on key " + key + " available keys " + params.keySet());
@@ -354,35 +515,13 @@ public class CypherExtended {
             throw new RuntimeException("Can't parallelize a non collection " + key + " : " + value);
 
         final String statement = withParamsAndIterator(fragment, params.keySet(), key);
-        tx.execute("EXPLAIN " + statement).close();
         Collection<Object> coll = (Collection<Object>) value;
-        int total = coll.size();
-        int partitions = PARTITIONS;
-        int batchSize = Math.max(total / partitions, 1);
-        if (batchSize > MAX_BATCH) {
-            batchSize = MAX_BATCH;
-            partitions = (total / batchSize) + 1;
-        }
+        int batchSize = Math.min(Math.max(coll.size() / PARTITIONS, 1), MAX_BATCH);
 
-        List<Future<List<Map<String, Object>>>> futures = new ArrayList<>(partitions);
-        List<Object> partition = new ArrayList<>(batchSize);
-        for (Object o : coll) {
-            partition.add(o);
-            if (partition.size() == batchSize) {
-                futures.add(submit(db, statement, params, key, partition, terminationGuard));
-                partition = new ArrayList<>(batchSize);
-            }
-        }
-        if (!partition.isEmpty()) {
-            futures.add(submit(db, statement, params, key, partition, terminationGuard));
-        }
-        return futures.stream().flatMap(f -> {
-            try {
-                return f.get().stream().map(MapResult::new);
-            } catch (InterruptedException | ExecutionException e) {
-                throw new RuntimeException("Error executing in parallel " + statement, e);
-            }
-        });
+        return new ParallelCypherExecutor(db, tx, statement, ParallelCypherExecutor.batches(coll.iterator(), batchSize),
+                partition -> parallelParams(params, key, partition), config, true, terminationGuard)
+                .start(pools.getDefaultExecutorService())
+                .map(MapResult::new);
     }
 
     public static String withParamsAndIterator(String fragment, Collection<String> params, String iterator) {
@@ -392,13 +531,4 @@ public class CypherExtended {
         if (noIterator) return with + fragment;
         return with + " UNWIND " + param(iterator) + " AS " + quote(iterator) + ' ' + fragment;
     }
-
-    private Future<List<Map<String, Object>>> submit(GraphDatabaseService db, String statement, Map<String, Object> params, String key, List<Object> partition, TerminationGuard terminationGuard) {
-        return pools.getDefaultExecutorService().submit(
-                () -> {
-                    terminationGuard.check();
-                    return db.executeTransactionally(statement, parallelParams(params, key, partition), result -> Iterators.asList(result));
-                }
-        );
-    }
 }
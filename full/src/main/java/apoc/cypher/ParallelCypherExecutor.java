@@ -0,0 +1,416 @@
+package apoc.cypher;
+
+import apoc.util.Util;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.QueryExecutionType;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.procedure.TerminationGuard;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs a statement once per partition of a list, each partition in its own transaction, and streams the rows as
+ * they are produced rather than collecting the results of the partitions.
+ *
+ * At most <code>concurrency</code> partitions are started and not yet consumed, each one writing its rows to its own
+ * buffer of <code>bufferSize</code> rows and waiting when it is full, so at most <code>concurrency * bufferSize</code>
+ * rows are held in memory. With <code>ordered</code> the rows are returned partition after partition, in the order
+ * of the partitions, otherwise as soon as any partition produces them. Closing the stream, or terminating the calling
+ * transaction, terminates the transactions of the partitions in flight.
+ *
+ * The partitions commit independently of the calling transaction, which only sees their writes once they have
+ * committed: the rows of a statement that writes are held back until its partition has committed, and the nodes,
+ * relationships and paths of the rows are rebound to the calling transaction before they are returned. A partition
+ * of a statement that writes fails, and is rolled back, if it produces more than <code>bufferSize</code> rows, so
+ * that the rows held in memory are bounded in that case too.
+ */
+class ParallelCypherExecutor implements Iterator<Map<String, Object>>, AutoCloseable {
+
+    private static final Object END = new Object();
+    private static final long POLL_MS = 100;
+
+    private final GraphDatabaseService db;
+    /** the calling transaction, the one consuming the rows */
+    private final Transaction callerTx;
+    private final String statement;
+    private final Iterator<List<Object>> partitions;
+    private final Function<List<Object>, Map<String, Object>> params;
+    private final TerminationGuard guard;
+    private final int concurrency;
+    private final int bufferSize;
+    private final boolean ordered;
+    private final long timeout;
+    private final boolean writes;
+
+    /** partitions started and not consumed yet */
+    private final Semaphore pending;
+    /** partitions in the order they were started, followed by LAST once all the workers are done */
+    private final BlockingQueue<Partition> started = new LinkedBlockingQueue<>();
+    private final Set<Partition> running = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger workers = new AtomicInteger();
+    private volatile boolean cancelled;
+
+    // state of the consuming thread
+    private final List<Partition> active = new ArrayList<>();
+    private Partition current;
+    private int cursor;
+    private boolean allStarted;
+    private boolean exhausted;
+    private Map<String, Object> next;
+
+    private static class Partition {
+        final BlockingQueue<Object> rows;
+        List<Object> data;
+        volatile Transaction tx;
+        volatile Throwable error;
+
+        Partition(int bufferSize, List<Object> data) {
+            this.rows = new ArrayBlockingQueue<>(bufferSize);
+            this.data = data;
+        }
+    }
+
+    private static final Partition LAST = new Partition(1, null);
+
+    /**
+     * @param config <code>concurrency</code>, <code>bufferSize</code>, <code>ordered</code> and <code>timeout</code>,
+     *               the number of seconds to wait for a row before failing
+     */
+    ParallelCypherExecutor(GraphDatabaseService db, Transaction tx, String statement, Iterator<List<Object>> partitions,
+                           Function<List<Object>, Map<String, Object>> params, Map<String, Object> config,
+                           boolean defaultOrdered, TerminationGuard guard) {
+        this.db = db;
+        this.callerTx = tx;
+        this.statement = statement;
+        this.partitions = partitions;
+        this.params = params;
+        this.guard = guard;
+        this.concurrency = Util.toInteger(config.getOrDefault("concurrency", Runtime.getRuntime().availableProcessors()));
+        this.bufferSize = Util.toInteger(config.getOrDefault("bufferSize", 1000));
+        this.ordered = Util.toBoolean(config.getOrDefault("ordered", defaultOrdered));
+        long timeoutSeconds = Util.toLong(config.getOrDefault("timeout", 0));
+        this.timeout = timeoutSeconds <= 0 ? Long.MAX_VALUE : TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive, got " + concurrency);
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive, got " + bufferSize);
+        }
+        this.pending = new Semaphore(concurrency);
+        try (Result result = tx.execute("EXPLAIN " + statement)) {
+            this.writes = result.getQueryExecutionType().queryType() != QueryExecutionType.QueryType.READ_ONLY;
+        }
+    }
+
+    Stream<Map<String, Object>> start(ExecutorService pool) {
+        workers.set(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            pool.submit(this::work);
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * Splits the values in lists of <code>batchSize</code> values, lazily
+     */
+    static Iterator<List<Object>> batches(Iterator<?> values, int batchSize) {
+        return new Iterator<List<Object>>() {
+            @Override
+            public boolean hasNext() {
+                return values.hasNext();
+            }
+
+            @Override
+            public List<Object> next() {
+                List<Object> batch = new ArrayList<>(batchSize);
+                while (values.hasNext() && batch.size() < batchSize) {
+                    batch.add(values.next());
+                }
+                return batch;
+            }
+        };
+    }
+
+    private void work() {
+        try {
+            Partition partition;
+            while ((partition = nextPartition()) != null) {
+                run(partition);
+            }
+        } finally {
+            if (workers.decrementAndGet() == 0) {
+                started.add(LAST);
+            }
+        }
+    }
+
+    private Partition nextPartition() {
+        try {
+            while (!pending.tryAcquire(POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (cancelled) return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        synchronized (partitions) {
+            if (cancelled || !partitions.hasNext()) {
+                pending.release();
+                return null;
+            }
+            Partition partition = new Partition(bufferSize, partitions.next());
+            // registered under the lock so that the partitions are started in order
+            started.add(partition);
+            return partition;
+        }
+    }
+
+    private void run(Partition partition) {
+        running.add(partition);
+        try (Transaction tx = db.beginTx()) {
+            partition.tx = tx;
+            if (cancelled) return;
+            try (Result result = tx.execute(statement, params.apply(partition.data))) {
+                partition.data = null;
+                if (writes) {
+                    // the calling transaction can't see what the partition wrote until it has committed
+                    List<Map<String, Object>> rows = new ArrayList<>();
+                    while (result.hasNext()) {
+                        if (rows.size() == bufferSize) {
+                            throw new RuntimeException("A partition of a statement that writes returned more than bufferSize=" + bufferSize +
+                                    " rows, which are held until it commits: use smaller partitions or a larger bufferSize");
+                        }
+                        rows.add(result.next());
+                    }
+                    tx.commit();
+                    for (Map<String, Object> row : rows) {
+                        if (!offer(partition, row)) return;
+                    }
+                    return;
+                }
+                while (result.hasNext()) {
+                    if (!offer(partition, result.next())) return;
+                }
+            }
+            tx.commit();
+        } catch (Throwable e) {
+            partition.error = e;
+        } finally {
+            running.remove(partition);
+            partition.tx = null;
+            offer(partition, END);
+        }
+    }
+
+    /**
+     * @return false if the executor was closed while waiting for the consumer
+     */
+    private boolean offer(Partition partition, Object row) {
+        try {
+            while (!partition.rows.offer(row, POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (cancelled) return false;
+            }
+            return !cancelled;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !exhausted) {
+            next = fetch();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Map<String, Object> row = next;
+        next = null;
+        return row;
+    }
+
+    private Map<String, Object> fetch() {
+        long deadline = System.currentTimeMillis() + Math.min(timeout, Long.MAX_VALUE - System.currentTimeMillis());
+        try {
+            while (!exhausted) {
+                guard.check();
+                Object row = ordered ? pollOrdered() : pollUnordered();
+                if (row != null) {
+                    return rebind((Map<String, Object>) row);
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new RuntimeException("Error polling, timeout of " + TimeUnit.MILLISECONDS.toSeconds(timeout) + " seconds reached.");
+                }
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new RuntimeException("Interrupted while executing in parallel " + statement, e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the next row of the oldest partition, null if there is none yet
+     */
+    private Object pollOrdered() throws InterruptedException {
+        if (current == null) {
+            current = started.poll(POLL_MS, TimeUnit.MILLISECONDS);
+            if (current == LAST) {
+                exhausted = true;
+                current = null;
+            }
+            return null;
+        }
+        Object row = current.rows.poll(POLL_MS, TimeUnit.MILLISECONDS);
+        if (row == END) {
+            finish(current);
+            current = null;
+            return null;
+        }
+        return row;
+    }
+
+    /**
+     * @return the next row of any partition, taking them in turn, null if there is none yet
+     */
+    private Object pollUnordered() throws InterruptedException {
+        for (Partition partition = started.poll(); partition != null; partition = started.poll()) {
+            register(partition);
+        }
+        if (active.isEmpty()) {
+            if (allStarted) {
+                exhausted = true;
+            } else {
+                Partition partition = started.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (partition != null) register(partition);
+            }
+            return null;
+        }
+        int size = active.size();
+        for (int i = 0; i < size; i++) {
+            int index = (cursor + i) % size;
+            Object row = active.get(index).rows.poll();
+            if (row != null) {
+                return take(index, row);
+            }
+        }
+        // nothing is ready, waits for the partition whose turn it is
+        int index = cursor % size;
+        Object row = active.get(index).rows.poll(POLL_MS, TimeUnit.MILLISECONDS);
+        return row == null ? null : take(index, row);
+    }
+
+    private Map<String, Object> rebind(Map<String, Object> row) {
+        Map<String, Object> result = new LinkedHashMap<>(row.size() * 4 / 3 + 1);
+        row.forEach((column, value) -> result.put(column, rebind(value)));
+        return result;
+    }
+
+    /**
+     * @return the value with its nodes, relationships and paths bound to the calling transaction
+     */
+    private Object rebind(Object value) {
+        if (value instanceof Node) {
+            return Util.rebind(callerTx, (Node) value);
+        }
+        if (value instanceof Relationship) {
+            return Util.rebind(callerTx, (Relationship) value);
+        }
+        if (value instanceof Path) {
+            Path path = (Path) value;
+            PathImpl.Builder builder = new PathImpl.Builder(Util.rebind(callerTx, path.startNode()));
+            for (Relationship rel : path.relationships()) {
+                builder = builder.push(Util.rebind(callerTx, rel));
+            }
+            return builder.build();
+        }
+        if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            List<Object> result = new ArrayList<>(list.size());
+            for (Object item : list) {
+                result.add(rebind(item));
+            }
+            return result;
+        }
+        if (value instanceof Map) {
+            return rebind((Map<String, Object>) value);
+        }
+        return value;
+    }
+
+    private void register(Partition partition) {
+        if (partition == LAST) {
+            allStarted = true;
+        } else {
+            active.add(partition);
+        }
+    }
+
+    private Object take(int index, Object row) {
+        if (row == END) {
+            finish(active.remove(index));
+            return null;
+        }
+        cursor = index + 1;
+        return row;
+    }
+
+    private void finish(Partition partition) {
+        pending.release();
+        if (partition.error != null) {
+            throw new RuntimeException("Error executing in parallel " + statement, partition.error);
+        }
+    }
+
+    /**
+     * Stops starting partitions and terminates the transactions of the ones in flight
+     */
+    @Override
+    public void close() {
+        if (cancelled) return;
+        cancelled = true;
+        for (Partition partition : running) {
+            Transaction tx = partition.tx;
+            if (tx != null) {
+                try {
+                    tx.terminate();
+                } catch (Exception e) {
+                    // already closed
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package apoc.load;
 
 import apoc.Extended;
+import apoc.Pools;
+import apoc.load.util.JdbcConnectionPool;
 import apoc.load.util.LoadJdbcConfig;
 import apoc.result.RowResult;
 import apoc.util.MapUtil;
@@ -44,6 +46,9 @@ public class Jdbc {
     @Context
     public GraphDatabaseService db;
 
+    @Context
+    public Pools pools;
+
     @Procedure
     @Description("apoc.load.driver('org.apache.derby.jdbc.EmbeddedDriver') register JDBC driver of source database")
     public void driver(@Name("driverClass") String driverClass) {
@@ -78,8 +83,14 @@ public class Jdbc {
         LoadJdbcConfig loadJdbcConfig = new LoadJdbcConfig(config);
         String url = getUrlOrKey(urlOrKey);
         String query = getSqlOrKey(tableOrSelect);
+        if (loadJdbcConfig.isPartitioned()) {
+            // not the default pool: the caller, waiting for the rows, may itself run on it e.g. within apoc.periodic.iterate
+            return new PartitionedJdbcReader(query, params, () -> getConnection(urlOrKey, url, loadJdbcConfig), loadJdbcConfig, log)
+                    .start(pools.getIoExecutorService())
+                    .map(RowResult::new);
+        }
         try {
-            Connection connection = getConnection(url,loadJdbcConfig);
+            Connection connection = getConnection(urlOrKey, url, loadJdbcConfig);
             // see https://jdbc.postgresql.org/documentation/91/query.html#query-with-cursors
             connection.setAutoCommit(loadJdbcConfig.isAutoCommit());
             try {
@@ -88,7 +99,7 @@ public class Jdbc {
                 try {
                     for (int i = 0; i < params.length; i++) stmt.setObject(i + 1, params[i]);
                     ResultSet rs = stmt.executeQuery();
-                    Iterator<Map<String, Object>> supplier = new ResultSetIterator(log, rs, true, loadJdbcConfig);
+                    Iterator<Map<String, Object>> supplier = new ResultSetIterator(log, rs, stmt, connection, loadJdbcConfig);
                     Spliterator<Map<String, Object>> spliterator = Spliterators.spliteratorUnknownSize(supplier, Spliterator.ORDERED);
                     return StreamSupport.stream(spliterator, false)
                             .map(RowResult::new)
@@ -120,7 +131,7 @@ public class Jdbc {
         String url = getUrlOrKey(urlOrKey);
         LoadJdbcConfig jdbcConfig = new LoadJdbcConfig(config);
         try {
-            Connection connection = getConnection(url,jdbcConfig);
+            Connection connection = getConnection(urlOrKey, url, jdbcConfig);
             try {
                 PreparedStatement stmt = connection.prepareStatement(query,ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
                 stmt.setFetchSize(5000);
@@ -147,6 +158,72 @@ public class Jdbc {
         }
     }
 
+    @Procedure(mode = Mode.READ)
+    @Description("apoc.load.jdbcPools() YIELD name, maxSize, active, idle, ... - the metrics of the pools of the connections to the keys of apoc.jdbc.<key>.url")
+    public Stream<PoolResult> jdbcPools() {
+        return JdbcConnectionPool.pools().map(pool -> {
+            pool.evict();
+            return new PoolResult(pool);
+        });
+    }
+
+    @Procedure(mode = Mode.READ)
+    @Description("apoc.load.jdbcProgress() YIELD id, statement, partition, lower, upper, state, rows, time - the progress of the partitions of the apoc.load.jdbc calls running with the partition config")
+    public Stream<PartitionResult> jdbcProgress() {
+        return PartitionedJdbcReader.running().stream()
+                .flatMap(reader -> reader.getPartitions().stream().map(partition -> new PartitionResult(reader, partition)));
+    }
+
+    public static class PartitionResult {
+        public final long id;
+        public final String statement;
+        public final long partition;
+        public final String lower;
+        public final String upper;
+        public final String state;
+        public final long rows;
+        public final long time;
+
+        PartitionResult(PartitionedJdbcReader reader, PartitionedJdbcReader.Partition partition) {
+            this.id = reader.getId();
+            this.statement = reader.getQuery();
+            this.partition = partition.index + 1;
+            this.lower = partition.lower == null ? null : partition.lower.toString();
+            this.upper = partition.upper == null ? null : partition.upper.toString();
+            this.state = partition.state;
+            this.rows = partition.rows;
+            this.time = partition.time();
+        }
+    }
+
+    public static class PoolResult {
+        public final String name;
+        public final long maxSize;
+        public final long active;
+        public final long idle;
+        public final long borrowed;
+        public final long created;
+        public final long destroyed;
+        public final long timeouts;
+        public final long validationFailures;
+        public final long statementCacheHits;
+        public final long statementCacheMisses;
+
+        public PoolResult(JdbcConnectionPool pool) {
+            this.name = pool.getName();
+            this.maxSize = pool.getMaxSize();
+            this.active = pool.getActive();
+            this.idle = pool.getIdle();
+            this.borrowed = pool.getBorrowed();
+            this.created = pool.getCreated();
+            this.destroyed = pool.getDestroyed();
+            this.timeouts = pool.getTimeouts();
+            this.validationFailures = pool.getValidationFailures();
+            this.statementCacheHits = pool.getStatementCacheHits();
+            this.statementCacheMisses = pool.getStatementCacheMisses();
+        }
+    }
+
     static void closeIt(Log log, AutoCloseable...closeables) {
         for (AutoCloseable c : closeables) {
             try {
@@ -160,21 +237,27 @@ public class Jdbc {
         }
     }
 
-    private static class ResultSetIterator implements Iterator<Map<String, Object>> {
+    static class ResultSetIterator implements Iterator<Map<String, Object>> {
         private final Log log;
         private final ResultSet rs;
+        private final Statement stmt;
+        private final Connection connection;
         private final String[] columns;
-        private final boolean closeConnection;
         private Map<String, Object> map;
         private LoadJdbcConfig config;
 
 
-        public ResultSetIterator(Log log, ResultSet rs, boolean closeConnection, LoadJdbcConfig config) throws SQLException {
+        /**
+         * @param stmt the statement of the result set and its connection are closed with the result set, they are
+         *             passed as the ones of the result set may not be the ones to close, with pooled connections
+         */
+        public ResultSetIterator(Log log, ResultSet rs, Statement stmt, Connection connection, LoadJdbcConfig config) throws SQLException {
             this.config = config;
             this.log = log;
             this.rs = rs;
+            this.stmt = stmt;
+            this.connection = connection;
             this.columns = getMetaData(rs);
-            this.closeConnection = closeConnection;
             this.map = get();
         }
 
@@ -265,7 +348,7 @@ public class Jdbc {
         private void closeRs() {
             Boolean closed = isRsClosed();
             if (closed==null || !closed) {
-                closeIt(log, ignore(rs::getStatement), closeConnection ? ignore(()->rs.getStatement().getConnection()) : null);
+                closeIt(log, rs, stmt, connection);
             }
         }
 
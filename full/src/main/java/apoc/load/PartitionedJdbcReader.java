@@ -0,0 +1,370 @@
+package apoc.load;
+
+import apoc.load.util.LoadJdbcConfig;
+import apoc.util.Util;
+import org.neo4j.logging.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the rows of a query in parallel, splitting it in ranges of values of a numeric or temporal column, each range
+ * read with its own connection.
+ *
+ * The rows of the ranges are merged as they are read, in no particular order, through a buffer of
+ * <code>bufferSize</code> rows, the ranges waiting when it is full. The first range also reads the rows below the
+ * lower bound or whose column is null and the last one the rows above the upper bound, so that all the rows of the
+ * query are read. The progress of the ranges is logged and returned by <code>apoc.load.jdbcProgress</code>.
+ */
+class PartitionedJdbcReader implements Iterator<Map<String, Object>>, AutoCloseable {
+
+    private static final long POLL_MS = 100;
+    private static final AtomicLong IDS = new AtomicLong();
+    private static final Map<Long, PartitionedJdbcReader> RUNNING = new ConcurrentHashMap<>();
+
+    private final long id = IDS.incrementAndGet();
+    private final String query;
+    private final Object[] params;
+    private final Callable<Connection> connections;
+    private final LoadJdbcConfig config;
+    private final Log log;
+    private final List<Partition> partitions;
+    private final Queue<Partition> pending;
+    private final BlockingQueue<Object> rows;
+    private volatile boolean cancelled;
+
+    // state of the consuming thread
+    private int finished;
+    private Map<String, Object> next;
+
+    static class Partition {
+        final int index;
+        final Object lower;
+        final Object upper;
+        final String sql;
+        volatile String state = "pending";
+        volatile long rows;
+        volatile long start;
+        volatile long end;
+        volatile Throwable error;
+        volatile PreparedStatement statement;
+
+        Partition(int index, Object lower, Object upper, String sql) {
+            this.index = index;
+            this.lower = lower;
+            this.upper = upper;
+            this.sql = sql;
+        }
+
+        /**
+         * @return the bounds of the range, to add to the parameters of the query
+         */
+        List<Object> bounds() {
+            List<Object> bounds = new ArrayList<>(2);
+            if (lower != null) bounds.add(lower);
+            if (upper != null) bounds.add(upper);
+            return bounds;
+        }
+
+        long time() {
+            return start == 0 ? 0 : (end == 0 ? System.currentTimeMillis() : end) - start;
+        }
+    }
+
+    PartitionedJdbcReader(String query, Object[] params, Callable<Connection> connections, LoadJdbcConfig config, Log log) {
+        this.query = query;
+        this.params = params;
+        this.connections = connections;
+        this.config = config;
+        this.log = log;
+        this.partitions = partitions(query, config.getPartition());
+        this.pending = new ConcurrentLinkedQueue<>(partitions);
+        this.rows = new ArrayBlockingQueue<>(config.getBufferSize());
+    }
+
+    /**
+     * Splits the query in <code>count</code> ranges of equal width between <code>lower</code> and <code>upper</code>
+     */
+    static List<Partition> partitions(String query, Map<String, Object> partition) {
+        Object column = partition.get("column");
+        Object lower = partition.get("lower");
+        Object upper = partition.get("upper");
+        int count = Util.toInteger(partition.getOrDefault("count", Runtime.getRuntime().availableProcessors()));
+        if (column == null || column.toString().trim().isEmpty()) {
+            throw new IllegalArgumentException("The partition config must contain the column to partition by");
+        }
+        if (lower == null || upper == null) {
+            throw new IllegalArgumentException("The partition config must contain the lower and upper bounds of the column");
+        }
+        if (count < 1) {
+            throw new IllegalArgumentException("The count of partitions must be positive, got " + count);
+        }
+        List<Object> bounds = bounds(lower, upper, count);
+        int size = bounds.size() - 1;
+        if (size == 1) {
+            return Collections.singletonList(new Partition(0, null, null, query));
+        }
+        String select = "SELECT * FROM (" + query + ") apoc_partition WHERE ";
+        List<Partition> partitions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (i == 0) {
+                partitions.add(new Partition(i, null, bounds.get(1), select + "(" + column + " < ? OR " + column + " IS NULL)"));
+            } else if (i == size - 1) {
+                partitions.add(new Partition(i, bounds.get(i), null, select + column + " >= ?"));
+            } else {
+                partitions.add(new Partition(i, bounds.get(i), bounds.get(i + 1), select + column + " >= ? AND " + column + " < ?"));
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * @return the count + 1 bounds of the ranges, fewer if the values between lower and upper are fewer than count
+     */
+    private static List<Object> bounds(Object lower, Object upper, int count) {
+        List<Object> bounds = new ArrayList<>(count + 1);
+        if (lower instanceof Number && upper instanceof Number) {
+            if (isIntegral(lower) && isIntegral(upper)) {
+                long from = ((Number) lower).longValue(), to = ((Number) upper).longValue();
+                checkOrder(from < to, lower, upper);
+                long size = Math.min(count, to - from);
+                for (long i = 0; i < size; i++) {
+                    bounds.add(from + (long) ((double) (to - from) * i / size));
+                }
+                bounds.add(to);
+            } else {
+                double from = ((Number) lower).doubleValue(), to = ((Number) upper).doubleValue();
+                checkOrder(from < to, lower, upper);
+                for (int i = 0; i < count; i++) {
+                    bounds.add(from + (to - from) * i / count);
+                }
+                bounds.add(to);
+            }
+            return bounds;
+        }
+        if (lower instanceof LocalDate && upper instanceof LocalDate) {
+            long from = ((LocalDate) lower).toEpochDay(), to = ((LocalDate) upper).toEpochDay();
+            checkOrder(from < to, lower, upper);
+            long size = Math.min(count, to - from);
+            for (long i = 0; i < size; i++) {
+                bounds.add(java.sql.Date.valueOf(LocalDate.ofEpochDay(from + (to - from) * i / size)));
+            }
+            bounds.add(java.sql.Date.valueOf((LocalDate) upper));
+            return bounds;
+        }
+        if (isDateTime(lower) && isDateTime(upper)) {
+            boolean local = lower instanceof LocalDateTime;
+            long from = micros(lower), to = micros(upper);
+            checkOrder(from < to, lower, upper);
+            for (int i = 0; i < count; i++) {
+                bounds.add(timestamp(from + (long) ((double) (to - from) * i / count), local));
+            }
+            bounds.add(timestamp(to, local));
+            return bounds;
+        }
+        throw new IllegalArgumentException("The lower and upper bounds of the partitions must be both numbers, dates or datetimes, got " + lower + " and " + upper);
+    }
+
+    private static void checkOrder(boolean ordered, Object lower, Object upper) {
+        if (!ordered) {
+            throw new IllegalArgumentException("The lower bound of the partitions must be less than the upper one, got " + lower + " and " + upper);
+        }
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private static boolean isDateTime(Object value) {
+        return value instanceof LocalDateTime || value instanceof ZonedDateTime || value instanceof OffsetDateTime;
+    }
+
+    private static long micros(Object value) {
+        Instant instant = value instanceof LocalDateTime ? ((LocalDateTime) value).toInstant(ZoneOffset.UTC) : Instant.from((Temporal) value);
+        return TimeUnit.SECONDS.toMicros(instant.getEpochSecond()) + TimeUnit.NANOSECONDS.toMicros(instant.getNano());
+    }
+
+    private static Timestamp timestamp(long micros, boolean local) {
+        Instant instant = Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), TimeUnit.MICROSECONDS.toNanos(Math.floorMod(micros, 1_000_000L)));
+        return local ? Timestamp.valueOf(LocalDateTime.ofInstant(instant, ZoneOffset.UTC)) : Timestamp.from(instant);
+    }
+
+    Stream<Map<String, Object>> start(ExecutorService pool) {
+        RUNNING.put(id, this);
+        int workers = Math.min(config.getConcurrency(), partitions.size());
+        for (int i = 0; i < workers; i++) {
+            pool.submit(this::work);
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    static Collection<PartitionedJdbcReader> running() {
+        return RUNNING.values();
+    }
+
+    long getId() {
+        return id;
+    }
+
+    String getQuery() {
+        return query;
+    }
+
+    List<Partition> getPartitions() {
+        return partitions;
+    }
+
+    private void work() {
+        Partition partition;
+        while (!cancelled && (partition = pending.poll()) != null) {
+            read(partition);
+        }
+    }
+
+    private void read(Partition partition) {
+        partition.start = System.currentTimeMillis();
+        partition.state = "running";
+        Connection connection = null;
+        PreparedStatement stmt = null;
+        try {
+            connection = connections.call();
+            connection.setAutoCommit(config.isAutoCommit());
+            stmt = connection.prepareStatement(partition.sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            partition.statement = stmt;
+            stmt.setFetchSize(config.getFetchSize().intValue());
+            int index = 1;
+            for (Object param : params) stmt.setObject(index++, param);
+            for (Object bound : partition.bounds()) stmt.setObject(index++, bound);
+            // the connection is closed below, once rolled back
+            Iterator<Map<String, Object>> rs = new Jdbc.ResultSetIterator(log, stmt.executeQuery(), stmt, null, config);
+            while (rs.hasNext()) {
+                if (!offer(rs.next())) break;
+                partition.rows++;
+            }
+            partition.state = cancelled ? "cancelled" : "done";
+        } catch (Throwable e) {
+            partition.error = e;
+            partition.state = cancelled ? "cancelled" : "failed";
+        } finally {
+            partition.statement = null;
+            if (connection != null && !config.isAutoCommit()) {
+                Connection toRollback = connection;
+                Jdbc.ignore(() -> {
+                    toRollback.rollback();
+                    return null;
+                });
+            }
+            Jdbc.closeIt(log, stmt, connection);
+            partition.end = System.currentTimeMillis();
+            log.info(String.format("Partition %d of %d of `%s` %s: %d rows in %d ms", partition.index + 1, partitions.size(), query, partition.state, partition.rows, partition.time()));
+            offer(partition);
+        }
+    }
+
+    /**
+     * @return false if the reader was closed while waiting for the consumer
+     */
+    private boolean offer(Object row) {
+        try {
+            while (!rows.offer(row, POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (cancelled) return false;
+            }
+            return !cancelled;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && finished < partitions.size()) {
+            next = fetch();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Map<String, Object> row = next;
+        next = null;
+        return row;
+    }
+
+    private Map<String, Object> fetch() {
+        try {
+            while (finished < partitions.size()) {
+                Object row = rows.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (row instanceof Partition) {
+                    finished++;
+                    Partition partition = (Partition) row;
+                    if (partition.error != null) {
+                        throw new RuntimeException(String.format("Cannot execute SQL statement `%s` of partition %d.%nError:%n%s",
+                                partition.sql, partition.index + 1, partition.error.getMessage()), partition.error);
+                    }
+                } else if (row != null) {
+                    return (Map<String, Object>) row;
+                }
+            }
+            close();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new RuntimeException("Interrupted while reading the partitions of " + query, e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops reading the partitions and cancels the statements running
+     */
+    @Override
+    public void close() {
+        RUNNING.remove(id);
+        if (cancelled) return;
+        cancelled = finished < partitions.size();
+        for (Partition partition : partitions) {
+            PreparedStatement statement = partition.statement;
+            if (statement != null && cancelled) {
+                Jdbc.ignore(() -> {
+                    statement.cancel();
+                    return null;
+                });
+            }
+        }
+    }
+}
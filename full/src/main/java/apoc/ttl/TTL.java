@@ -2,6 +2,7 @@ package apoc.ttl;
 
 import apoc.Extended;
 import apoc.TTLConfig;
+import apoc.result.MapResult;
 import apoc.util.MapUtil;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
@@ -9,6 +10,7 @@ import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.procedure.*;
 
 import java.util.Map;
+import java.util.stream.Stream;
 
 import static apoc.date.Date.unit;
 
@@ -35,13 +37,23 @@ public class TTL {
     @Context
     public GraphDatabaseAPI db;
 
+    @Context
+    public TTLLifeCycle ttlLifeCycle;
+
     @UserFunction
     public Map<String, Object> config() {
         TTLConfig.Values values = ttlConfig.configFor(db);
         return MapUtil.map(
                 "enabled", values.enabled,
                 "schedule", values.schedule,
-                "limit", values.limit
+                "limit", values.limit,
+                "budget", values.budget
         );
     }
+
+    @Procedure
+    @Description("CALL apoc.ttl.stats() - returns the nodes and relationships deleted by the expiry job, the duration of its last run and, if it ran out of time, the expiry time of the oldest node left")
+    public Stream<MapResult> stats() {
+        return Stream.of(new MapResult(ttlLifeCycle.stats()));
+    }
 }
@@ -1,9 +1,14 @@
 package apoc.ttl;
 
 import apoc.ApocConfig;
+import apoc.Pools;
 import apoc.TTLConfig;
 import apoc.util.Util;
-import org.neo4j.internal.helpers.collection.Iterators;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.kernel.lifecycle.LifecycleAdapter;
 import org.neo4j.logging.Log;
@@ -13,6 +18,7 @@ import org.neo4j.scheduler.JobScheduler;
 
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author mh
@@ -30,13 +36,38 @@ public class TTLLifeCycle extends LifecycleAdapter {
     private JobHandle ttlJobHandle;
     private TTLConfig ttlConfig;
     private Log log;
+    private final Pools pools;
 
-    public TTLLifeCycle(JobScheduler scheduler, GraphDatabaseAPI db, ApocConfig apocConfig, TTLConfig ttlConfig, Log log) {
+    /**
+     * planned once, as a range seek on the :TTL(ttl) index which also provides the order of expiry
+     */
+    private static final String EXPIRED_NODES = "MATCH (t:TTL) WHERE t.ttl >= $from AND t.ttl < $now RETURN t ORDER BY t.ttl LIMIT $limit";
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    /** expiry time from which the next batch of the current run looks for expired nodes */
+    private volatile long resumeFrom = Long.MIN_VALUE;
+    private final Stats stats = new Stats();
+
+    private static class Stats {
+        long runs;
+        long nodesDeleted;
+        long relationshipsDeleted;
+        long budgetExhausted;
+        long lastRun;
+        long lastDuration;
+        long lastNodesDeleted;
+        long lastRelationshipsDeleted;
+        /** expiry time of the oldest node left expired by the last run, null if it deleted them all */
+        Long backlogSince;
+    }
+
+    public TTLLifeCycle(JobScheduler scheduler, GraphDatabaseAPI db, ApocConfig apocConfig, TTLConfig ttlConfig, Log log, Pools pools) {
         this.scheduler = scheduler;
         this.db = db;
         this.apocConfig = apocConfig;
         this.ttlConfig = ttlConfig;
         this.log = log;
+        this.pools = pools;
     }
 
     @Override
@@ -46,34 +77,113 @@ public class TTLLifeCycle extends LifecycleAdapter {
             long ttlScheduleDb = configValues.schedule;
             ttlIndexJobHandle = scheduler.schedule(TTL_GROUP, this::createTTLIndex, (int)(ttlScheduleDb*0.8), TimeUnit.SECONDS);
             long limitDb = configValues.limit;
-            ttlJobHandle = scheduler.scheduleRecurring(TTL_GROUP, () -> expireNodes(limitDb), ttlScheduleDb, ttlScheduleDb, TimeUnit.SECONDS);
+            long budgetDb = configValues.budget;
+            ttlJobHandle = scheduler.scheduleRecurring(TTL_GROUP, () -> expireNodes(limitDb, budgetDb), ttlScheduleDb, ttlScheduleDb, TimeUnit.SECONDS);
         }
     }
 
-    public void expireNodes(long limit) {
+    /**
+     * Deletes the expired nodes and their relationships in ascending order of expiry, in transactions of at most
+     * <code>limit</code> deletions, for at most <code>budget</code> ms. A run which runs out of time leaves the
+     * remaining expired nodes to the next one, which starts again from the oldest expired node, as nodes expiring
+     * before the expiry time reached may have been created in the meantime.
+     */
+    public void expireNodes(long limit, long budget) {
+        if (!running.compareAndSet(false, true)) return;
         try {
             if (!Util.isWriteableInstance(db)) return;
-            String matchTTL = "MATCH (t:TTL) WHERE t.ttl < timestamp() ";
-            String queryRels = matchTTL + "WITH t MATCH (t)-[r]-() RETURN id(r) as id";
-            String queryNodes = matchTTL +  "RETURN id(t) as id";
-            Map<String,Object> params = Util.map("batchSize", limit, "queryRels", queryRels, "queryNodes", queryNodes);
-            long relationshipsDeleted = db.executeTransactionally(
-                    "CALL apoc.periodic.iterate($queryRels, 'MATCH ()-[r]->() WHERE id(r) = id DELETE r', {batchSize: $batchSize})",
-                    params,
-                    result -> Iterators.single(result.columnAs("total"))
-            );
-
-            long nodesDeleted = db.executeTransactionally(
-                    "CALL apoc.periodic.iterate($queryNodes, 'MATCH (n) WHERE id(n) = id DELETE n', {batchSize: $batchSize})",
-                    params,
-                    result -> Iterators.single(result.columnAs("total"))
-            );
-
-            if (nodesDeleted > 0) {
-                log.info("TTL: Expired %d nodes %d relationships", nodesDeleted, relationshipsDeleted);
+            String pool = apocConfig.getString(ApocConfig.APOC_TTL_POOL, null);
+            if (pool == null) {
+                expire(limit, budget);
+            } else {
+                pools.getExecutorService(pool).submit(() -> expire(limit, budget)).get();
             }
         } catch (Exception e) {
             log.error("TTL: Error deleting expired nodes", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void expire(long limit, long budget) {
+        long started = System.currentTimeMillis();
+        long deadline = started + budget;
+        long now = started;
+        long nodes = 0, relationships = 0;
+        boolean drained = false;
+        resumeFrom = Long.MIN_VALUE;
+        try {
+            do {
+                long[] deleted = expireBatch(now, limit);
+                nodes += deleted[0];
+                relationships += deleted[1];
+                if (deleted[0] + deleted[1] == 0) {
+                    drained = true;
+                }
+            } while (!drained && System.currentTimeMillis() < deadline);
+        } finally {
+            long duration = System.currentTimeMillis() - started;
+            synchronized (stats) {
+                stats.runs++;
+                stats.nodesDeleted += nodes;
+                stats.relationshipsDeleted += relationships;
+                stats.lastRun = started;
+                stats.lastDuration = duration;
+                stats.lastNodesDeleted = nodes;
+                stats.lastRelationshipsDeleted = relationships;
+                if (!drained) stats.budgetExhausted++;
+                stats.backlogSince = drained ? null : resumeFrom;
+            }
+        }
+        if (nodes > 0 || relationships > 0) {
+            log.info("TTL: Expired %d nodes %d relationships in %d ms%s", nodes, relationships, System.currentTimeMillis() - started,
+                    drained ? "" : ", out of time budget with nodes left to expire since " + resumeFrom);
+        }
+    }
+
+    /**
+     * Deletes the first expired nodes in order of expiry. A node is deleted once all its relationships are, which for
+     * a hub can span several transactions: the remaining relationships are deleted by the next batch, since the node
+     * is still the first one to expire.
+     *
+     * @return the number of nodes and relationships deleted
+     */
+    private long[] expireBatch(long now, long limit) {
+        long nodes = 0, relationships = 0;
+        try (Transaction tx = db.beginTx()) {
+            try (Result result = tx.execute(EXPIRED_NODES, Util.map("from", resumeFrom, "now", now, "limit", limit))) {
+                ResourceIterator<Node> expired = result.columnAs("t");
+                while (expired.hasNext() && nodes + relationships < limit) {
+                    Node node = expired.next();
+                    long ttl = ((Number) node.getProperty("ttl")).longValue();
+                    for (Relationship rel : node.getRelationships()) {
+                        if (nodes + relationships >= limit) break;
+                        rel.delete();
+                        relationships++;
+                    }
+                    if (nodes + relationships >= limit) break;
+                    node.delete();
+                    nodes++;
+                    resumeFrom = ttl;
+                }
+            }
+            tx.commit();
+        }
+        return new long[]{nodes, relationships};
+    }
+
+    public Map<String, Object> stats() {
+        synchronized (stats) {
+            return Util.map("runs", stats.runs,
+                    "nodesDeleted", stats.nodesDeleted,
+                    "relationshipsDeleted", stats.relationshipsDeleted,
+                    "budgetExhausted", stats.budgetExhausted,
+                    "lastRun", stats.lastRun,
+                    "lastDuration", stats.lastDuration,
+                    "lastNodesDeleted", stats.lastNodesDeleted,
+                    "lastRelationshipsDeleted", stats.lastRelationshipsDeleted,
+                    "backlogSince", stats.backlogSince,
+                    "running", running.get());
         }
     }
 
@@ -0,0 +1,91 @@
+package apoc.cache;
+
+import apoc.util.TestUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.test.rule.DbmsRule;
+import org.neo4j.test.rule.ImpermanentDbmsRule;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CacheTest {
+
+    @Rule
+    public DbmsRule db = new ImpermanentDbmsRule();
+
+    @Before
+    public void setUp() throws Exception {
+        TestUtil.registerProcedure(db, Cache.class);
+        db.executeTransactionally("CALL apoc.cache.clear()");
+    }
+
+    @Test
+    public void testSetAndGet() throws Exception {
+        TestUtil.testCall(db, "CALL apoc.cache.set('answer', 42)", r -> assertNull(r.get("value")));
+        TestUtil.testCall(db, "RETURN apoc.cache.get('answer') AS value", r -> assertEquals(42L, r.get("value")));
+        TestUtil.testCall(db, "CALL apoc.cache.remove('answer')", r -> assertEquals(42L, r.get("value")));
+        TestUtil.testCall(db, "RETURN apoc.cache.get('answer') AS value", r -> assertNull(r.get("value")));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        db.executeTransactionally("CALL apoc.cache.set('short', 'lived', 1)");
+        Thread.sleep(10);
+        TestUtil.testCall(db, "RETURN apoc.cache.get('short') AS value", r -> assertNull(r.get("value")));
+    }
+
+    @Test
+    public void testComputeIfAbsent() throws Exception {
+        db.executeTransactionally("UNWIND ['SE', 'IT'] AS code CREATE (:Country {code: code})");
+        String query = "CALL apoc.cache.computeIfAbsent('countries', 'MATCH (c:Country) RETURN c.code AS code ORDER BY code', {}, 0) YIELD value RETURN collect(value.code) AS codes";
+        TestUtil.testCall(db, query, r -> assertEquals(List.of("IT", "SE"), r.get("codes")));
+        db.executeTransactionally("CREATE (:Country {code: 'DE'})");
+        // served from the cache
+        TestUtil.testCall(db, query, r -> assertEquals(List.of("IT", "SE"), r.get("codes")));
+        TestUtil.testCall(db, "CALL apoc.cache.stats()", r -> {
+            Map<String, Object> stats = (Map<String, Object>) r.get("value");
+            assertEquals(1L, stats.get("loads"));
+            assertEquals(1L, stats.get("hits"));
+        });
+    }
+
+    @Test
+    public void testComputeIfAbsentRejectsWritesAndEntities() {
+        db.executeTransactionally("CREATE (:Country {code: 'SE'})");
+        try {
+            TestUtil.testCall(db, "CALL apoc.cache.computeIfAbsent('write', 'CREATE (c:Country {code: \\'FR\\'}) RETURN c.code AS code', {}, 0)", r -> {});
+            fail("Writing statements should be rejected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("read-only"));
+        }
+        try {
+            TestUtil.testCall(db, "CALL apoc.cache.computeIfAbsent('nodes', 'MATCH (c:Country) RETURN collect(c) AS countries', {}, 0)", r -> {});
+            fail("Nodes should be rejected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("can't cache nodes"));
+        }
+        TestUtil.testCallEmpty(db, "MATCH (c:Country {code: 'FR'}) RETURN c", Collections.emptyMap());
+        TestUtil.testCall(db, "RETURN apoc.cache.get('nodes') AS value", r -> assertNull(r.get("value")));
+    }
+
+    @Test
+    public void testEviction() {
+        BoundedCache cache = new BoundedCache(16, 0, 0, BoundedCache.Policy.lru);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, i, -1);
+        }
+        Map<String, Object> stats = cache.stats();
+        assertTrue((long) stats.get("size") <= 16L);
+        assertEquals(1000L, (long) stats.get("size") + (long) stats.get("evictions"));
+        // the most recent entry is never the one evicted
+        assertEquals(999, cache.get("key999"));
+    }
+}
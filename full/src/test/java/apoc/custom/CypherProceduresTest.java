@@ -20,14 +20,17 @@ import org.neo4j.test.rule.ImpermanentDbmsRule;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static apoc.custom.CypherProceduresHandler.FUNCTION;
 import static apoc.custom.CypherProceduresHandler.PROCEDURE;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.neo4j.test.assertion.Assert.assertEventually;
 
 /**
  * @author mh
@@ -611,4 +614,54 @@ public class CypherProceduresTest  {
         // when
         TestUtil.singleResultFirstColumn(db, "return custom.answer()");
     }
+
+    @Test
+    public void testStats() {
+        db.executeTransactionally("CALL apoc.custom.declareFunction('double(val :: INTEGER) :: INTEGER', 'RETURN $val * 2 as value')");
+        db.executeTransactionally("CALL apoc.custom.declareProcedure('answer() :: (answer::INT)', 'RETURN 42 as answer')");
+        db.executeTransactionally("CALL apoc.custom.declareFunction('broken() :: INTEGER', 'RETURN custom.missing() as value')");
+
+        TestUtil.testCall(db, "UNWIND range(1, 10) as value RETURN sum(custom.double(value)) as sum", (row) -> assertEquals(110L, row.get("sum")));
+        for (int i = 0; i < 3; i++) {
+            TestUtil.testCall(db, "CALL custom.answer()", (row) -> assertEquals(42L, row.get("answer")));
+        }
+
+        TestUtil.testResult(db, "CALL apoc.custom.stats() YIELD type, name, calls, errors, latencies, error RETURN * ORDER BY name", (result) -> {
+            Map<String, Object> row = result.next();
+            assertEquals(PROCEDURE, row.get("type"));
+            assertEquals("answer", row.get("name"));
+            assertEquals(3L, row.get("calls"));
+            assertEquals(0L, row.get("errors"));
+            assertEquals(3L, ((Map<String, Long>) row.get("latencies")).values().stream().mapToLong(Long::longValue).sum());
+            assertNull(row.get("error"));
+            row = result.next();
+            assertEquals(FUNCTION, row.get("type"));
+            assertEquals("broken", row.get("name"));
+            assertEquals(0L, row.get("calls"));
+            assertTrue(row.get("error") != null);
+            row = result.next();
+            assertEquals("double", row.get("name"));
+            assertEquals(10L, row.get("calls"));
+            assertNull(row.get("error"));
+            assertFalse(result.hasNext());
+        });
+    }
+
+    @Test
+    public void shouldRefreshOnSystemDbChange() {
+        db.executeTransactionally("call apoc.custom.asProcedure('answer', 'RETURN 42 as answer')");
+        TestUtil.testCall(db, "call custom.answer()", (row) -> assertEquals(42L, ((Map)row.get("row")).get("answer")));
+
+        // remove the node in systemdb, without restoring the procedures
+        GraphDatabaseService systemDb = db.getManagementService().database("system");
+        try (Transaction tx = systemDb.beginTx()) {
+            Node node = tx.findNode(SystemLabels.ApocCypherProcedures, SystemPropertyKeys.name.name(), "answer");
+            node.delete();
+            tx.commit();
+        }
+
+        assertEventually(() -> db.executeTransactionally("CALL apoc.custom.stats() YIELD name WHERE name = 'answer' RETURN count(*) as count",
+                emptyMap(), (r) -> r.<Long>columnAs("count").next()),
+                value -> value == 0L, 10L, TimeUnit.SECONDS);
+    }
 }
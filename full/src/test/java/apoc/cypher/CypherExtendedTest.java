@@ -4,6 +4,7 @@ import apoc.text.Strings;
 import apoc.util.TestUtil;
 import apoc.util.Util;
 import apoc.util.Utils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.junit.*;
 import org.junit.rules.ExpectedException;
 import org.neo4j.configuration.GraphDatabaseSettings;
@@ -25,6 +26,7 @@ import static apoc.ApocConfig.apocConfig;
 import static apoc.util.TestUtil.testCall;
 import static apoc.util.TestUtil.testResult;
 import static apoc.util.Util.map;
+import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.junit.Assert.*;
 
@@ -88,6 +90,57 @@ public class CypherExtendedTest {
                 });
     }
 
+    @Test
+    public void testParallel2Streaming() throws Exception {
+        testCall(db, "CALL apoc.cypher.parallel2('RETURN a as b', {a: range(1, 1000000)}, 'a', {concurrency: 2, bufferSize: 10}) YIELD value " +
+                        "WITH value.b AS b LIMIT 5 RETURN collect(b) AS b",
+                r -> assertEquals(asList(1L, 2L, 3L, 4L, 5L), r.get("b")));
+    }
+
+    @Test
+    public void testMapParallel2Unordered() throws Exception {
+        testCall(db, "CALL apoc.cypher.mapParallel2('RETURN _ as b', {}, range(1, 10000), 10, 10, {concurrency: 3, bufferSize: 5}) YIELD value " +
+                        "RETURN count(*) AS count, sum(value.b) AS sum",
+                r -> {
+                    assertEquals(10000L, r.get("count"));
+                    assertEquals(50005000L, r.get("sum"));
+                });
+    }
+
+    @Test
+    public void testMapParallel2ReturnsEntitiesOfTheCaller() throws Exception {
+        testCall(db, "CALL apoc.cypher.mapParallel2('CREATE (n:Parallel {id: _}) RETURN n', {}, range(1, 100), 4) YIELD value " +
+                        "WITH value.n AS n SET n.seen = true RETURN count(*) AS count, sum(n.id) AS sum",
+                r -> {
+                    assertEquals(100L, r.get("count"));
+                    assertEquals(5050L, r.get("sum"));
+                });
+        testCall(db, "MATCH (n:Parallel) WHERE n.seen RETURN count(*) AS count", r -> assertEquals(100L, r.get("count")));
+    }
+
+    @Test
+    public void testMapParallel2RejectsWritingPartitionsLargerThanTheBuffer() throws Exception {
+        try {
+            testCall(db, "CALL apoc.cypher.mapParallel2('CREATE (n:Buffered {id: _}) WITH n UNWIND range(1, 10) AS x RETURN n, x', {}, range(1, 100), 4, 10, {bufferSize: 5}) YIELD value " +
+                            "RETURN count(*)",
+                    r -> {});
+            fail("Should have failed");
+        } catch (RuntimeException e) {
+            assertTrue(ExceptionUtils.getRootCause(e).getMessage(), ExceptionUtils.getRootCause(e).getMessage().contains("more than bufferSize=5 rows"));
+        }
+    }
+
+    @Test
+    public void testParallel2Error() throws Exception {
+        try {
+            testCall(db, "CALL apoc.cypher.parallel2('RETURN 1 / (a - 5000) as b', {a: range(1, 10000)}, 'a') YIELD value RETURN count(*)",
+                    r -> {});
+            fail("Should have failed");
+        } catch (RuntimeException e) {
+            assertTrue(ExceptionUtils.getRootCause(e).getMessage(), ExceptionUtils.getRootCause(e).getMessage().contains("/ by zero"));
+        }
+    }
+
     private long toLong(Object value) {
     	return Util.toLong(value);
     }
@@ -123,6 +176,34 @@ public class CypherExtendedTest {
                 });
     }
 
+    @Test
+    public void testRunFileParallel() throws Exception {
+        testResult(db, "CALL apoc.cypher.runFile('parallel.cypher', {parallel: true, batchSize: 2, concurrency: 3, statistics: false})",
+                r -> {
+                    Map<String, Object> row = r.next();
+                    assertEquals(0L, row.get("row"));
+                    assertEquals(10L, ((Map) row.get("result")).get("count"));
+                    assertEquals(false, r.hasNext());
+                });
+        testCall(db, "MATCH (n:Parallel) RETURN count(n) AS count, count(DISTINCT n.id) AS ids",
+                r -> {
+                    assertEquals(10L, r.get("count"));
+                    assertEquals(10L, r.get("ids"));
+                });
+    }
+
+    @Test
+    public void testRunFileParallelWaitsForTheWritesItReads() throws Exception {
+        testResult(db, "CALL apoc.cypher.runFile('parallel_dependencies.cypher', {parallel: true, batchSize: 1, concurrency: 4, statistics: false})",
+                r -> {
+                    Map<String, Object> result = (Map<String, Object>) r.next().get("result");
+                    assertEquals(10L, result.get("children"));
+                    assertEquals(1L, result.get("uniques"));
+                    assertEquals(List.of(2L), result.get("tmps"));
+                    assertEquals(false, r.hasNext());
+                });
+    }
+
     @Test
     public void testRunFileWithSchema() throws Exception {
         testResult(db, "CALL apoc.cypher.runFile('schema_create.cypher')",
@@ -145,6 +145,63 @@ public class JdbcTest extends AbstractJdbcTest {
                 (row) -> assertResult(row));
     }
 
+    @Test
+    public void testLoadJdbcKeyPooled() throws Exception {
+        apocConfig().setProperty("apoc.jdbc.derbyPool.url","jdbc:derby:derbyDB");
+        apocConfig().setProperty("apoc.jdbc.derbyPool.pool.enabled", true);
+        for (int i = 0; i < 3; i++) {
+            testCall(db, "CALL apoc.load.jdbc('derbyPool','SELECT * FROM PERSON WHERE NAME = ?',['John'])",
+                    (row) -> assertResult(row));
+            testCall(db, "CALL apoc.load.jdbcUpdate('derbyPool','UPDATE PERSON SET NAME = ? WHERE NAME = ?',['John','John'])",
+                    (row) -> assertEquals(Util.map("count", 1 ), row.get("row")));
+        }
+        testCall(db, "CALL apoc.load.jdbcPools() YIELD name, active, idle, borrowed, created, statementCacheHits, statementCacheMisses " +
+                        "WHERE name = 'derbyPool' RETURN *",
+                (row) -> {
+                    assertEquals(0L, row.get("active"));
+                    assertEquals(1L, row.get("idle"));
+                    assertEquals(6L, row.get("borrowed"));
+                    assertEquals(1L, row.get("created"));
+                    assertEquals(4L, row.get("statementCacheHits"));
+                    assertEquals(2L, row.get("statementCacheMisses"));
+                });
+    }
+
+    @Test
+    public void testLoadJdbcPartitioned() throws Exception {
+        try { conn.createStatement().execute("DROP TABLE NUMS"); } catch (SQLException se) {/*ignore*/}
+        conn.createStatement().execute("CREATE TABLE NUMS (ID INT, NAME varchar(50))");
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO NUMS values(?,?)")) {
+            for (int i = 0; i < 1000; i++) {
+                ps.setInt(1, i);
+                ps.setString(2, "Name " + i);
+                ps.addBatch();
+            }
+            ps.setNull(1, Types.INTEGER);
+            ps.setString(2, "No id");
+            ps.addBatch();
+            ps.executeBatch();
+        }
+
+        testCall(db, "CALL apoc.load.jdbc('jdbc:derby:derbyDB','NUMS',[],{partition: {column: 'ID', lower: 100, upper: 900, count: 8}, concurrency: 4, bufferSize: 10}) " +
+                        "YIELD row RETURN count(*) as count, sum(row.ID) as sum, count(distinct row.ID) as ids",
+                (row) -> {
+                    assertEquals(1001L, row.get("count"));
+                    assertEquals(499500L, row.get("sum"));
+                    assertEquals(1000L, row.get("ids"));
+                });
+
+        testCall(db, "CALL apoc.load.jdbc('jdbc:derby:derbyDB','SELECT * FROM NUMS WHERE ID < ?',[500],{partition: {column: 'ID', lower: 0, upper: 1000, count: 3}}) " +
+                        "YIELD row RETURN count(*) as count",
+                (row) -> assertEquals(500L, row.get("count")));
+
+        testCall(db, "CALL apoc.load.jdbc('jdbc:derby:derbyDB','PERSON',[],{partition: {column: 'HIRE_DATE', lower: date('2017-01-01'), upper: date('2018-01-01'), count: 4}})",
+                (row) -> assertResult(row));
+
+        testCall(db, "CALL apoc.load.jdbcProgress() YIELD id RETURN count(*) as count",
+                (row) -> assertEquals(0L, row.get("count")));
+    }
+
     @Test
     public void testLoadJdbcSqlAlias() throws Exception {
         testCall(db, "CALL apoc.load.jdbc('derby','test')",
@@ -7,6 +7,7 @@ import org.junit.ClassRule;
 import org.junit.Test;
 
 import java.time.Duration;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.neo4j.graphdb.Label;
@@ -15,6 +16,7 @@ import org.neo4j.internal.helpers.collection.Iterators;
 import org.neo4j.test.rule.DbmsRule;
 import org.neo4j.test.rule.ImpermanentDbmsRule;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class TTLTest {
@@ -43,6 +45,20 @@ public class TTLTest {
         org.neo4j.test.assertion.Assert.assertEventually(() -> isNodeCountConsistent(0, 0), (value) -> value, 10L, TimeUnit.SECONDS);
     }
 
+    @Test
+    public void testExpireHubNode() throws Exception {
+        restartAndRegister(db);
+        // more relationships than apoc.ttl.limit, deleted over several transactions
+        db.executeTransactionally("CREATE (h:Hub:TTL {ttl: timestamp() + 100}) WITH h UNWIND range(1,5000) AS id CREATE (h)-[:LINK]->(:Leaf {id: id})");
+        org.neo4j.test.assertion.Assert.assertEventually(() -> db.executeTransactionally("MATCH (h:Hub) RETURN count(h) AS count", Map.of(),
+                result -> Iterators.single(result.<Long>columnAs("count"))), (value) -> value == 0L, 30L, TimeUnit.SECONDS);
+        TestUtil.testCall(db, "MATCH (l:Leaf) RETURN count(l) AS leaves", (row) -> assertEquals(5000L, row.get("leaves")));
+        // the stats are updated once the run is over
+        org.neo4j.test.assertion.Assert.assertEventually(() -> db.executeTransactionally("CALL apoc.ttl.stats()", Map.of(),
+                result -> (Map<String, Object>) Iterators.single(result.<Map<String, Object>>columnAs("value"))),
+                (stats) -> stats.get("nodesDeleted").equals(1L) && stats.get("relationshipsDeleted").equals(5000L), 30L, TimeUnit.SECONDS);
+    }
+
     private static boolean isNodeCountConsistent(int foo, int bar) {
         try (Transaction tx = db.beginTx()) {
             boolean isNotCountConsistent = foo == Iterators.count(tx.findNodes(Label.label("Foo")))
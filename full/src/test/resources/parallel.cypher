@@ -0,0 +1,16 @@
+CREATE (:Parallel {id: 1});
+CREATE (:Parallel {id: 2});
+CREATE (:Parallel {id: 3});
+CREATE (:Parallel {id: 4});
+CREATE (:Parallel {id: 5});
+CREATE (:Parallel {id: 6});
+CREATE (:Parallel {id: 7});
+CREATE (:Parallel {id: 8});
+CREATE (:Parallel {id: 9});
+CREATE (:Parallel {id: 10});
+CREATE INDEX ON :Parallel(id);
+:begin
+MATCH (n:Parallel) SET n.seen = true;
+MATCH (n:Parallel) SET n.seenTwice = n.seen;
+:commit
+MATCH (n:Parallel) WHERE n.seenTwice RETURN count(n) AS count;
@@ -0,0 +1,20 @@
+CREATE (:Dependent {id: 1});
+CREATE (:Dependent {id: 2});
+CREATE (:Dependent {id: 3});
+CREATE (:Dependent {id: 4});
+CREATE (:Dependent {id: 5});
+CREATE (:Dependent {id: 6});
+CREATE (:Dependent {id: 7});
+CREATE (:Dependent {id: 8});
+CREATE (:Dependent {id: 9});
+CREATE (:Dependent {id: 10});
+MATCH (d:Dependent) CREATE (d)-[:HAS]->(:Child);
+MERGE (:Unique {key: 'k'});
+MERGE (:Unique {key: 'k'});
+MERGE (:Unique {key: 'k'});
+MERGE (:Unique {key: 'k'});
+MERGE (:Unique {key: 'k'});
+CREATE (:Tmp {id: 1});
+MATCH (t:Tmp) DETACH DELETE t;
+CREATE (:Tmp {id: 2});
+MATCH (d:Dependent)-[:HAS]->(c:Child) MATCH (u:Unique) MATCH (t:Tmp) RETURN count(DISTINCT c) AS children, count(DISTINCT u) AS uniques, collect(DISTINCT t.id) AS tmps;